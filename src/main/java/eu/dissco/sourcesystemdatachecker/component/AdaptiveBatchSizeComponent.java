@@ -0,0 +1,136 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_IDS;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/*
+  Rich specimens with many media take far longer per event than flat records, so no fixed batch
+  size fits every harvest. After each batch of the bulk lane, the time per message is used to
+  estimate the batch size that is handled within the target latency. A slow batch shrinks the
+  batch size to that estimate, and a full batch within the target grows it, at most doubling it.
+  While the heap is fuller than the budget, the batch size is halved instead. The heap usage is
+  the one left after the last garbage collection, so garbage that is not collected yet does not
+  shrink the batches.
+  A batch that is not full means the queue is drained, so the receive timeout is halved to hand a
+  trickle of messages over sooner. It is doubled again once batches are full.
+ */
+@Slf4j
+@Component
+public class AdaptiveBatchSizeComponent {
+
+  private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  private final RabbitMqProperties.AdaptiveBatch properties;
+  private final MeterRegistry meterRegistry;
+  private final AtomicInteger batchSize;
+  private final AtomicLong receiveTimeout;
+  @Setter(AccessLevel.PACKAGE)
+  private DoubleSupplier heapUsage = AdaptiveBatchSizeComponent::getCollectedHeapUsage;
+
+  public AdaptiveBatchSizeComponent(RabbitListenerEndpointRegistry listenerEndpointRegistry,
+      RabbitMqProperties rabbitMqProperties, MeterRegistry meterRegistry) {
+    this.listenerEndpointRegistry = listenerEndpointRegistry;
+    this.properties = rabbitMqProperties.getAdaptiveBatch();
+    this.meterRegistry = meterRegistry;
+    this.batchSize = new AtomicInteger(Math.clamp(rabbitMqProperties.getBatchSize(),
+        properties.getMinBatchSize(), properties.getMaxBatchSize()));
+    this.receiveTimeout = new AtomicLong(properties.getMaxReceiveTimeout().toMillis());
+    Gauge.builder("rabbitmq.adaptive.batch.size", batchSize, AtomicInteger::get)
+        .register(meterRegistry);
+    Gauge.builder("rabbitmq.adaptive.receive.timeout", receiveTimeout, AtomicLong::get)
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public int getBatchSize() {
+    return batchSize.get();
+  }
+
+  public long getReceiveTimeout() {
+    return receiveTimeout.get();
+  }
+
+  // Called by the consumers once a batch is handled
+  public synchronized void record(int messageCount, Duration latency) {
+    if (!properties.isEnabled() || messageCount == 0) {
+      return;
+    }
+    var currentSize = batchSize.get();
+    var targetLatency = properties.getTargetLatency().toNanos();
+    var latencyPerMessage = Math.max(1, latency.toNanos() / messageCount);
+    var fittingSize = targetLatency / latencyPerMessage;
+    long newSize = currentSize;
+    if (heapUsage.getAsDouble() > properties.getMaxHeapUsage()) {
+      newSize = currentSize / 2;
+      countAdjustment("memory");
+    } else if (latency.toNanos() > targetLatency) {
+      newSize = fittingSize;
+      countAdjustment("latency");
+    } else if (messageCount >= currentSize && fittingSize > currentSize) {
+      newSize = Math.min(2L * currentSize, fittingSize);
+      countAdjustment("growth");
+    }
+    var newTimeout = messageCount < currentSize
+        ? receiveTimeout.get() / 2 : receiveTimeout.get() * 2;
+    apply(Math.clamp(newSize, properties.getMinBatchSize(), properties.getMaxBatchSize()),
+        Math.clamp(newTimeout, properties.getMinReceiveTimeout().toMillis(),
+            properties.getMaxReceiveTimeout().toMillis()));
+  }
+
+  private void apply(int newSize, long newTimeout) {
+    if (newSize == batchSize.get() && newTimeout == receiveTimeout.get()) {
+      return;
+    }
+    var containers = BULK_LISTENER_IDS.stream()
+        .map(listenerEndpointRegistry::getListenerContainer)
+        .filter(SimpleMessageListenerContainer.class::isInstance)
+        .map(SimpleMessageListenerContainer.class::cast)
+        .toList();
+    if (containers.isEmpty()) {
+      return;
+    }
+    log.debug("Adjusting batch size from {} to {}, and receive timeout from {} ms to {} ms",
+        batchSize.get(), newSize, receiveTimeout.get(), newTimeout);
+    for (var container : containers) {
+      container.setBatchSize(newSize);
+      container.setReceiveTimeout(newTimeout);
+    }
+    batchSize.set(newSize);
+    receiveTimeout.set(newTimeout);
+  }
+
+  private void countAdjustment(String reason) {
+    meterRegistry.counter("rabbitmq.adaptive.batch.adjustments", "reason", reason).increment();
+  }
+
+  // Heap in use after the last collection of each pool, pools without a collection yet count as 0
+  private static double getCollectedHeapUsage() {
+    var used = 0L;
+    for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      var collectionUsage = pool.getCollectionUsage();
+      if (pool.getType() == MemoryType.HEAP && collectionUsage != null) {
+        used += collectionUsage.getUsed();
+      }
+    }
+    return (double) used / Runtime.getRuntime().maxMemory();
+  }
+
+}
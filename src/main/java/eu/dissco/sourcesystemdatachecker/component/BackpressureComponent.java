@@ -0,0 +1,170 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_IDS;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.stereotype.Component;
+
+/*
+  Samples the depth of the downstream queues with a passive declare, and pauses the bulk
+  consumer while the downstream services are behind. Uses a high and a low watermark, so the
+  consumer does not flap around a single threshold.
+  The consumer is paused by stopping its container, which closes its channels once the batch in
+  progress is handled or the shutdown timeout has passed. Batches in the batch pipeline would lose
+  their channel and be redelivered on every pause, so backpressure refuses to start with it.
+ */
+@Slf4j
+@Component
+public class BackpressureComponent {
+
+  private final AmqpAdmin amqpAdmin;
+  private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  private final RabbitMqProperties.Backpressure properties;
+  private final RabbitMqProperties.Pipeline pipelineProperties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, AtomicLong> queueDepths = new ConcurrentHashMap<>();
+  private final Set<MessageListenerContainer> pausedContainers = new LinkedHashSet<>();
+  private final Counter pauseCounter;
+  private volatile boolean paused;
+  private ScheduledExecutorService sampleScheduler;
+
+  public BackpressureComponent(AmqpAdmin amqpAdmin,
+      RabbitListenerEndpointRegistry listenerEndpointRegistry,
+      RabbitMqProperties rabbitMqProperties, MeterRegistry meterRegistry) {
+    this.amqpAdmin = amqpAdmin;
+    this.listenerEndpointRegistry = listenerEndpointRegistry;
+    this.properties = rabbitMqProperties.getBackpressure();
+    this.pipelineProperties = rabbitMqProperties.getPipeline();
+    this.meterRegistry = meterRegistry;
+    this.pauseCounter = meterRegistry.counter("rabbitmq.backpressure.pauses");
+    Gauge.builder("rabbitmq.backpressure.paused", this, component -> component.paused ? 1 : 0)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (pipelineProperties.isEnabled()) {
+      throw new IllegalStateException(
+          "Backpressure can not be combined with the batch pipeline, a pause would requeue the "
+              + "batches in the pipeline");
+    }
+    var interval = properties.getSampleInterval().toMillis();
+    sampleScheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("backpressure-sample").daemon().factory());
+    sampleScheduler.scheduleWithFixedDelay(this::sample, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  void sample() {
+    try {
+      sampleQueueDepths();
+    } catch (RuntimeException e) {
+      // A failure must not end the scheduled task, the next sample tries again
+      log.error("Failed to apply backpressure to the consumer", e);
+    }
+  }
+
+  private void sampleQueueDepths() {
+    var aboveHighWatermark = false;
+    var belowLowWatermark = true;
+    for (var queueName : properties.getQueueNames()) {
+      var depth = getQueueDepth(queueName);
+      if (depth < 0) {
+        // Unknown depth, do not let this queue resume the consumer
+        belowLowWatermark = false;
+        continue;
+      }
+      aboveHighWatermark |= depth >= properties.getHighWatermark();
+      belowLowWatermark &= depth <= properties.getLowWatermark();
+    }
+    if (!paused && aboveHighWatermark) {
+      pause();
+    } else if (paused && belowLowWatermark) {
+      resume();
+    }
+  }
+
+  boolean isPaused() {
+    return paused;
+  }
+
+  private long getQueueDepth(String queueName) {
+    try {
+      var queueInformation = amqpAdmin.getQueueInfo(queueName);
+      if (queueInformation == null) {
+        log.warn("Downstream queue {} does not exist", queueName);
+        return -1;
+      }
+      queueDepths.computeIfAbsent(queueName, this::registerDepthGauge)
+          .set(queueInformation.getMessageCount());
+      return queueInformation.getMessageCount();
+    } catch (AmqpException e) {
+      log.warn("Unable to sample depth of downstream queue {}", queueName, e);
+      return -1;
+    }
+  }
+
+  private AtomicLong registerDepthGauge(String queueName) {
+    var depth = new AtomicLong();
+    Gauge.builder("rabbitmq.downstream.queue.depth", depth, AtomicLong::get)
+        .tag("queue", queueName)
+        .register(meterRegistry);
+    return depth;
+  }
+
+  // Only the running containers are stopped, so a resume does not start an idle standby container
+  private void pause() {
+    var containers = BULK_LISTENER_IDS.stream()
+        .map(listenerEndpointRegistry::getListenerContainer)
+        .filter(container -> container != null && container.isRunning())
+        .toList();
+    if (containers.isEmpty()) {
+      return;
+    }
+    log.warn("Downstream queues are above {} messages, pausing consumer",
+        properties.getHighWatermark());
+    containers.forEach(MessageListenerContainer::stop);
+    pausedContainers.addAll(containers);
+    paused = true;
+    pauseCounter.increment();
+  }
+
+  private void resume() {
+    log.info("Downstream queues are below {} messages, resuming consumer",
+        properties.getLowWatermark());
+    for (var container : pausedContainers) {
+      container.start();
+    }
+    pausedContainers.clear();
+    paused = false;
+  }
+
+  @PreDestroy
+  void stop() {
+    if (sampleScheduler != null) {
+      sampleScheduler.shutdownNow();
+    }
+  }
+
+}
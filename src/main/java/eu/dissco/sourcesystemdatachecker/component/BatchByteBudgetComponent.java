@@ -0,0 +1,80 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import org.springframework.stereotype.Component;
+
+/*
+  A batch of specimens that each carry hundreds of media takes several hundred MB once decoded.
+  Received batches are therefore split into parts of consecutive messages whose decompressed size
+  in bytes stays within the byte budget, and the parts are handled one after the other. The bulk
+  lane receives its messages compressed and splits them by the size in their gzip trailer, so only
+  one part is decompressed and decoded at a time. The priority lane and the stream receive their
+  messages decompressed, so there the budget only bounds the decoded events.
+  A message above the budget becomes a part of its own.
+ */
+@Component
+public class BatchByteBudgetComponent {
+
+  private final RabbitMqProperties.ByteBudget properties;
+  private final Counter splitCounter;
+  private final Counter oversizedCounter;
+
+  public BatchByteBudgetComponent(RabbitMqProperties rabbitMqProperties,
+      MeterRegistry meterRegistry) {
+    this.properties = rabbitMqProperties.getByteBudget();
+    this.splitCounter = meterRegistry.counter("rabbitmq.byte.budget.splits");
+    this.oversizedCounter = meterRegistry.counter("rabbitmq.byte.budget.oversized");
+  }
+
+  // Keeps the order of the messages, so the last message of a part carries its delivery tag
+  public <T> List<List<T>> split(List<T> messages, ToLongFunction<T> messageSize) {
+    if (!properties.isEnabled()) {
+      return List.of(messages);
+    }
+    var budget = properties.getMaxBatchSize().toBytes();
+    var parts = new ArrayList<List<T>>();
+    var part = new ArrayList<T>();
+    var partSize = 0L;
+    for (var message : messages) {
+      var size = messageSize.applyAsLong(message);
+      if (size > budget) {
+        oversizedCounter.increment();
+      }
+      if (!part.isEmpty() && partSize + size > budget) {
+        parts.add(part);
+        part = new ArrayList<>();
+        partSize = 0;
+      }
+      part.add(message);
+      partSize += size;
+    }
+    if (!part.isEmpty()) {
+      parts.add(part);
+    }
+    splitCounter.increment(Math.max(0, parts.size() - 1));
+    return parts;
+  }
+
+  // Size of the message in UTF-8, the encoding it was received in, without encoding it
+  public static long utf8Length(String message) {
+    var length = 0L;
+    for (var i = 0; i < message.length(); i++) {
+      var c = message.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800 || Character.isSurrogate(c)) {
+        // A surrogate pair encodes to four bytes, two for each half
+        length += 2;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+}
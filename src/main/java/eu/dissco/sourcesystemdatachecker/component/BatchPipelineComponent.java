@@ -0,0 +1,231 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_IDS;
+
+import com.rabbitmq.client.Channel;
+import eu.dissco.sourcesystemdatachecker.domain.BatchDecision;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.service.SourceSystemDataCheckerService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.stereotype.Component;
+
+/*
+  Overlaps consecutive batches of the bulk lane. The listener thread decodes a batch, a decide
+  thread looks it up and decides what to forward, and an emit thread writes and publishes it.
+  Batches are handed over through bounded queues, so the listener blocks once the pipeline is full.
+  A batch is acknowledged once it is emitted, or rejected and requeued if it failed. The emit thread
+  handles batches in the order they were received, so acknowledgements stay in order.
+  A batch is decided before the previous one is emitted, so a specimen in two consecutive batches
+  can be forwarded twice; the forward deduplication drops the second one.
+  Any failure of a batch, including an Error, rejects that batch and the stages carry on with the
+  next one. An Error also stops the bulk consumer, as the service can no longer be trusted to
+  handle batches.
+ */
+@Slf4j
+@Component
+public class BatchPipelineComponent {
+
+  // Bounds each wait of the listener, so it notices a stopped pipeline
+  private static final long ENQUEUE_POLL_MILLIS = 1_000;
+
+  private final SourceSystemDataCheckerService sourceSystemDataCheckerService;
+  private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  private final RabbitMqProperties.Pipeline properties;
+  private final BlockingQueue<PipelinedBatch> decideQueue;
+  private final BlockingQueue<PipelinedBatch> emitQueue;
+  private final AtomicInteger deciding = new AtomicInteger();
+  private final AtomicInteger emitting = new AtomicInteger();
+  private final AtomicReference<Throwable> fatalError = new AtomicReference<>();
+  private volatile boolean stopped;
+  private ExecutorService pipelineExecutor;
+
+  public BatchPipelineComponent(SourceSystemDataCheckerService sourceSystemDataCheckerService,
+      RabbitListenerEndpointRegistry listenerEndpointRegistry,
+      RabbitMqProperties rabbitMqProperties, MeterRegistry meterRegistry) {
+    this.sourceSystemDataCheckerService = sourceSystemDataCheckerService;
+    this.listenerEndpointRegistry = listenerEndpointRegistry;
+    this.properties = rabbitMqProperties.getPipeline();
+    this.decideQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    this.emitQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    registerStage(meterRegistry, "decide", decideQueue, deciding);
+    registerStage(meterRegistry, "emit", emitQueue, emitting);
+    Gauge.builder("batch.pipeline.failed", fatalError, error -> error.get() == null ? 0 : 1)
+        .register(meterRegistry);
+  }
+
+  private static void registerStage(MeterRegistry meterRegistry, String stage,
+      BlockingQueue<PipelinedBatch> queue, AtomicInteger busy) {
+    Gauge.builder("batch.pipeline.queue.size", queue, BlockingQueue::size)
+        .tag("stage", stage)
+        .register(meterRegistry);
+    Gauge.builder("batch.pipeline.busy", busy, AtomicInteger::get)
+        .tag("stage", stage)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    pipelineExecutor = Executors.newFixedThreadPool(2,
+        Thread.ofPlatform().name("batch-pipeline-", 0).daemon().factory());
+    pipelineExecutor.submit(this::decideBatches);
+    pipelineExecutor.submit(this::emitBatches);
+  }
+
+  @PreDestroy
+  void stop() {
+    // Batches still in the pipeline are not acknowledged, and are redelivered
+    stopped = true;
+    if (pipelineExecutor != null) {
+      pipelineExecutor.shutdownNow();
+    }
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  // Blocks while the pipeline is full. Takes the delivery tag of the last message of the batch.
+  public void submit(Set<DigitalSpecimenEvent> events, Channel channel, long deliveryTag)
+      throws InterruptedException {
+    enqueue(new PipelinedBatch(events, channel, deliveryTag, null, null));
+  }
+
+  /*
+    For a batch that failed before it could be submitted, such as one that could not be decoded.
+    It is rejected in turn, so a later batch does not acknowledge its messages.
+   */
+  public void submitFailed(RuntimeException failure, Channel channel, long deliveryTag)
+      throws InterruptedException {
+    enqueue(new PipelinedBatch(Set.of(), channel, deliveryTag, null, failure));
+  }
+
+  /*
+    Waits for room in the pipeline, but gives up once the pipeline is stopped or failed, so the
+    listener cannot hang the shutdown of its container. The messages are then redelivered.
+   */
+  private void enqueue(PipelinedBatch batch) throws InterruptedException {
+    while (!decideQueue.offer(batch, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (stopped || fatalError.get() != null) {
+        throw new IllegalStateException("The batch pipeline is stopped");
+      }
+    }
+  }
+
+  private void decideBatches() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        var batch = decideQueue.take();
+        emitQueue.put(batch.failure() == null ? decide(batch) : batch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private PipelinedBatch decide(PipelinedBatch batch) {
+    deciding.set(1);
+    try {
+      return batch.decided(sourceSystemDataCheckerService.decide(batch.events()));
+    } catch (Throwable e) {
+      return batch.failed(e);
+    } finally {
+      deciding.set(0);
+    }
+  }
+
+  private void emitBatches() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        var batch = emitQueue.take();
+        emitting.set(1);
+        try {
+          emit(batch);
+        } catch (Throwable e) {
+          log.error("Failed to emit the batch up to delivery tag {}", batch.deliveryTag(), e);
+          stopConsumerOnError(e);
+        } finally {
+          emitting.set(0);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void emit(PipelinedBatch batch) {
+    var failure = batch.failure();
+    if (failure == null) {
+      try {
+        sourceSystemDataCheckerService.emit(batch.decision());
+      } catch (Throwable e) {
+        failure = e;
+      }
+    }
+    try {
+      if (failure == null) {
+        batch.channel().basicAck(batch.deliveryTag(), true);
+      } else {
+        log.error("Failed to process the batch up to delivery tag {}, requeueing it",
+            batch.deliveryTag(), failure);
+        batch.channel().basicNack(batch.deliveryTag(), true, true);
+      }
+    } catch (IOException | RuntimeException e) {
+      // The channel is gone, so the unacknowledged messages are redelivered
+      log.warn("Failed to acknowledge a batch of {} events", batch.events().size(), e);
+    }
+    stopConsumerOnError(failure);
+  }
+
+  /*
+    Stopping the container waits for the listener, which may be waiting for room in the pipeline,
+    so it is stopped from its own thread while the stages keep rejecting the queued batches.
+   */
+  private void stopConsumerOnError(Throwable failure) {
+    if (!(failure instanceof Error) || !fatalError.compareAndSet(null, failure)) {
+      return;
+    }
+    log.error("The batch pipeline failed with an error, stopping the bulk consumer", failure);
+    for (var listenerId : BULK_LISTENER_IDS) {
+      var container = listenerEndpointRegistry.getListenerContainer(listenerId);
+      if (container != null) {
+        Thread.ofPlatform().name("batch-pipeline-stop").daemon().start(container::stop);
+      }
+    }
+  }
+
+  private record PipelinedBatch(
+      Set<DigitalSpecimenEvent> events,
+      Channel channel,
+      long deliveryTag,
+      BatchDecision decision,
+      Throwable failure
+  ) {
+
+    PipelinedBatch decided(BatchDecision batchDecision) {
+      return new PipelinedBatch(events, channel, deliveryTag, batchDecision, null);
+    }
+
+    PipelinedBatch failed(Throwable e) {
+      return new PipelinedBatch(events, channel, deliveryTag, null, e);
+    }
+  }
+
+}
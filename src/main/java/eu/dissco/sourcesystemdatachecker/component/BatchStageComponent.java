@@ -0,0 +1,152 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.properties.StageConcurrencyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+/*
+  Runs the stages of a batch and records their duration in the batch.stage.duration metric.
+  Stages that do not depend on each other can be run at the same time, each on its own virtual
+  thread. The first stage that fails interrupts the others, and once all of them have ended its
+  exception is rethrown, so the batch fails as it would have when run in sequence.
+ */
+@Component
+public class BatchStageComponent {
+
+  private final StageConcurrencyProperties properties;
+  private final MeterRegistry meterRegistry;
+  private ExecutorService stageExecutor;
+
+  public BatchStageComponent(StageConcurrencyProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    stageExecutor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("batch-stage-", 0).factory());
+  }
+
+  @PreDestroy
+  void stop() {
+    if (stageExecutor != null) {
+      stageExecutor.shutdownNow();
+    }
+  }
+
+  public <T> T run(String stageName, Supplier<T> stage) {
+    return timer(stageName).record(stage);
+  }
+
+  // Runs the stages in the given order, or at the same time if stage concurrency is enabled
+  public void runIndependent(Map<String, Runnable> stages) {
+    if (stageExecutor == null || stages.size() < 2) {
+      stages.forEach((stageName, stage) -> timer(stageName).record(stage));
+      return;
+    }
+    var stageGroup = new StageGroup(stages.size());
+    stages.forEach((stageName, stage) -> {
+      try {
+        stageExecutor.execute(() -> stageGroup.run(() -> timer(stageName).record(stage)));
+      } catch (RejectedExecutionException e) {
+        stageGroup.reject(e);
+      }
+    });
+    stageGroup.await();
+  }
+
+  private Timer timer(String stageName) {
+    return meterRegistry.timer("batch.stage.duration", "stage", stageName);
+  }
+
+  /*
+    The stages of one call. The first failure interrupts the stages that are running and skips the
+    ones that did not start. The caller waits until every stage has ended, so no stage of a failed
+    batch is still running when the batch is retried.
+   */
+  private static class StageGroup {
+
+    private final CountDownLatch ended;
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private StageGroup(int stages) {
+      this.ended = new CountDownLatch(stages);
+    }
+
+    void run(Runnable stage) {
+      running.add(Thread.currentThread());
+      try {
+        if (failure.get() == null) {
+          stage.run();
+        }
+      } catch (RuntimeException | Error e) {
+        fail(e);
+      } finally {
+        running.remove(Thread.currentThread());
+        ended.countDown();
+      }
+    }
+
+    void await() {
+      var interrupted = false;
+      while (true) {
+        try {
+          ended.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+          fail(e);
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      var cause = failure.get();
+      if (cause == null) {
+        return;
+      }
+      if (cause instanceof InterruptedException) {
+        throw new IllegalStateException("Interrupted while running batch stages", cause);
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException("Batch stage failed", cause);
+    }
+
+    // A stage that could not be started counts as ended and failed
+    void reject(RejectedExecutionException e) {
+      fail(e);
+      ended.countDown();
+    }
+
+    private void fail(Throwable cause) {
+      if (failure.compareAndSet(null, cause)) {
+        running.stream()
+            .filter(thread -> thread != Thread.currentThread())
+            .forEach(Thread::interrupt);
+      }
+    }
+  }
+
+}
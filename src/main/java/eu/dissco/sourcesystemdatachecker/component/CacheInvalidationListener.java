@@ -0,0 +1,166 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.RecordVersionNotification;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.service.FingerprintCacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/*
+  Listens on a Postgres notification channel for new versions of specimens and media, and evicts
+  them from the fingerprint cache. Notifications sent while the listener is disconnected are lost,
+  so every time the listener (re)connects, the records modified since it last received
+  notifications are evicted. A notification that cannot be attributed to a record evicts the
+  records modified recently. The persistent store is never cleared by the listener.
+  The listener holds one connection of the pool for as long as it runs.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationListener {
+
+  static final String SPECIMEN_TABLE = "digital_specimen";
+  static final String MEDIA_TABLE = "digital_media_object";
+  // Allows for clock differences, and for the time between a modification and its commit
+  private static final Duration CLOCK_MARGIN = Duration.ofMinutes(5);
+
+  private final DataSource dataSource;
+  private final FingerprintCacheService fingerprintCacheService;
+  private final FingerprintCacheProperties.Invalidation properties;
+  private final JsonMapper mapper;
+  private final Counter notificationCounter;
+  private final Counter reconnectCounter;
+  private volatile boolean running;
+  // Notifications of modifications before this time have been received
+  private volatile Instant receivedUntil;
+  private ExecutorService listenerExecutor;
+
+  public CacheInvalidationListener(DataSource dataSource,
+      FingerprintCacheService fingerprintCacheService,
+      FingerprintCacheProperties fingerprintCacheProperties, JsonMapper mapper,
+      MeterRegistry meterRegistry) {
+    this.dataSource = dataSource;
+    this.fingerprintCacheService = fingerprintCacheService;
+    this.properties = fingerprintCacheProperties.getInvalidation();
+    this.mapper = mapper;
+    this.notificationCounter = meterRegistry.counter("fingerprint.cache.notifications");
+    this.reconnectCounter = meterRegistry.counter("fingerprint.cache.listener.reconnects");
+  }
+
+  @PostConstruct
+  void start() {
+    if (!fingerprintCacheService.isEnabled() || !properties.isEnabled()) {
+      return;
+    }
+    running = true;
+    receivedUntil = Instant.now();
+    listenerExecutor = Executors.newSingleThreadExecutor(
+        Thread.ofPlatform().name("cache-invalidation-listener").daemon().factory());
+    listenerExecutor.execute(this::listen);
+  }
+
+  private void listen() {
+    var reconnectDelay = properties.getReconnectDelay().toMillis();
+    while (running) {
+      try (var connection = dataSource.getConnection()) {
+        subscribe(connection);
+        reconnectDelay = properties.getReconnectDelay().toMillis();
+        poll(connection.unwrap(PGConnection.class));
+      } catch (SQLException | RuntimeException e) {
+        // Also covers a failure to evict the modified records, which is retried on reconnect
+        if (!running) {
+          return;
+        }
+        log.warn("Lost connection to notification channel {}, reconnecting in {} ms",
+            properties.getChannel(), reconnectDelay, e);
+        reconnectCounter.increment();
+        try {
+          Thread.sleep(reconnectDelay);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        reconnectDelay = Math.min(reconnectDelay * 2,
+            properties.getMaxReconnectDelay().toMillis());
+      }
+    }
+  }
+
+  private void subscribe(Connection connection) throws SQLException {
+    connection.setAutoCommit(true);
+    try (var statement = connection.createStatement()) {
+      statement.execute("LISTEN " + connection.unwrap(PGConnection.class)
+          .escapeIdentifier(properties.getChannel()));
+    }
+    // Anything written while the listener was disconnected may have been missed
+    fingerprintCacheService.invalidateModifiedSince(receivedUntil.minus(CLOCK_MARGIN));
+    log.info("Listening for record versions on channel {}", properties.getChannel());
+  }
+
+  private void poll(PGConnection connection) throws SQLException {
+    var timeout = (int) properties.getPollTimeout().toMillis();
+    while (running) {
+      var polledAt = Instant.now();
+      var notifications = connection.getNotifications(timeout);
+      if (notifications != null) {
+        for (var notification : notifications) {
+          handleNotification(notification.getParameter());
+        }
+      }
+      receivedUntil = polledAt;
+    }
+  }
+
+  void handleNotification(String payload) {
+    notificationCounter.increment();
+    try {
+      var notification = mapper.readValue(payload, RecordVersionNotification.class);
+      var table = notification == null ? null : notification.table();
+      switch (table) {
+        case SPECIMEN_TABLE -> fingerprintCacheService.invalidateSpecimen(
+            new SpecimenKey(notification.sourceSystemId(), notification.localId()));
+        case MEDIA_TABLE -> fingerprintCacheService.invalidateMedia(
+            new MediaKey(notification.sourceSystemId(), notification.localId()));
+        case null, default -> {
+          log.warn("Notification for unknown table {}, evicting recently modified records",
+              table);
+          invalidateRecentlyModified();
+        }
+      }
+    } catch (JacksonException e) {
+      log.warn("Unable to parse notification {}, evicting recently modified records", payload, e);
+      invalidateRecentlyModified();
+    }
+  }
+
+  private void invalidateRecentlyModified() {
+    fingerprintCacheService.invalidateModifiedSince(Instant.now().minus(CLOCK_MARGIN));
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (listenerExecutor != null) {
+      listenerExecutor.shutdown();
+      listenerExecutor.awaitTermination(properties.getPollTimeout().toMillis() * 2,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+}
@@ -0,0 +1,28 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.service.FingerprintCacheService;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "fingerprintcache")
+@RequiredArgsConstructor
+public class FingerprintCacheEndpoint {
+
+  private final FingerprintCacheService fingerprintCacheService;
+
+  @ReadOperation
+  public Map<String, Object> statistics() {
+    return fingerprintCacheService.getStatistics();
+  }
+
+  @DeleteOperation
+  public void clear() {
+    fingerprintCacheService.invalidateAll();
+  }
+
+}
@@ -0,0 +1,103 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+  Reusable gzip sink: serialisers write plain bytes into it, and it deflates them straight into an
+  internal buffer. The buffer, deflater and checksum are kept between messages, so a message only
+  allocates its final (compressed) byte array. Not thread safe, a sink serves one publish at a
+  time. Sinks are pooled by the MessageCompressionComponent, which resets a sink when it is taken
+  from the pool and when it is returned to it.
+ */
+class GzipByteSink extends OutputStream {
+
+  private static final int INITIAL_CAPACITY = 8192; // 8KB
+  private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024; // 4MB
+  private static final byte[] GZIP_HEADER = {
+      0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  private final byte[] single = new byte[1];
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int count;
+  private long uncompressedLength;
+
+  void reset() {
+    deflater.reset();
+    crc.reset();
+    uncompressedLength = 0;
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      // Do not keep the buffer of one exceptionally large message alive while the sink is pooled
+      buffer = new byte[INITIAL_CAPACITY];
+    }
+    System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+    count = GZIP_HEADER.length;
+  }
+
+  @Override
+  public void write(int b) {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return;
+    }
+    crc.update(bytes, offset, length);
+    uncompressedLength += length;
+    deflater.setInput(bytes, offset, length);
+    while (!deflater.needsInput()) {
+      deflate();
+    }
+  }
+
+  /*
+    Completes the gzip stream and returns the compressed message.
+    This is the only copy of the payload made by the sink.
+   */
+  byte[] finish() {
+    deflater.finish();
+    while (!deflater.finished()) {
+      deflate();
+    }
+    ensureCapacity(8);
+    writeIntLittleEndian((int) crc.getValue());
+    writeIntLittleEndian((int) uncompressedLength);
+    return Arrays.copyOf(buffer, count);
+  }
+
+  // Releases the native memory of the deflater, the sink cannot be used afterwards
+  void end() {
+    deflater.end();
+  }
+
+  long uncompressedLength() {
+    return uncompressedLength;
+  }
+
+  private void deflate() {
+    ensureCapacity(INITIAL_CAPACITY);
+    count += deflater.deflate(buffer, count, buffer.length - count);
+  }
+
+  private void ensureCapacity(int required) {
+    if (buffer.length - count < required) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + required));
+    }
+  }
+
+  private void writeIntLittleEndian(int value) {
+    buffer[count++] = (byte) value;
+    buffer[count++] = (byte) (value >> 8);
+    buffer[count++] = (byte) (value >> 16);
+    buffer[count++] = (byte) (value >> 24);
+  }
+
+}
@@ -0,0 +1,114 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.KeyPartitioningProperties;
+import eu.dissco.sourcesystemdatachecker.service.SourceSystemDataCheckerService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/*
+  Two consumers handling different versions of the same specimen at the same time can both read the
+  same stored state, and both forward it. Events are therefore split over a fixed number of lanes by
+  their source system and physical specimen id. Each lane is a single thread that handles its part
+  of the batches in the order they were submitted, so a specimen is never handled by two threads at
+  once. The consumer waits until all parts of its batch are handled, so messages are only
+  acknowledged once processed, and the first failure is rethrown.
+ */
+@Component
+public class KeyPartitionedExecutorComponent {
+
+  private final SourceSystemDataCheckerService sourceSystemDataCheckerService;
+  private final KeyPartitioningProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final List<ThreadPoolExecutor> lanes = new ArrayList<>();
+
+  public KeyPartitionedExecutorComponent(
+      SourceSystemDataCheckerService sourceSystemDataCheckerService,
+      KeyPartitioningProperties properties, MeterRegistry meterRegistry) {
+    this.sourceSystemDataCheckerService = sourceSystemDataCheckerService;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    for (var i = 0; i < properties.getLanes(); i++) {
+      var lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(),
+          Thread.ofPlatform().name("specimen-lane-" + i).daemon().factory());
+      Gauge.builder("key.partitioning.lane.queue.size", lane, l -> l.getQueue().size())
+          .tag("lane", String.valueOf(i))
+          .register(meterRegistry);
+      lanes.add(lane);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    lanes.forEach(ThreadPoolExecutor::shutdownNow);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public void handleMessages(Set<DigitalSpecimenEvent> events) {
+    var futures = new ArrayList<Future<?>>();
+    partition(events).forEach((lane, laneEvents) -> futures.add(lanes.get(lane)
+        .submit(() -> sourceSystemDataCheckerService.handleMessages(laneEvents))));
+    RuntimeException failure = null;
+    try {
+      // Waits for all lanes, as the parts of the batch that did not fail are still being written
+      for (var future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause() instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException("Specimen lane failed", e.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for specimen lanes", e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private Map<Integer, Set<DigitalSpecimenEvent>> partition(Set<DigitalSpecimenEvent> events) {
+    var partitions = new HashMap<Integer, Set<DigitalSpecimenEvent>>();
+    for (var event : events) {
+      partitions.computeIfAbsent(lane(event), k -> new HashSet<>()).add(event);
+    }
+    return partitions;
+  }
+
+  private int lane(DigitalSpecimenEvent event) {
+    return Math.floorMod(Objects.hash(
+        event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID(),
+        event.digitalSpecimenWrapper().physicalSpecimenId()), lanes.size());
+  }
+
+}
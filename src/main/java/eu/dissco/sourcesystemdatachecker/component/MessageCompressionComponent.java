@@ -2,13 +2,16 @@ package eu.dissco.sourcesystemdatachecker.component;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
@@ -16,47 +19,101 @@ import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
 
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class MessageCompressionComponent implements MessageConverter {
 
+  // CRC32 and uncompressed size
+  private static final int GZIP_TRAILER_LENGTH = 8;
+
+  // Pooled rather than kept per thread, as publishes can run on short-lived virtual threads
+  private static final int MAX_POOLED_SINKS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private final BlockingQueue<GzipByteSink> sinks = new ArrayBlockingQueue<>(MAX_POOLED_SINKS);
+
   final MessageConverter simpleConverter = new SimpleMessageConverter();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+  private final JsonMapper mapper;
 
-  private static byte[] deflateMessage(byte[] message) throws IOException {
-    var bufferSize = 8192; // 8KB
-    try (var baos = new ByteArrayOutputStream(bufferSize)) {
-      try (var gzos = new GZIPOutputStream(baos,
-          bufferSize)) { // gzos needs to be closed first to push out last bytes
-        gzos.write(message);
-        gzos.flush();
+  @Override
+  public Message toMessage(final Object payload, final MessageProperties messageProperties)
+      throws MessageConversionException {
+    if (payload == null) {
+      throw new MessageConversionException("Invalid message type: null");
+    }
+    var sink = acquireSink();
+    byte[] compressedMessage;
+    try {
+      if (payload instanceof String messageString) {
+        var message = messageString.getBytes(StandardCharsets.UTF_8);
+        sink.write(message, 0, message.length);
+      } else {
+        // Serialise the event straight into the compressing sink, no intermediate String
+        writerFor(payload.getClass()).writeValue(sink, payload);
       }
-      return baos.toByteArray();
+      compressedMessage = sink.finish();
+      if (log.isDebugEnabled()) {
+        log.debug("Compressed Length: {} vs Message Length: {} / Ratio: {}",
+            compressedMessage.length, sink.uncompressedLength(),
+            String.format("%.2f%%", compressedMessage.length * 100f / sink.uncompressedLength()));
+      }
+    } catch (JacksonException e) {
+      throw new MessageConversionException("Failed to serialise message of type "
+          + payload.getClass(), e);
+    } finally {
+      releaseSink(sink);
     }
+    messageProperties.setContentType("application/json");
+    messageProperties.setContentEncoding("gzip");
+    return new Message(compressedMessage, messageProperties);
   }
 
-  @Override
-  public Message toMessage(final Object messageString, final MessageProperties messageProperties)
-      throws MessageConversionException {
+  private GzipByteSink acquireSink() {
+    var sink = sinks.poll();
+    if (sink == null) {
+      sink = new GzipByteSink();
+    }
+    sink.reset();
+    return sink;
+  }
 
-    if (!(messageString instanceof String)) {
-      throw new MessageConversionException("Invalid message type: " + messageString.getClass());
+  // Sinks beyond the pool release their native deflater straight away
+  private void releaseSink(GzipByteSink sink) {
+    sink.reset();
+    if (!sinks.offer(sink)) {
+      sink.end();
     }
-    final byte[] message = ((String) messageString).getBytes(StandardCharsets.UTF_8);
+  }
 
-    final byte[] compressedMessage;
-    try {
-      compressedMessage = deflateMessage(message);
-      log.debug(
-          "Compressed Length: " + compressedMessage.length + " vs Message Length: " + message.length
-              + " / Ratio: " +
-              String.format("%.2f%%", compressedMessage.length * 100f / message.length));
-      messageProperties.setContentType("application/json");
-      messageProperties.setContentEncoding("gzip");
-      return new Message(compressedMessage, messageProperties);
-    } catch (IOException e) {
-      throw new MessageConversionException("Failed to compress message " + messageString, e);
+  private ObjectWriter writerFor(Class<?> type) {
+    return writers.computeIfAbsent(type, mapper::writerFor);
+  }
+
+  // The decompressed body as text
+  public String toPayload(Message message) {
+    var payload = fromMessage(message);
+    return payload instanceof byte[] body ? new String(body, StandardCharsets.UTF_8)
+        : (String) payload;
+  }
+
+  /*
+    Size of the body once decompressed, without decompressing it. A gzip body ends with the
+    uncompressed size modulo 2^32, which is exact as messages are far smaller than 4GB.
+   */
+  public long uncompressedSize(Message message) {
+    var body = message.getBody();
+    if (!"gzip".equals(message.getMessageProperties().getContentEncoding())
+        || body.length < GZIP_TRAILER_LENGTH) {
+      return body.length;
     }
+    var end = body.length;
+    return Integer.toUnsignedLong((body[end - 4] & 0xff) | (body[end - 3] & 0xff) << 8
+        | (body[end - 2] & 0xff) << 16 | (body[end - 1] & 0xff) << 24);
   }
 
   @Override
@@ -0,0 +1,110 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import eu.dissco.sourcesystemdatachecker.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.springframework.stereotype.Component;
+
+/*
+  The lookups of the checker compete with the writes of the processing service on the primary.
+  When enabled, lookups are run on a read replica instead, while its replication lag is within the
+  maximum lag. The lag is sampled at a fixed interval; while it is too high or unknown, lookups fall
+  back to the primary. Updates always run on the primary.
+ */
+@Slf4j
+@Component
+public class ReadReplicaComponent {
+
+  // Zero once the replica has replayed all WAL it received, and on a database that is no replica
+  static final Field<Double> REPLICATION_LAG = DSL.field("coalesce(case "
+      + "when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+      + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) end, 0)", Double.class);
+
+  private final ReadReplicaProperties properties;
+  private final DSLContext primaryContext;
+  @Setter(AccessLevel.PACKAGE)
+  private DSLContext replicaContext;
+  private HikariDataSource replicaDataSource;
+  private ScheduledExecutorService lagScheduler;
+  private volatile double replicationLag = -1;
+  private volatile boolean replicaActive;
+
+  public ReadReplicaComponent(ReadReplicaProperties properties, DSLContext context,
+      MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.primaryContext = context;
+    Gauge.builder("read.replica.lag", this, component -> component.replicationLag)
+        .baseUnit("seconds")
+        .register(meterRegistry);
+    Gauge.builder("read.replica.active", this, component -> component.replicaActive ? 1 : 0)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (properties.getUrl() == null || properties.getUrl().isBlank()) {
+      throw new IllegalStateException("A read replica url is required when the replica is enabled");
+    }
+    replicaDataSource = new HikariDataSource();
+    replicaDataSource.setJdbcUrl(properties.getUrl());
+    replicaDataSource.setUsername(properties.getUsername());
+    replicaDataSource.setPassword(properties.getPassword());
+    replicaDataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+    replicaDataSource.setReadOnly(true);
+    replicaDataSource.setPoolName("read-replica");
+    replicaContext = DSL.using(replicaDataSource, SQLDialect.POSTGRES);
+    var interval = properties.getLagCheckInterval().toMillis();
+    lagScheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("read-replica-lag").daemon().factory());
+    lagScheduler.scheduleWithFixedDelay(this::sampleLag, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (lagScheduler != null) {
+      lagScheduler.shutdownNow();
+    }
+    if (replicaDataSource != null) {
+      replicaDataSource.close();
+    }
+  }
+
+  void sampleLag() {
+    try {
+      replicationLag = replicaContext.fetchValue(REPLICATION_LAG);
+      var withinMaxLag = replicationLag * 1000 <= properties.getMaxLag().toMillis();
+      if (replicaActive != withinMaxLag) {
+        log.info("Read replica lag is {} seconds, running lookups on the {}", replicationLag,
+            withinMaxLag ? "replica" : "primary");
+      }
+      replicaActive = withinMaxLag;
+    } catch (RuntimeException e) {
+      // Also covers a replica pool that failed to start, so the next sample is still run
+      log.warn("Unable to sample the read replica lag, running lookups on the primary", e);
+      replicationLag = -1;
+      replicaActive = false;
+    }
+  }
+
+  // Context for queries that only read, and tolerate the maximum lag
+  public DSLContext getReadContext() {
+    return replicaActive ? replicaContext : primaryContext;
+  }
+
+}
@@ -0,0 +1,108 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.stereotype.Component;
+
+/*
+  With several replicas competing on one queue, every replica sees random specimens, and its caches
+  never warm up. When sharding is enabled, the inbound events are routed by a consistent hash of
+  their routing key, the physical specimen id, over a fixed number of shard queues. Every replica
+  consumes every shard, but the shards that belong to its index at a higher consumer priority.
+  Shard queues have a single active consumer, and quorum queues hand it to the consumer with the
+  highest priority, so each shard is owned by one replica at a time: its own replica while that one
+  is up, and otherwise one of the others until it returns. The index only decides the preferred
+  owner, a replica that is gone or has the wrong index does not leave shards unconsumed.
+  Without failover a replica only consumes its own shards, which are then left unconsumed while it
+  is gone.
+ */
+@Component
+public class ShardAssignmentComponent {
+
+  private static final String CONSISTENT_HASH_EXCHANGE = "x-consistent-hash";
+  // Every shard gets an equal part of the hash space
+  private static final String SHARD_WEIGHT = "1";
+
+  // Consumer priorities of the shards of this replica, and of the shards it stands by for
+  public static final String OWN_SHARD_PRIORITY = "1";
+  public static final String STANDBY_SHARD_PRIORITY = "0";
+
+  private final RabbitMqProperties rabbitMqProperties;
+  private final RabbitMqProperties.Sharding properties;
+
+  public ShardAssignmentComponent(RabbitMqProperties rabbitMqProperties) {
+    this.rabbitMqProperties = rabbitMqProperties;
+    this.properties = rabbitMqProperties.getSharding();
+    if (properties.isEnabled() && properties.getReplicaIndex() >= properties.getReplicas()) {
+      throw new IllegalStateException("Replica index " + properties.getReplicaIndex()
+          + " is not below the number of replicas " + properties.getReplicas());
+    }
+    if (properties.isEnabled() && properties.getReplicas() > properties.getShards()) {
+      throw new IllegalStateException("Not every one of the " + properties.getReplicas()
+          + " replicas can own one of the " + properties.getShards() + " shards");
+    }
+  }
+
+  // Queues consumed by the bulk lane of this replica, the shards it owns when sharding is enabled
+  public String[] getQueueNames() {
+    if (!properties.isEnabled()) {
+      return new String[]{rabbitMqProperties.getQueueName()};
+    }
+    return getShardQueueNames(true);
+  }
+
+  // Shards of the other replicas, consumed at the standby priority
+  public String[] getStandbyQueueNames() {
+    if (!properties.isEnabled() || !properties.isFailover()) {
+      return new String[0];
+    }
+    return getShardQueueNames(false);
+  }
+
+  public boolean hasStandbyQueues() {
+    return getStandbyQueueNames().length > 0;
+  }
+
+  private String[] getShardQueueNames(boolean own) {
+    return IntStream.range(0, properties.getShards())
+        .filter(shard -> (shard % properties.getReplicas() == properties.getReplicaIndex()) == own)
+        .mapToObj(this::getShardQueueName)
+        .toArray(String[]::new);
+  }
+
+  // All shards are declared by every replica, so events are not lost while a shard is unclaimed
+  public Declarables getDeclarables() {
+    if (!properties.isEnabled()) {
+      return new Declarables();
+    }
+    var arguments = new HashMap<String, Object>();
+    if (!properties.getHashHeader().isBlank()) {
+      arguments.put("hash-header", properties.getHashHeader());
+    }
+    var exchange = new CustomExchange(properties.getExchangeName(), CONSISTENT_HASH_EXCHANGE, true,
+        false, arguments);
+    var declarables = new ArrayList<Declarable>(List.of(exchange));
+    for (var shard = 0; shard < properties.getShards(); shard++) {
+      var queue = QueueBuilder.durable(getShardQueueName(shard))
+          .quorum()
+          .singleActiveConsumer()
+          .build();
+      declarables.add(queue);
+      declarables.add(BindingBuilder.bind(queue).to(exchange).with(SHARD_WEIGHT).noargs());
+    }
+    return new Declarables(declarables);
+  }
+
+  private String getShardQueueName(int shard) {
+    return properties.getQueuePrefix() + shard;
+  }
+
+}
@@ -0,0 +1,294 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.Environment;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.MessageHandler;
+import com.rabbitmq.stream.OffsetSpecification;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService;
+import eu.dissco.sourcesystemdatachecker.service.RabbitMqPublisherService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+/*
+  Consumes the inbound events from a RabbitMQ stream, which takes a far higher ingest rate than a
+  queue and can be replayed from any offset. Sub-entry batches and their compression are set by the
+  publisher, and are unpacked by the stream client. Received messages are queued for a worker
+  thread, which hands them in batches to the same path as the queue listeners. The offset of a
+  batch is only stored once it is handled, so after a restart the consumer resumes with the first
+  message that was not handled. A failed batch is retried a bounded number of times, after which
+  its messages are handled one by one. Messages that fail while others succeed are poison and are
+  dead-lettered, so they do not stop the stream, while a batch that fails as a whole waits out
+  the outage. Only one instance of the named consumer is active at a time.
+  A replay starts at the configured offset and does not store offsets, so it does not move the
+  consumer.
+ */
+@Slf4j
+@Component
+public class StreamConsumerComponent {
+
+  private final Environment environment;
+  private final RabbitMqConsumerService rabbitMqConsumerService;
+  private final RabbitMqPublisherService rabbitMqPublisherService;
+  private final MessageCompressionComponent messageCompressionComponent;
+  private final RabbitMqProperties.Stream properties;
+  private final BlockingQueue<StreamMessage> receivedMessages;
+  private final Counter messageCounter;
+  private final Counter deadLetterCounter;
+  private final AtomicLong handledOffset = new AtomicLong(-1);
+  private ExecutorService batchExecutor;
+  private Consumer consumer;
+
+  public StreamConsumerComponent(Environment environment,
+      RabbitMqConsumerService rabbitMqConsumerService,
+      RabbitMqPublisherService rabbitMqPublisherService,
+      MessageCompressionComponent messageCompressionComponent,
+      RabbitMqProperties rabbitMqProperties, MeterRegistry meterRegistry) {
+    this.environment = environment;
+    this.rabbitMqConsumerService = rabbitMqConsumerService;
+    this.rabbitMqPublisherService = rabbitMqPublisherService;
+    this.messageCompressionComponent = messageCompressionComponent;
+    this.properties = rabbitMqProperties.getStream();
+    this.receivedMessages = new ArrayBlockingQueue<>(2 * properties.getBatchSize());
+    this.messageCounter = meterRegistry.counter("rabbitmq.stream.messages");
+    this.deadLetterCounter = meterRegistry.counter("rabbitmq.stream.dead.letters");
+    Gauge.builder("rabbitmq.stream.offset", handledOffset, AtomicLong::get)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    startBatchExecutor();
+    var builder = environment.consumerBuilder()
+        .stream(properties.getStreamName())
+        .messageHandler(this::receive);
+    if (properties.getReplayFrom() != null) {
+      log.info("Replaying stream {} from offset {}", properties.getStreamName(),
+          properties.getReplayFrom());
+      builder = builder.offset(OffsetSpecification.offset(properties.getReplayFrom()))
+          .noTrackingStrategy();
+    } else {
+      // A named consumer resumes after its stored offset, the first start reads the whole stream.
+      // Other replicas wait as standby, and take over from the stored offset.
+      builder = builder.name(properties.getConsumerName())
+          .singleActiveConsumer()
+          .offset(OffsetSpecification.first())
+          .manualTrackingStrategy()
+          .builder();
+    }
+    consumer = builder.build();
+  }
+
+  void startBatchExecutor() {
+    batchExecutor = Executors.newSingleThreadExecutor(
+        Thread.ofPlatform().name("stream-consumer").daemon().factory());
+    batchExecutor.submit(this::handleBatches);
+  }
+
+  @PreDestroy
+  void stop() {
+    // Messages that were received but not handled are read again after a restart
+    if (consumer != null) {
+      consumer.close();
+    }
+    if (batchExecutor != null) {
+      batchExecutor.shutdownNow();
+    }
+  }
+
+  /*
+    Blocks the stream client while the worker is behind, which stops the flow of messages. Messages
+    are queued as received and decoded by the worker, so a message that fails to decode is
+    dead-lettered rather than lost in the stream client.
+   */
+  void receive(MessageHandler.Context context, Message message) {
+    var streamProperties = message.getProperties();
+    var contentEncoding = streamProperties == null ? null : streamProperties.getContentEncoding();
+    try {
+      receivedMessages.put(new StreamMessage(message.getBodyAsBinary(), contentEncoding, context));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void handleBatches() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        var batch = nextBatch();
+        if (!batch.isEmpty()) {
+          handleBatch(batch);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private List<StreamMessage> nextBatch() throws InterruptedException {
+    var batch = new ArrayList<StreamMessage>(properties.getBatchSize());
+    var first = receivedMessages.poll(properties.getFlushInterval().toMillis(),
+        TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return batch;
+    }
+    batch.add(first);
+    var deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+    while (batch.size() < properties.getBatchSize()) {
+      var next = receivedMessages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+      receivedMessages.drainTo(batch, properties.getBatchSize() - batch.size());
+    }
+    return batch;
+  }
+
+  private void handleBatch(List<StreamMessage> batch) throws InterruptedException {
+    var messages = decode(batch);
+    if (!messages.isEmpty()
+        && !handleWithRetries(messages.stream().map(DecodedMessage::payload).toList())) {
+      handleOneByOne(batch, messages);
+    }
+    messageCounter.increment(batch.size());
+    var context = batch.getLast().context();
+    if (properties.getReplayFrom() == null) {
+      context.storeOffset();
+    }
+    handledOffset.set(context.offset());
+  }
+
+  // Messages that fail to decode are dead-lettered straight away, a retry cannot fix them
+  private List<DecodedMessage> decode(List<StreamMessage> batch) throws InterruptedException {
+    var messages = new ArrayList<DecodedMessage>(batch.size());
+    for (var message : batch) {
+      try {
+        messages.add(new DecodedMessage(message, decode(message)));
+      } catch (RuntimeException e) {
+        log.error("Failed to decode a stream message", e);
+        deadLetter(message);
+      }
+    }
+    return messages;
+  }
+
+  private String decode(StreamMessage message) {
+    if ("gzip".equals(message.contentEncoding())) {
+      var messageProperties = new MessageProperties();
+      messageProperties.setContentEncoding("gzip");
+      return (String) messageCompressionComponent.fromMessage(
+          new org.springframework.amqp.core.Message(message.body(), messageProperties));
+    }
+    return new String(message.body(), StandardCharsets.UTF_8);
+  }
+
+  /*
+    Handles the messages on their own, and dead-letters the ones that fail while others succeed.
+    When all of them fail, the cause is not in the messages but in a database or broker outage, so
+    the batch is retried with a growing interval and its offset is not passed. Messages received
+    in the meantime join the batch, so a poison message that arrived alone is recognised once a
+    later message succeeds.
+   */
+  private void handleOneByOne(List<StreamMessage> batch, List<DecodedMessage> messages)
+      throws InterruptedException {
+    var retryInterval = properties.getRetryInterval();
+    while (true) {
+      var failed = messages.stream()
+          .filter(message -> !handle(List.of(message.payload())))
+          .toList();
+      if (failed.size() < messages.size()) {
+        for (var message : failed) {
+          deadLetter(message.message());
+        }
+        return;
+      }
+      log.error("All {} messages of a stream batch failed, retrying in {}", messages.size(),
+          retryInterval);
+      Thread.sleep(retryInterval);
+      retryInterval = min(retryInterval.multipliedBy(2), properties.getMaxRetryInterval());
+      var received = new ArrayList<StreamMessage>();
+      receivedMessages.drainTo(received, Math.max(properties.getBatchSize() - batch.size(), 0));
+      batch.addAll(received);
+      messages.addAll(decode(received));
+      if (handle(messages.stream().map(DecodedMessage::payload).toList())) {
+        return;
+      }
+    }
+  }
+
+  private static Duration min(Duration first, Duration second) {
+    return first.compareTo(second) <= 0 ? first : second;
+  }
+
+  private boolean handleWithRetries(List<String> messages) throws InterruptedException {
+    for (var retry = 0; retry < properties.getMaxRetries(); retry++) {
+      if (handle(messages)) {
+        return true;
+      }
+      log.warn("Retrying a batch of {} stream messages in {}", messages.size(),
+          properties.getRetryInterval());
+      Thread.sleep(properties.getRetryInterval());
+    }
+    return handle(messages);
+  }
+
+  private boolean handle(List<String> messages) {
+    try {
+      rabbitMqConsumerService.getStreamMessages(messages);
+      return true;
+    } catch (RuntimeException e) {
+      log.error("Failed to handle {} stream messages", messages.size(), e);
+      return false;
+    }
+  }
+
+  // The offset is not stored past a message until it is dead-lettered
+  private void deadLetter(StreamMessage message) throws InterruptedException {
+    while (true) {
+      try {
+        rabbitMqPublisherService.publishStreamDeadLetter(message.body(),
+            message.contentEncoding());
+        deadLetterCounter.increment();
+        log.warn("Dead-lettered stream message at offset {}", message.context().offset());
+        return;
+      } catch (RuntimeException e) {
+        log.error("Failed to dead-letter a stream message, retrying in {}",
+            properties.getRetryInterval(), e);
+        Thread.sleep(properties.getRetryInterval());
+      }
+    }
+  }
+
+  private record StreamMessage(
+      byte[] body,
+      String contentEncoding,
+      MessageHandler.Context context
+  ) {
+
+  }
+
+  private record DecodedMessage(StreamMessage message, String payload) {
+
+  }
+
+}
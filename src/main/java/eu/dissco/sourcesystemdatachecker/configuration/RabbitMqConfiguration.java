@@ -1,8 +1,13 @@
 package eu.dissco.sourcesystemdatachecker.configuration;
 
 import eu.dissco.sourcesystemdatachecker.component.MessageCompressionComponent;
+import eu.dissco.sourcesystemdatachecker.component.ShardAssignmentComponent;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
 import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
 import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -19,15 +24,86 @@ public class RabbitMqConfiguration {
   @Bean
   public SimpleRabbitListenerContainerFactory consumerBatchContainerFactory(
       ConnectionFactory connectionFactory) {
+    var factory = batchContainerFactory(connectionFactory, rabbitMQProperties.getBatchSize(),
+        rabbitMQProperties.getConcurrency());
+    var maxBatchSize = rabbitMQProperties.getBatchSize();
+    var adaptiveBatch = rabbitMQProperties.getAdaptiveBatch();
+    if (adaptiveBatch.isEnabled()) {
+      // The batch size can grow at runtime, but the prefetch is only set when a consumer starts
+      maxBatchSize = adaptiveBatch.getMaxBatchSize();
+      factory.setPrefetchCount(maxBatchSize);
+      factory.setReceiveTimeout(adaptiveBatch.getMaxReceiveTimeout().toMillis());
+    }
+    var pipeline = rabbitMQProperties.getPipeline();
+    if (pipeline.isEnabled()) {
+      // Batches are acknowledged once emitted, so the prefetch must cover all batches in the
+      // pipeline: one per stage, the queued ones, and the one the listener is blocked on
+      factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+      factory.setPrefetchCount(maxBatchSize * (2 * pipeline.getQueueCapacity() + 3));
+    }
+    var backpressure = rabbitMQProperties.getBackpressure();
+    if (backpressure.isEnabled()) {
+      // A pause stops the container, which must not cut off the batch in progress
+      factory.setContainerCustomizer(container -> container.setShutdownTimeout(
+          backpressure.getShutdownTimeout().toMillis()));
+    }
+    return factory;
+  }
+
+  @Bean
+  public SimpleRabbitListenerContainerFactory priorityBatchContainerFactory(
+      ConnectionFactory connectionFactory) {
+    return batchContainerFactory(connectionFactory,
+        rabbitMQProperties.getPriority().getBatchSize(),
+        rabbitMQProperties.getPriority().getConcurrency());
+  }
+
+  private SimpleRabbitListenerContainerFactory batchContainerFactory(
+      ConnectionFactory connectionFactory, int batchSize, int concurrency) {
     SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
     factory.setConnectionFactory(connectionFactory);
     factory.setBatchListener(true);
-    factory.setBatchSize(rabbitMQProperties.getBatchSize());
+    factory.setBatchSize(batchSize);
+    factory.setConcurrentConsumers(concurrency);
     factory.setConsumerBatchEnabled(true);
     factory.setMessageConverter(compressedMessageConverter);
     return factory;
   }
 
+  @Bean
+  public Declarables shardedQueues(ShardAssignmentComponent shardAssignmentComponent) {
+    return shardAssignmentComponent.getDeclarables();
+  }
+
+  @Bean
+  public Declarables streamDeadLetterQueue() {
+    if (!rabbitMQProperties.getStream().isEnabled()) {
+      return new Declarables();
+    }
+    return new Declarables(
+        QueueBuilder.durable(rabbitMQProperties.getStream().getDeadLetterQueueName())
+            .quorum()
+            .build());
+  }
+
+  // Deferred forced MAS jobs expire in the delay queue and are dead-lettered to the deferred queue
+  @Bean
+  public Declarables masDeferralQueues(MasSchedulerProperties masSchedulerProperties) {
+    if (!masSchedulerProperties.getRateLimit().isEnabled()) {
+      return new Declarables();
+    }
+    var masScheduler = rabbitMQProperties.getMasScheduler();
+    return new Declarables(
+        QueueBuilder.durable(masScheduler.getDelayQueueName())
+            .quorum()
+            .deadLetterExchange("")
+            .deadLetterRoutingKey(masScheduler.getDeferredQueueName())
+            .build(),
+        QueueBuilder.durable(masScheduler.getDeferredQueueName())
+            .quorum()
+            .build());
+  }
+
   @Bean
   public RabbitTemplate compressedTemplate(ConnectionFactory connectionFactory,
       MessageCompressionComponent compressedMessageConverter) {
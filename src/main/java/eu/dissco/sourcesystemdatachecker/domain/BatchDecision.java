@@ -0,0 +1,20 @@
+package eu.dissco.sourcesystemdatachecker.domain;
+
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import java.util.Map;
+import java.util.Set;
+
+// What to write and publish for a batch, once all of its lookups are done
+public record BatchDecision(
+    // Maps the ID of unchanged specimens to their event
+    Map<String, DigitalSpecimenEvent> unchangedSpecimens,
+    Set<String> unchangedMediaIds,
+    Set<DigitalSpecimenEvent> newOrChangedSpecimens,
+    Set<DigitalMediaEvent> newOrChangedMedia,
+    // Filtered media, of which the MASs forced on unchanged media are scheduled
+    FilteredDigtialMedia forcedMasMedia
+) {
+
+}
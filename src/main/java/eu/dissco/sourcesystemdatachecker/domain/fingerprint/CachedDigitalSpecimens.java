@@ -0,0 +1,14 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import java.util.Map;
+import java.util.Set;
+
+// Specimens (and all their media) confirmed unchanged by the fingerprint cache
+public record CachedDigitalSpecimens(
+    Map<String, DigitalSpecimenEvent> unchangedSpecimens,
+    Set<String> unchangedMediaIds,
+    Map<String, Set<String>> forcedMasForUnchangedMedia
+) {
+
+}
@@ -0,0 +1,10 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import java.util.UUID;
+
+public record MediaFingerprint(
+    String id,
+    UUID originalDataFingerprint
+) {
+
+}
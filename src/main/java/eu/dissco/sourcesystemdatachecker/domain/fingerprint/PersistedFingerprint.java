@@ -0,0 +1,10 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import java.time.Instant;
+
+public record PersistedFingerprint<T>(
+    T fingerprint,
+    Instant writtenAt
+) {
+
+}
@@ -0,0 +1,13 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+/*
+  Payload of a record version notification. The local ID is the physical specimen ID for
+  specimens, and the media URL for media.
+ */
+public record RecordVersionNotification(
+    String table,
+    String sourceSystemId,
+    String localId
+) {
+
+}
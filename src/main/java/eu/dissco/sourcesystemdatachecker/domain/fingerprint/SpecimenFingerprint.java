@@ -0,0 +1,11 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import java.util.UUID;
+
+public record SpecimenFingerprint(
+    String id,
+    UUID originalDataFingerprint,
+    UUID mediaSetFingerprint
+) {
+
+}
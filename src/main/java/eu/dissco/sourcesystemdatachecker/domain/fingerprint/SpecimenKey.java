@@ -0,0 +1,8 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+public record SpecimenKey(
+    String sourceSystemId,
+    String physicalSpecimenId
+) {
+
+}
@@ -0,0 +1,11 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import tools.jackson.databind.JsonNode;
+
+public record StoredMedia(
+    String id,
+    String accessUri,
+    JsonNode originalData
+) {
+
+}
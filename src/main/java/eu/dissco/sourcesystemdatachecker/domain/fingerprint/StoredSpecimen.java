@@ -0,0 +1,13 @@
+package eu.dissco.sourcesystemdatachecker.domain.fingerprint;
+
+import java.util.Set;
+import tools.jackson.databind.JsonNode;
+
+public record StoredSpecimen(
+    String id,
+    String physicalSpecimenId,
+    JsonNode originalData,
+    Set<String> mediaUris
+) {
+
+}
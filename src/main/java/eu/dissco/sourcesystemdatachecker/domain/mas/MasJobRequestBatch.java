@@ -0,0 +1,13 @@
+package eu.dissco.sourcesystemdatachecker.domain.mas;
+
+import java.util.List;
+
+public record MasJobRequestBatch(
+    String masId,
+    List<String> targetIds,
+    boolean batching,
+    String agentId,
+    MjrTargetType targetType
+) {
+
+}
@@ -0,0 +1,9 @@
+package eu.dissco.sourcesystemdatachecker.domain.media;
+
+// A media event standing in for all events with its access URI, of which there were variants
+public record CoalescedDigitalMedia(
+    DigitalMediaEvent digitalMediaEvent,
+    int variants
+) {
+
+}
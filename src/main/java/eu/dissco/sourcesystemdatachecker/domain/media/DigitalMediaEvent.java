@@ -1,5 +1,6 @@
 package eu.dissco.sourcesystemdatachecker.domain.media;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Set;
 
@@ -7,7 +8,15 @@ public record DigitalMediaEvent(
     Set<String> masList,
     @JsonProperty("digitalMedia")
     DigitalMediaWrapper digitalMediaWrapper,
-    Boolean forceMasSchedule
+    Boolean forceMasSchedule,
+    // Only set on a reference to the stored media, which the processing service keeps as it is
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    MediaReference mediaReference
 ) {
 
+  public DigitalMediaEvent(Set<String> masList, DigitalMediaWrapper digitalMediaWrapper,
+      Boolean forceMasSchedule) {
+    this(masList, digitalMediaWrapper, forceMasSchedule, null);
+  }
+
 }
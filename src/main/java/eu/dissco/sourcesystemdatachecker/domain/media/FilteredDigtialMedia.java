@@ -1,10 +1,13 @@
 package eu.dissco.sourcesystemdatachecker.domain.media;
 
+import java.util.Map;
 import java.util.Set;
 
 public record FilteredDigtialMedia(
     Set<DigitalMediaEvent> newOrChangedMedia,
-    Set<DigitalMediaRecord> unchangedMedia
+    Set<DigitalMediaRecord> unchangedMedia,
+    // Maps the ID of unchanged media to the MASs forced on it, indexed while filtering
+    Map<String, Set<String>> forcedMasForUnchangedMedia
 ) {
 
 }
@@ -0,0 +1,13 @@
+package eu.dissco.sourcesystemdatachecker.domain.media;
+
+/*
+  Marks a media event as a reference to the stored media. Version 1 of the payload has only the
+  @id, ac:accessURI and ods:sourceSystemID attributes, and no original attributes.
+ */
+public record MediaReference(
+    int version
+) {
+
+  public static final MediaReference CURRENT = new MediaReference(1);
+
+}
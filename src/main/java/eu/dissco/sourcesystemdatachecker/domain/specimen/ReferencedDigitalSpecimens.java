@@ -0,0 +1,11 @@
+package eu.dissco.sourcesystemdatachecker.domain.specimen;
+
+import java.util.Set;
+
+// Changed specimens of which the unchanged media are replaced by a reference
+public record ReferencedDigitalSpecimens(
+    Set<DigitalSpecimenEvent> specimens,
+    Set<String> unchangedMediaIds
+) {
+
+}
@@ -0,0 +1,74 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "fingerprint-cache")
+public class FingerprintCacheProperties {
+
+  private boolean enabled = false;
+
+  @NotNull
+  private Duration ttl = Duration.ofHours(24);
+
+  // Approximate maximum size of the specimen and media caches together, in bytes
+  @Positive
+  private long maxWeight = 256L * 1024 * 1024;
+
+  private Invalidation invalidation = new Invalidation();
+  private Persistent persistent = new Persistent();
+
+  /*
+    Evicts cache entries when the processing service writes a new version of a specimen or media
+    object. Notifications are sent on a Postgres channel by a trigger on the record tables.
+   */
+  @Data
+  @Validated
+  public static class Invalidation {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String channel = "dissco_record_version";
+
+    // Maximum time to wait for notifications before checking the connection again
+    @NotNull
+    private Duration pollTimeout = Duration.ofSeconds(5);
+
+    @NotNull
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+
+    @NotNull
+    private Duration maxReconnectDelay = Duration.ofMinutes(1);
+  }
+
+  /*
+    Second tier behind the in-heap cache, kept in memory-mapped files so it survives restarts.
+    On startup, entries of records modified since the previous start are evicted.
+   */
+  @Data
+  @Validated
+  public static class Persistent {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String directory = "fingerprint-store";
+
+    // Number of slots of the specimen and of the media table, rounded up to a power of two
+    @Positive
+    private long capacity = 4L * 1024 * 1024;
+
+    // Above this number of modified records the store is cleared instead of validated
+    @Positive
+    private int maxStartupEvictions = 1_000_000;
+  }
+
+}
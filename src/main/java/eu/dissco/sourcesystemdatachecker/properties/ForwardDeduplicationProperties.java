@@ -0,0 +1,26 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "forward-deduplication")
+public class ForwardDeduplicationProperties {
+
+  // Drops new or changed records that were forwarded with identical content within the window
+  private boolean enabled = false;
+
+  // Should cover the time the processing service takes to write a forwarded record
+  @NotNull
+  private Duration window = Duration.ofMinutes(30);
+
+  // Each remembered record takes about 250 bytes of heap
+  @Positive
+  private int maxEntries = 100_000;
+
+}
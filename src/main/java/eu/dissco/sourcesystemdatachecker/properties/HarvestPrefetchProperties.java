@@ -0,0 +1,36 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "harvest-prefetch")
+public class HarvestPrefetchProperties {
+
+  private boolean enabled = false;
+
+  // Number of events of one source system in a batch that marks the start of a harvest
+  @Positive
+  private int minBatchSize = 100;
+
+  // A prefetched source system is dropped when no events were received for this long
+  @NotNull
+  private Duration idleTimeout = Duration.ofMinutes(10);
+
+  // Number of rows fetched per round trip of the server-side cursor
+  @Positive
+  private int fetchSize = 5_000;
+
+  // Memory budget of all prefetched source systems together, in bytes
+  @Positive
+  private long maxMemory = 128L * 1024 * 1024;
+
+  @Positive
+  private int maxConcurrentLoads = 2;
+
+}
@@ -0,0 +1,19 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "key-partitioning")
+public class KeyPartitioningProperties {
+
+  // Processes each specimen on a fixed lane, so consumers can safely run concurrently
+  private boolean enabled = false;
+
+  @Positive
+  private int lanes = Runtime.getRuntime().availableProcessors();
+
+}
@@ -0,0 +1,39 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "known-record-filter")
+public class KnownRecordFilterProperties {
+
+  private boolean enabled = false;
+
+  // Fraction of new records that are still looked up in the database
+  @Positive
+  @DecimalMax("0.5")
+  private double falsePositiveRate = 0.01;
+
+  // Maximum size of the filters of all source systems together, in bytes
+  @Positive
+  private long maxMemory = 64L * 1024 * 1024;
+
+  // Filters are sized for at least this many records, so a harvest can add new records
+  @Positive
+  private int minExpectedRecords = 100_000;
+
+  // Filters are rebuilt after this time, to include records written by other instances
+  @NotNull
+  private Duration rebuildInterval = Duration.ofHours(6);
+
+  // Number of rows fetched per round trip of the server-side cursor
+  @Positive
+  private int fetchSize = 10_000;
+
+}
@@ -0,0 +1,58 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "mas-scheduler")
+public class MasSchedulerProperties {
+
+  private Aggregation aggregation = new Aggregation();
+  private Deduplication deduplication = new Deduplication();
+  private RateLimit rateLimit = new RateLimit();
+
+  @Data
+  @Validated
+  public static class Aggregation {
+
+    // When enabled, forced MAS jobs are grouped per MAS into MasJobRequestBatch messages
+    private boolean enabled = false;
+
+    @Positive
+    private int maxTargets = 500;
+  }
+
+  @Data
+  @Validated
+  public static class Deduplication {
+
+    // Suppresses identical MAS job requests that were already published within the window
+    private boolean enabled = false;
+
+    @NotNull
+    private Duration window = Duration.ofHours(1);
+
+    @Positive
+    private int maxEntries = 100_000;
+  }
+
+  @Data
+  @Validated
+  public static class RateLimit {
+
+    // Limits the rate of forced MAS jobs per MAS, deferring jobs that exceed the limit
+    private boolean enabled = false;
+
+    @Positive
+    private double permitsPerSecond = 10;
+
+    @Positive
+    private int burst = 100;
+  }
+
+}
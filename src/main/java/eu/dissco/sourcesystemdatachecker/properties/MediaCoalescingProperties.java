@@ -0,0 +1,26 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "media-coalescing")
+public class MediaCoalescingProperties {
+
+  // Compares and publishes media shared by several unchanged specimens of a batch only once
+  private boolean enabled = false;
+
+  @NotNull
+  private EntityRelationshipRule entityRelationships = EntityRelationshipRule.FIRST;
+
+  public enum EntityRelationshipRule {
+    // Keeps the entity relationships of the first event of the media
+    FIRST,
+    // Keeps the entity relationships of all events of the media
+    UNION
+  }
+
+}
@@ -0,0 +1,15 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "media-reference")
+public class MediaReferenceProperties {
+
+  // Replaces unchanged media of changed specimens by a reference to the stored media
+  private boolean enabled = false;
+
+}
@@ -1,10 +1,16 @@
 package eu.dissco.sourcesystemdatachecker.properties;
 
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.time.Duration;
+import java.util.List;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 @Data
@@ -12,13 +18,221 @@ import org.springframework.validation.annotation.Validated;
 @ConfigurationProperties(prefix = "rabbitmq")
 public class RabbitMqProperties {
 
+  @NotBlank
+  private String queueName = "source-system-data-checker-queue";
+
   @Positive
   private int batchSize = 500;
 
+  @Positive
+  private int concurrency = 1;
+
+  private Priority priority = new Priority();
+  private Backpressure backpressure = new Backpressure();
+  private Pipeline pipeline = new Pipeline();
+  private AdaptiveBatch adaptiveBatch = new AdaptiveBatch();
+  private ByteBudget byteBudget = new ByteBudget();
+  private Sharding sharding = new Sharding();
+  private Stream stream = new Stream();
   private NameUsage nameUsage = new NameUsage();
   private Media media = new Media();
   private MasScheduler masScheduler = new MasScheduler();
 
+  /*
+    Separate lane for small, urgent events (e.g. re-checks and forced MAS requests), so they are not
+    queued behind bulk harvests. Each lane has its own consumers; the concurrency of the lanes sets
+    their relative share of processing.
+   */
+  @Data
+  @Validated
+  public static class Priority {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String queueName = "source-system-data-checker-priority-queue";
+
+    @Positive
+    private int batchSize = 50;
+
+    @Positive
+    private int concurrency = 2;
+  }
+
+  /*
+    Pauses the bulk lane while any of the downstream queues holds more than the high watermark,
+    and resumes it once all of them are below the low watermark
+   */
+  @Data
+  @Validated
+  public static class Backpressure {
+
+    private boolean enabled = false;
+
+    @NotEmpty
+    private List<String> queueNames = List.of("name-usage-service-queue", "digital-media-queue");
+
+    @Positive
+    private long highWatermark = 1_000_000;
+
+    @PositiveOrZero
+    private long lowWatermark = 500_000;
+
+    @NotNull
+    private Duration sampleInterval = Duration.ofSeconds(30);
+
+    // Time a pause waits for the batch in progress, before its channel is closed and it is requeued
+    @NotNull
+    private Duration shutdownTimeout = Duration.ofMinutes(1);
+
+    @AssertTrue(message = "The low watermark must be below the high watermark")
+    public boolean isLowWatermarkBelowHighWatermark() {
+      return lowWatermark < highWatermark;
+    }
+  }
+
+  /*
+    Decides the next batch of the bulk lane while the previous one is being emitted. Batches are
+    acknowledged once emitted, so the lane switches to manual acknowledgements.
+   */
+  @Data
+  @Validated
+  public static class Pipeline {
+
+    private boolean enabled = false;
+
+    // Number of batches waiting between two stages
+    @Positive
+    private int queueCapacity = 1;
+  }
+
+  /*
+    Adjusts the batch size of the bulk lane after every batch, towards the size that is handled
+    within the target latency, and halves it while the heap is fuller than the maximum usage.
+    The batch size configured above is the starting point.
+   */
+  @Data
+  @Validated
+  public static class AdaptiveBatch {
+
+    private boolean enabled = false;
+
+    @Positive
+    private int minBatchSize = 50;
+
+    @Positive
+    private int maxBatchSize = 2000;
+
+    @NotNull
+    private Duration targetLatency = Duration.ofSeconds(5);
+
+    // Fraction of the maximum heap in use after the last collection above which batches shrink
+    @Positive
+    private double maxHeapUsage = 0.8;
+
+    // Time to wait for a next message before a batch that is not full is handled
+    @NotNull
+    private Duration minReceiveTimeout = Duration.ofMillis(100);
+
+    @NotNull
+    private Duration maxReceiveTimeout = Duration.ofSeconds(1);
+  }
+
+  /*
+    Splits a received batch into parts whose decompressed messages together stay within the budget
+    in bytes. The parts are decoded and handled one after the other, so only one part is held in
+    memory as events. A message above the budget is handled on its own.
+   */
+  @Data
+  @Validated
+  public static class ByteBudget {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private DataSize maxBatchSize = DataSize.ofMegabytes(32);
+  }
+
+  /*
+    Routes the inbound events over a fixed number of shard queues with a consistent hash exchange,
+    so a specimen always ends up in the same shard. Each replica consumes the shards whose number
+    modulo the number of replicas equals its index, so its caches only see its own specimens.
+   */
+  @Data
+  @Validated
+  public static class Sharding {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String exchangeName = "source-system-data-checker-sharded-exchange";
+
+    @NotBlank
+    private String queuePrefix = "source-system-data-checker-shard-";
+
+    // Header holding the physical specimen id, if the events are not published with it as key
+    @NotNull
+    private String hashHeader = "";
+
+    @Positive
+    private int shards = 16;
+
+    @Positive
+    private int replicas = 1;
+
+    // For example the ordinal of the pod in a stateful set
+    @PositiveOrZero
+    private int replicaIndex = 0;
+
+    // Stand by for the shards of the other replicas, and take them over while their replica is gone
+    private boolean failover = true;
+  }
+
+  /*
+    Consumes the inbound events from a RabbitMQ stream instead of a queue. The consumer stores the
+    offset of every handled batch on the broker and resumes after it. Messages that fail while
+    others succeed are published to the dead letter queue. Connection settings are in
+    spring.rabbitmq.stream.
+   */
+  @Data
+  @Validated
+  public static class Stream {
+
+    private boolean enabled = false;
+
+    @NotBlank
+    private String streamName = "source-system-data-checker-stream";
+
+    // Name the offset is stored under
+    @NotBlank
+    private String consumerName = "source-system-data-checker";
+
+    @Positive
+    private int batchSize = 500;
+
+    // Time to wait for a batch to fill before it is handled
+    @NotNull
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    @NotNull
+    private Duration retryInterval = Duration.ofSeconds(10);
+
+    // Retries of a failed batch, before its messages are handled one by one
+    @PositiveOrZero
+    private int maxRetries = 3;
+
+    // The interval doubles up to this while every message of a batch fails
+    @NotNull
+    private Duration maxRetryInterval = Duration.ofMinutes(5);
+
+    @NotBlank
+    private String deadLetterQueueName = "source-system-data-checker-stream-dead-letter-queue";
+
+    // Replays the stream from this offset, without storing offsets
+    @PositiveOrZero
+    private Long replayFrom;
+  }
+
   @Data
   @Validated
   public static class NameUsage {
@@ -51,6 +265,17 @@ public class RabbitMqProperties {
 
     @NotNull
     private String routingKeyName = "mas-scheduler";
+
+    @NotNull
+    private String batchRoutingKeyName = "mas-scheduler-batch";
+
+    // Forced MAS jobs above the rate limit wait here, until they expire
+    @NotBlank
+    private String delayQueueName = "source-system-data-checker-mas-delay-queue";
+
+    // Expired jobs are dead-lettered here, and submitted again
+    @NotBlank
+    private String deferredQueueName = "source-system-data-checker-mas-deferred-queue";
   }
 
 }
@@ -0,0 +1,33 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "read-replica")
+public class ReadReplicaProperties {
+
+  // Runs the lookups on a read replica, while it is within the maximum lag
+  private boolean enabled = false;
+
+  private String url;
+
+  private String username;
+
+  private String password;
+
+  @Positive
+  private int maximumPoolSize = 10;
+
+  @NotNull
+  private Duration maxLag = Duration.ofSeconds(30);
+
+  @NotNull
+  private Duration lagCheckInterval = Duration.ofSeconds(10);
+
+}
@@ -0,0 +1,15 @@
+package eu.dissco.sourcesystemdatachecker.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "stage-concurrency")
+public class StageConcurrencyProperties {
+
+  // Runs the independent stages of a batch at the same time, on virtual threads
+  private boolean enabled = false;
+
+}
@@ -2,12 +2,16 @@ package eu.dissco.sourcesystemdatachecker.repository;
 
 import static eu.dissco.sourcesystemdatachecker.database.jooq.Tables.DIGITAL_MEDIA_OBJECT;
 
+import eu.dissco.sourcesystemdatachecker.component.ReadReplicaComponent;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredMedia;
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
 import eu.dissco.sourcesystemdatachecker.schema.DigitalMedia;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,13 +27,30 @@ public class MediaRepository {
 
   private final DSLContext context;
   private final JsonMapper mapper;
+  private final ReadReplicaComponent readReplicaComponent;
 
-  // Maps Media URI to its DOI
-  public Map<String, DigitalMediaRecord> getExistingDigitalMedia(Set<String> mediaURIs,
+  // Maps Media URI to its DOI, for the given media IDs only
+  public Map<String, DigitalMediaRecord> getExistingDigitalMedia(Set<String> mediaIds,
+      Set<String> mediaURIs, Set<String> sourceSystemIds) {
+    return readReplicaComponent.getReadContext().select(DIGITAL_MEDIA_OBJECT.asterisk())
+        .from(DIGITAL_MEDIA_OBJECT)
+        .where(DIGITAL_MEDIA_OBJECT.ID.in(mediaIds))
+        .and(DIGITAL_MEDIA_OBJECT.MEDIA_URL.in(mediaURIs))
+        .and(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID.in(sourceSystemIds))
+        .fetch(this::mapToDigitalMediaRecord)
+        .stream()
+        .collect(Collectors.toMap(
+            DigitalMediaRecord::accessURI,
+            Function.identity()
+        ));
+  }
+
+  // Maps Media URI to the media, for all given media IDs regardless of their URI
+  public Map<String, DigitalMediaRecord> getExistingDigitalMedia(Set<String> mediaIds,
       Set<String> sourceSystemIds) {
-    return context.select(DIGITAL_MEDIA_OBJECT.asterisk())
+    return readReplicaComponent.getReadContext().select(DIGITAL_MEDIA_OBJECT.asterisk())
         .from(DIGITAL_MEDIA_OBJECT)
-        .where(DIGITAL_MEDIA_OBJECT.MEDIA_URL.in(mediaURIs))
+        .where(DIGITAL_MEDIA_OBJECT.ID.in(mediaIds))
         .and(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID.in(sourceSystemIds))
         .fetch(this::mapToDigitalMediaRecord)
         .stream()
@@ -47,6 +68,54 @@ public class MediaRepository {
         mapper.readTree(dbRecord.get(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA).data()));
   }
 
+  /*
+    Streams the stored state of all media of a source system through a server-side cursor, so the
+    result is never held in memory. Stops as soon as the consumer returns false.
+   */
+  public void streamStoredMedia(String sourceSystemId, int fetchSize,
+      Predicate<StoredMedia> consumer) {
+    readReplicaComponent.getReadContext().transaction(configuration -> {
+      try (var cursor = configuration.dsl()
+          .select(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.MEDIA_URL,
+              DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA)
+          .from(DIGITAL_MEDIA_OBJECT)
+          .where(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID.eq(sourceSystemId))
+          .fetchSize(fetchSize)
+          .fetchLazy()) {
+        for (var dbRecord : cursor) {
+          if (!consumer.test(new StoredMedia(
+              dbRecord.get(DIGITAL_MEDIA_OBJECT.ID),
+              dbRecord.get(DIGITAL_MEDIA_OBJECT.MEDIA_URL),
+              mapper.readTree(dbRecord.get(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA).data())))) {
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  /*
+    Streams the keys of all media modified after the given time. Runs on the primary, as
+    modifications missed on a lagging replica would never be seen again.
+   */
+  public void streamModifiedSince(Instant since, int fetchSize, Predicate<MediaKey> consumer) {
+    context.transaction(configuration -> {
+      try (var cursor = configuration.dsl()
+          .select(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID, DIGITAL_MEDIA_OBJECT.MEDIA_URL)
+          .from(DIGITAL_MEDIA_OBJECT)
+          .where(DIGITAL_MEDIA_OBJECT.MODIFIED.gt(since))
+          .fetchSize(fetchSize)
+          .fetchLazy()) {
+        for (var dbRecord : cursor) {
+          if (!consumer.test(new MediaKey(dbRecord.get(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID),
+              dbRecord.get(DIGITAL_MEDIA_OBJECT.MEDIA_URL)))) {
+            return;
+          }
+        }
+      }
+    });
+  }
+
   public void updateLastChecked(Set<String> currentDigitalMedia) {
     context.update(DIGITAL_MEDIA_OBJECT)
         .set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, Instant.now())
@@ -1,17 +1,25 @@
 package eu.dissco.sourcesystemdatachecker.repository;
 
+import static eu.dissco.sourcesystemdatachecker.database.jooq.Tables.DIGITAL_MEDIA_OBJECT;
 import static eu.dissco.sourcesystemdatachecker.database.jooq.Tables.DIGITAL_SPECIMEN;
 
+import eu.dissco.sourcesystemdatachecker.component.ReadReplicaComponent;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredSpecimen;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenWrapper;
 import eu.dissco.sourcesystemdatachecker.schema.DigitalSpecimen;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
 import org.jooq.Record;
+import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -20,12 +28,33 @@ import tools.jackson.databind.json.JsonMapper;
 @Slf4j
 public class SpecimenRepository {
 
+  // Related resource URIs of the media entity relationships of a specimen
+  private static final String MEDIA_ER_PATH = "$.\"ods:hasEntityRelationships\"[*] "
+      + "? (@.\"dwc:relationshipOfResource\" == \"hasDigitalMedia\").\"ods:relatedResourceURI\"";
+  /*
+    Access URIs of the stored media of the same source system that the specimen relates to, the
+    media set of ServiceUtils.getStoredMediaUris. Resolved per specimen with the primary key of
+    the media, so no media need to be held in memory to resolve them.
+   */
+  private static final Field<JSONB> MEDIA_URIS = DSL.field(
+          "(select coalesce(jsonb_agg(distinct {0}), '[]'::jsonb) from {1} "
+              + "where {0} is not null and {2} = {3} and {4} in "
+              + "(select regexp_replace(media_id, {5}, '') "
+              + "from jsonb_array_elements_text(jsonb_path_query_array({6}, {7}::jsonpath)) "
+              + "as media_id))",
+          JSONB.class, DIGITAL_MEDIA_OBJECT.MEDIA_URL, DIGITAL_MEDIA_OBJECT,
+          DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID, DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID,
+          DIGITAL_MEDIA_OBJECT.ID, DSL.val("^https://doi\\.org/"), DIGITAL_SPECIMEN.DATA,
+          DSL.val(MEDIA_ER_PATH))
+      .as("media_uris");
+
   private final DSLContext context;
   private final JsonMapper mapper;
+  private final ReadReplicaComponent readReplicaComponent;
 
   public List<DigitalSpecimenRecord> getDigitalSpecimens(Set<String> specimenList,
       Set<String> sourceSystemIdList) {
-    return context.select(DIGITAL_SPECIMEN.asterisk())
+    return readReplicaComponent.getReadContext().select(DIGITAL_SPECIMEN.asterisk())
         .from(DIGITAL_SPECIMEN)
         .where(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID.in(specimenList))
         .and(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID.in(sourceSystemIdList))
@@ -39,6 +68,86 @@ public class SpecimenRepository {
         .execute();
   }
 
+  /*
+    Streams the stored state of all specimens of a source system through a server-side cursor,
+    so the result is never held in memory. Stops as soon as the consumer returns false.
+   */
+  public void streamStoredSpecimens(String sourceSystemId, int fetchSize,
+      Predicate<StoredSpecimen> consumer) {
+    readReplicaComponent.getReadContext().transaction(configuration -> {
+      try (var cursor = configuration.dsl()
+          .select(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID,
+              DIGITAL_SPECIMEN.ORIGINAL_DATA, MEDIA_URIS)
+          .from(DIGITAL_SPECIMEN)
+          .where(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID.eq(sourceSystemId))
+          .fetchSize(fetchSize)
+          .fetchLazy()) {
+        for (var dbRecord : cursor) {
+          if (!consumer.test(mapToStoredSpecimen(dbRecord))) {
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  /*
+    Streams the keys of all specimens modified after the given time. Runs on the primary, as
+    modifications missed on a lagging replica would never be seen again.
+   */
+  public void streamModifiedSince(Instant since, int fetchSize, Predicate<SpecimenKey> consumer) {
+    context.transaction(configuration -> {
+      try (var cursor = configuration.dsl()
+          .select(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID, DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+          .from(DIGITAL_SPECIMEN)
+          .where(DIGITAL_SPECIMEN.MODIFIED.gt(since))
+          .fetchSize(fetchSize)
+          .fetchLazy()) {
+        for (var dbRecord : cursor) {
+          if (!consumer.test(new SpecimenKey(dbRecord.get(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID),
+              dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)))) {
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  // Runs on the primary, the known record filter must include every stored specimen
+  public int countSpecimens(String sourceSystemId) {
+    return context.fetchCount(DIGITAL_SPECIMEN,
+        DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID.eq(sourceSystemId));
+  }
+
+  // Streams the physical specimen IDs of all specimens of a source system
+  public void streamPhysicalSpecimenIds(String sourceSystemId, int fetchSize,
+      Predicate<String> consumer) {
+    context.transaction(configuration -> {
+      try (var cursor = configuration.dsl()
+          .select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+          .from(DIGITAL_SPECIMEN)
+          .where(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID.eq(sourceSystemId))
+          .fetchSize(fetchSize)
+          .fetchLazy()) {
+        for (var dbRecord : cursor) {
+          if (!consumer.test(dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID))) {
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  private StoredSpecimen mapToStoredSpecimen(Record dbRecord) {
+    var originalData = dbRecord.get(DIGITAL_SPECIMEN.ORIGINAL_DATA);
+    var mediaUris = dbRecord.get(MEDIA_URIS);
+    return new StoredSpecimen(
+        dbRecord.get(DIGITAL_SPECIMEN.ID),
+        dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID),
+        originalData == null ? null : mapper.readTree(originalData.data()),
+        mediaUris == null ? Set.of()
+            : Set.of(mapper.readValue(mediaUris.data(), String[].class)));
+  }
 
   private DigitalSpecimenRecord mapToDigitalSpecimenRecord(Record dbRecord) {
     var digitalSpecimenWrapper = new DigitalSpecimenWrapper(
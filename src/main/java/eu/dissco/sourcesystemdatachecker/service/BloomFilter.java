@@ -0,0 +1,97 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+  Bloom filter over strings. A negative answer is definite, a positive answer may be a false
+  positive. Bits are only ever set, so adds and lookups can run concurrently without locking.
+  Positions are derived from two 64-bit FNV-1a hashes with a murmur finalizer, combined with
+  double hashing.
+ */
+class BloomFilter {
+
+  private static final double LN_2 = Math.log(2);
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long FIRST_SEED = 0xcbf29ce484222325L;
+  private static final long SECOND_SEED = 0x9e3779b97f4a7c15L;
+
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+
+  private BloomFilter(int wordCount, int hashCount) {
+    this.words = new AtomicLongArray(wordCount);
+    this.bitCount = wordCount * 64L;
+    this.hashCount = hashCount;
+  }
+
+  static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    var wordCount = wordCount(expectedInsertions, falsePositiveRate);
+    var hashCount = (int) Math.round(wordCount * 64.0 / Math.max(expectedInsertions, 1) * LN_2);
+    return new BloomFilter(wordCount, Math.max(hashCount, 1));
+  }
+
+  // Size of a filter for the expected insertions, without allocating it
+  static long sizeInBytes(long expectedInsertions, double falsePositiveRate) {
+    return wordCount(expectedInsertions, falsePositiveRate) * 8L;
+  }
+
+  private static int wordCount(long expectedInsertions, double falsePositiveRate) {
+    var bits = Math.ceil(-Math.max(expectedInsertions, 1) * Math.log(falsePositiveRate)
+        / (LN_2 * LN_2));
+    return (int) Math.min(Math.max(Math.ceil(bits / 64), 1), Integer.MAX_VALUE - 8);
+  }
+
+  long sizeInBytes() {
+    return bitCount / 8;
+  }
+
+  void add(String value) {
+    var first = hash(value, FIRST_SEED);
+    var second = step(value);
+    for (int i = 0; i < hashCount; i++) {
+      var bit = Math.floorMod(first + i * second, bitCount);
+      var index = (int) (bit >>> 6);
+      var mask = 1L << bit;
+      long word;
+      do {
+        word = words.get(index);
+        if ((word & mask) != 0) {
+          break;
+        }
+      } while (!words.compareAndSet(index, word, word | mask));
+    }
+  }
+
+  boolean mightContain(String value) {
+    var first = hash(value, FIRST_SEED);
+    var second = step(value);
+    for (int i = 0; i < hashCount; i++) {
+      var bit = Math.floorMod(first + i * second, bitCount);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Never zero, so the positions of a value are not all the same bit
+  private static long step(String value) {
+    return hash(value, SECOND_SEED) | 1;
+  }
+
+  private static long hash(String value, long seed) {
+    var hash = seed;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+}
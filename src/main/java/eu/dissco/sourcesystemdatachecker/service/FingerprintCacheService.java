@@ -0,0 +1,367 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.hasForcedMas;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.CachedDigitalSpecimens;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.PersistedFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
+import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.FilteredDigitalSpecimens;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Keeps fingerprints of specimens and media known to be unchanged, so that re-harvested records
+  can be confirmed unchanged without querying the database.
+  A specimen is only taken from the cache if its original data, its set of media and all of its
+  media match the cache. Anything else is looked up in the database as usual.
+  Misses fall through to the persistent store, and then to fingerprints prefetched for a running
+  harvest.
+ */
+@Slf4j
+@Service
+public class FingerprintCacheService {
+
+  // Estimate of the record, key, UUID and cache node overhead of an entry
+  private static final int ENTRY_OVERHEAD = 160;
+  // How long an externally invalidated key is kept out of the cache, covers in-flight batches
+  private static final Duration INVALIDATION_GRACE = Duration.ofMinutes(5);
+  private static final int FETCH_SIZE = 5_000;
+
+  private final FingerprintCacheProperties properties;
+  private final HarvestPrefetchService harvestPrefetchService;
+  private final PersistentFingerprintStore persistentFingerprintStore;
+  private final SpecimenRepository specimenRepository;
+  private final MediaRepository mediaRepository;
+  private final Cache<SpecimenKey, SpecimenFingerprint> specimenCache;
+  private final Cache<MediaKey, MediaFingerprint> mediaCache;
+  private final Cache<Object, Boolean> recentlyInvalidated = Caffeine.newBuilder()
+      .expireAfterWrite(INVALIDATION_GRACE)
+      .maximumSize(100_000)
+      .build();
+
+  public FingerprintCacheService(FingerprintCacheProperties properties,
+      HarvestPrefetchService harvestPrefetchService,
+      PersistentFingerprintStore persistentFingerprintStore,
+      SpecimenRepository specimenRepository, MediaRepository mediaRepository,
+      MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.harvestPrefetchService = harvestPrefetchService;
+    this.persistentFingerprintStore = persistentFingerprintStore;
+    this.specimenRepository = specimenRepository;
+    this.mediaRepository = mediaRepository;
+    // Specimen and media caches share the weight budget equally
+    this.specimenCache = Caffeine.newBuilder()
+        .expireAfter(new WriteExpiry<SpecimenKey, SpecimenFingerprint>(properties.getTtl()))
+        .maximumWeight(properties.getMaxWeight() / 2)
+        .weigher((SpecimenKey key, SpecimenFingerprint value) ->
+            weigh(key.sourceSystemId(), key.physicalSpecimenId(), value.id()))
+        .recordStats()
+        .build();
+    this.mediaCache = Caffeine.newBuilder()
+        .expireAfter(new WriteExpiry<MediaKey, MediaFingerprint>(properties.getTtl()))
+        .maximumWeight(properties.getMaxWeight() / 2)
+        .weigher((MediaKey key, MediaFingerprint value) ->
+            weigh(key.sourceSystemId(), key.accessUri(), value.id()))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, specimenCache, "specimenFingerprints");
+    CaffeineCacheMetrics.monitor(meterRegistry, mediaCache, "mediaFingerprints");
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled() || harvestPrefetchService.isEnabled();
+  }
+
+  public CachedDigitalSpecimens getUnchangedSpecimens(Collection<DigitalSpecimenEvent> events) {
+    var unchangedSpecimens = new HashMap<String, DigitalSpecimenEvent>();
+    var unchangedMediaIds = new HashSet<String>();
+    var forcedMasForUnchangedMedia = new HashMap<String, Set<String>>();
+    if (!isEnabled()) {
+      return new CachedDigitalSpecimens(unchangedSpecimens, unchangedMediaIds,
+          forcedMasForUnchangedMedia);
+    }
+    harvestPrefetchService.observe(events);
+    for (var event : events) {
+      var cachedSpecimen = getSpecimen(specimenKey(event));
+      if (cachedSpecimen == null || !specimenMatches(event, cachedSpecimen)) {
+        continue;
+      }
+      var cachedMedia = getUnchangedMedia(event.digitalMediaEvents());
+      if (cachedMedia == null) {
+        continue;
+      }
+      unchangedSpecimens.put(cachedSpecimen.id(), event);
+      cachedMedia.forEach((mediaEvent, mediaId) -> {
+        unchangedMediaIds.add(mediaId);
+        if (hasForcedMas(mediaEvent)) {
+          forcedMasForUnchangedMedia.computeIfAbsent(mediaId, k -> new HashSet<>())
+              .addAll(mediaEvent.masList());
+        }
+      });
+    }
+    return new CachedDigitalSpecimens(unchangedSpecimens, unchangedMediaIds,
+        forcedMasForUnchangedMedia);
+  }
+
+  // Returns the media ID of every media event, or null if any of them is not cached as unchanged
+  private Map<DigitalMediaEvent, String> getUnchangedMedia(
+      Collection<DigitalMediaEvent> mediaEvents) {
+    var mediaIds = new IdentityHashMap<DigitalMediaEvent, String>();
+    for (var mediaEvent : mediaEvents) {
+      var cachedMedia = getMedia(mediaKey(mediaEvent));
+      if (cachedMedia == null || !cachedMedia.originalDataFingerprint()
+          .equals(fingerprint(mediaEvent.digitalMediaWrapper().originalAttributes()))) {
+        return null;
+      }
+      mediaIds.put(mediaEvent, cachedMedia.id());
+    }
+    return mediaIds;
+  }
+
+  /*
+    Returns the physical specimen IDs of stored specimens whose known set of media differs from
+    the incoming one, while their original data still matches. Their media ERs are changed, which
+    is decided with a single comparison instead of looking up their media.
+   */
+  public Set<String> getChangedMediaSets(Collection<DigitalSpecimenEvent> events) {
+    if (!isEnabled()) {
+      return Set.of();
+    }
+    var changedMediaSets = new HashSet<String>();
+    for (var event : events) {
+      var knownSpecimen = getSpecimen(specimenKey(event));
+      if (knownSpecimen != null && knownSpecimen.originalDataFingerprint()
+          .equals(fingerprint(event.digitalSpecimenWrapper().originalAttributes()))
+          && !knownSpecimen.mediaSetFingerprint().equals(mediaSetFingerprint(event))) {
+        changedMediaSets.add(event.digitalSpecimenWrapper().physicalSpecimenId());
+      }
+    }
+    return changedMediaSets;
+  }
+
+  private SpecimenFingerprint getSpecimen(SpecimenKey key) {
+    var cachedSpecimen = specimenCache.getIfPresent(key);
+    if (cachedSpecimen != null) {
+      return cachedSpecimen;
+    }
+    var storedSpecimen = persistentFingerprintStore.getSpecimen(key);
+    if (storedSpecimen != null) {
+      promote(specimenCache, key, storedSpecimen);
+      return storedSpecimen.fingerprint();
+    }
+    return harvestPrefetchService.getSpecimen(key);
+  }
+
+  private MediaFingerprint getMedia(MediaKey key) {
+    var cachedMedia = mediaCache.getIfPresent(key);
+    if (cachedMedia != null) {
+      return cachedMedia;
+    }
+    var storedMedia = persistentFingerprintStore.getMedia(key);
+    if (storedMedia != null) {
+      promote(mediaCache, key, storedMedia);
+      return storedMedia.fingerprint();
+    }
+    return harvestPrefetchService.getMedia(key);
+  }
+
+  // Caches a fingerprint of the persistent store until it would have expired there
+  private <K, V> void promote(Cache<K, V> cache, K key, PersistedFingerprint<V> stored) {
+    var remaining = properties.getTtl().minus(Duration.between(stored.writtenAt(), Instant.now()));
+    if (remaining.isPositive()) {
+      cache.policy().expireVariably().orElseThrow()
+          .put(key, stored.fingerprint(), remaining);
+    }
+  }
+
+  /*
+    Caches what the database confirmed as unchanged, and evicts what is about to be changed
+    downstream
+   */
+  public void update(FilteredDigitalSpecimens filteredSpecimens,
+      FilteredDigtialMedia filteredMedia) {
+    if (!isEnabled()) {
+      return;
+    }
+    filteredSpecimens.newOrChangedSpecimens().forEach(event -> {
+      invalidateSpecimen(specimenKey(event));
+      event.digitalMediaEvents().forEach(mediaEvent -> invalidateMedia(mediaKey(mediaEvent)));
+    });
+    filteredMedia.newOrChangedMedia()
+        .forEach(mediaEvent -> invalidateMedia(mediaKey(mediaEvent)));
+    if (!properties.isEnabled()) {
+      return;
+    }
+    filteredSpecimens.unchangedSpecimens().forEach((id, event) -> {
+      var key = specimenKey(event);
+      if (recentlyInvalidated.getIfPresent(key) == null) {
+        var specimenFingerprint = new SpecimenFingerprint(id,
+            fingerprint(event.digitalSpecimenWrapper().originalAttributes()),
+            mediaSetFingerprint(event));
+        specimenCache.put(key, specimenFingerprint);
+        persistentFingerprintStore.putSpecimen(key, specimenFingerprint);
+      }
+    });
+    filteredMedia.unchangedMedia().forEach(mediaRecord -> {
+      var key = mediaKey(mediaRecord);
+      if (recentlyInvalidated.getIfPresent(key) == null) {
+        var mediaFingerprint = new MediaFingerprint(mediaRecord.id(),
+            fingerprint(mediaRecord.originalAttributes()));
+        mediaCache.put(key, mediaFingerprint);
+        persistentFingerprintStore.putMedia(key, mediaFingerprint);
+      }
+    });
+  }
+
+  /*
+    Evicts a record of which a new version is being written. The key is also kept out of the
+    cache for a while, so a batch that read the previous version cannot put it back.
+   */
+  public void invalidateSpecimen(SpecimenKey key) {
+    recentlyInvalidated.put(key, Boolean.TRUE);
+    specimenCache.invalidate(key);
+    persistentFingerprintStore.removeSpecimen(key);
+    harvestPrefetchService.invalidateSpecimen(key);
+  }
+
+  public void invalidateMedia(MediaKey key) {
+    recentlyInvalidated.put(key, Boolean.TRUE);
+    mediaCache.invalidate(key);
+    persistentFingerprintStore.removeMedia(key);
+    harvestPrefetchService.invalidateMedia(key);
+  }
+
+  /*
+    Evicts the records modified since the given time from every tier, for when notifications of
+    new versions may have been missed. The persistent store is kept, apart from those records.
+   */
+  public void invalidateModifiedSince(Instant since) {
+    if (!isEnabled()) {
+      return;
+    }
+    var evictions = new AtomicLong();
+    specimenRepository.streamModifiedSince(since, FETCH_SIZE, key -> {
+      invalidateSpecimen(key);
+      evictions.incrementAndGet();
+      return true;
+    });
+    mediaRepository.streamModifiedSince(since, FETCH_SIZE, key -> {
+      invalidateMedia(key);
+      evictions.incrementAndGet();
+      return true;
+    });
+    log.info("Evicted {} records modified since {} from the fingerprint cache", evictions.get(),
+        since);
+  }
+
+  public void invalidateAll() {
+    specimenCache.invalidateAll();
+    mediaCache.invalidateAll();
+    persistentFingerprintStore.clear();
+    harvestPrefetchService.invalidateAll();
+    log.info("Cleared the fingerprint cache");
+  }
+
+  public Map<String, Object> getStatistics() {
+    return Map.of(
+        "enabled", properties.isEnabled(),
+        "specimens", getStatistics(specimenCache),
+        "media", getStatistics(mediaCache),
+        "persistent", persistentFingerprintStore.getStatistics(),
+        "harvests", harvestPrefetchService.getStatistics());
+  }
+
+  private static Map<String, Object> getStatistics(Cache<?, ?> cache) {
+    var stats = cache.stats();
+    return Map.of(
+        "size", cache.estimatedSize(),
+        "hitRate", stats.hitRate(),
+        "hitCount", stats.hitCount(),
+        "missCount", stats.missCount(),
+        "evictionCount", stats.evictionCount());
+  }
+
+  private static boolean specimenMatches(DigitalSpecimenEvent event,
+      SpecimenFingerprint cachedSpecimen) {
+    return cachedSpecimen.originalDataFingerprint()
+        .equals(fingerprint(event.digitalSpecimenWrapper().originalAttributes()))
+        && cachedSpecimen.mediaSetFingerprint().equals(mediaSetFingerprint(event));
+  }
+
+  /*
+    Only stored for specimens the database confirmed unchanged, whose incoming media equal the
+    stored media set of the specimen
+   */
+  private static UUID mediaSetFingerprint(DigitalSpecimenEvent event) {
+    return fingerprint(event.digitalMediaEvents().stream()
+        .map(ServiceUtils::getAccessUri)
+        .collect(Collectors.toSet()));
+  }
+
+  private static SpecimenKey specimenKey(DigitalSpecimenEvent event) {
+    return new SpecimenKey(event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID(),
+        event.digitalSpecimenWrapper().physicalSpecimenId());
+  }
+
+  private static MediaKey mediaKey(DigitalMediaEvent mediaEvent) {
+    return new MediaKey(mediaEvent.digitalMediaWrapper().attributes().getOdsSourceSystemID(),
+        getAccessUri(mediaEvent));
+  }
+
+  private static MediaKey mediaKey(DigitalMediaRecord mediaRecord) {
+    return new MediaKey(mediaRecord.attributes().getOdsSourceSystemID(),
+        mediaRecord.accessURI());
+  }
+
+  private static int weigh(String sourceSystemId, String localId, String id) {
+    return ENTRY_OVERHEAD + sourceSystemId.length() + localId.length() + id.length();
+  }
+
+  // Expires an entry the ttl after it was last written, like expireAfterWrite
+  private record WriteExpiry<K, V>(Duration ttl) implements Expiry<K, V> {
+
+    @Override
+    public long expireAfterCreate(K key, V value, long currentTime) {
+      return ttl.toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+      return ttl.toNanos();
+    }
+
+    @Override
+    public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import tools.jackson.databind.JsonNode;
+
+/*
+  128-bit fingerprints of original data and media sets, so records can be compared without
+  keeping the data itself. Object properties and sets are fingerprinted order independently,
+  in line with how JsonNode and Set equality work.
+ */
+public class FingerprintUtils {
+
+  private static final ThreadLocal<MessageDigest> DIGEST =
+      ThreadLocal.withInitial(FingerprintUtils::newDigest);
+
+  private FingerprintUtils() {
+    // Utility class
+  }
+
+  public static UUID fingerprint(JsonNode node) {
+    var digest = DIGEST.get();
+    digest.reset();
+    if (node != null) {
+      update(digest, node);
+    }
+    return toUuid(digest.digest());
+  }
+
+  public static UUID fingerprint(Collection<String> values) {
+    var digest = DIGEST.get();
+    digest.reset();
+    values.stream().sorted().forEach(value -> update(digest, value));
+    return toUuid(digest.digest());
+  }
+
+  // Order dependent fingerprint of a composite key
+  public static UUID fingerprint(String first, String second) {
+    var digest = DIGEST.get();
+    digest.reset();
+    update(digest, first);
+    update(digest, second);
+    return toUuid(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, JsonNode node) {
+    if (node.isObject()) {
+      digest.update((byte) '{');
+      node.properties().stream()
+          .sorted(Map.Entry.comparingByKey())
+          .forEach(property -> {
+            update(digest, property.getKey());
+            update(digest, property.getValue());
+          });
+      digest.update((byte) '}');
+    } else if (node.isArray()) {
+      digest.update((byte) '[');
+      for (var element : node) {
+        update(digest, element);
+      }
+      digest.update((byte) ']');
+    } else {
+      update(digest, node.toString());
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    digest.update((byte) (bytes.length >>> 24));
+    digest.update((byte) (bytes.length >>> 16));
+    digest.update((byte) (bytes.length >>> 8));
+    digest.update((byte) bytes.length);
+    digest.update(bytes);
+  }
+
+  private static UUID toUuid(byte[] hash) {
+    var buffer = ByteBuffer.wrap(hash);
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+}
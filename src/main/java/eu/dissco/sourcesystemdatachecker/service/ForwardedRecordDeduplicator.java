@@ -0,0 +1,128 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.hasForcedMas;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.ForwardDeduplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.UUID;
+import org.springframework.stereotype.Service;
+
+/*
+  Remembers which new or changed specimens and media were forwarded recently, with a fingerprint
+  of their content. When a source system is re-harvested before the processing service has
+  written the previous version, the database still shows the record as new or changed, and the
+  identical record would be forwarded again.
+  Events that request a forced MAS are never considered duplicates. The records are kept in a
+  bounded cache, so the publishing threads do not wait for each other.
+ */
+@Service
+public class ForwardedRecordDeduplicator {
+
+  private final ForwardDeduplicationProperties properties;
+  private final Cache<Object, UUID> forwardedRecords;
+  private final Counter specimenHits;
+  private final Counter mediaHits;
+
+  public ForwardedRecordDeduplicator(ForwardDeduplicationProperties properties,
+      MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.forwardedRecords = Caffeine.newBuilder()
+        .expireAfterWrite(properties.getWindow())
+        .maximumSize(properties.getMaxEntries())
+        .build();
+    this.specimenHits = meterRegistry.counter("forward.deduplication.hits", "type", "specimen");
+    this.mediaHits = meterRegistry.counter("forward.deduplication.hits", "type", "media");
+    Gauge.builder("forward.deduplication.size", this, ForwardedRecordDeduplicator::size)
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  // Returns true if the specimen was forwarded with identical content within the window
+  public boolean isDuplicate(DigitalSpecimenEvent event) {
+    if (requestsForcedMas(event)) {
+      return false;
+    }
+    var duplicate = isDuplicate(specimenKey(event), contentFingerprint(event));
+    if (duplicate) {
+      specimenHits.increment();
+    }
+    return duplicate;
+  }
+
+  public boolean isDuplicate(DigitalMediaEvent event) {
+    if (hasForcedMas(event)) {
+      return false;
+    }
+    var duplicate = isDuplicate(mediaKey(event), contentFingerprint(event));
+    if (duplicate) {
+      mediaHits.increment();
+    }
+    return duplicate;
+  }
+
+  // Should only be called once the event has been published
+  public void register(DigitalSpecimenEvent event) {
+    register(specimenKey(event), contentFingerprint(event));
+  }
+
+  public void register(DigitalMediaEvent event) {
+    register(mediaKey(event), contentFingerprint(event));
+  }
+
+  private boolean isDuplicate(Object key, UUID fingerprint) {
+    return fingerprint.equals(forwardedRecords.getIfPresent(key));
+  }
+
+  // Replacing the fingerprint also restarts the window of the record
+  private void register(Object key, UUID fingerprint) {
+    forwardedRecords.put(key, fingerprint);
+  }
+
+  int size() {
+    forwardedRecords.cleanUp();
+    return (int) forwardedRecords.estimatedSize();
+  }
+
+  private static boolean requestsForcedMas(DigitalSpecimenEvent event) {
+    return Boolean.TRUE.equals(event.forceMasSchedule())
+        || event.digitalMediaEvents().stream().anyMatch(ServiceUtils::hasForcedMas);
+  }
+
+  // Covers the original data of the specimen, and the URL and original data of all its media
+  private static UUID contentFingerprint(DigitalSpecimenEvent event) {
+    var parts = new ArrayList<String>();
+    parts.add(fingerprint(event.digitalSpecimenWrapper().originalAttributes()).toString());
+    event.digitalMediaEvents().forEach(mediaEvent -> parts.add(getAccessUri(mediaEvent) + " "
+        + fingerprint(mediaEvent.digitalMediaWrapper().originalAttributes())));
+    return fingerprint(parts);
+  }
+
+  private static UUID contentFingerprint(DigitalMediaEvent event) {
+    return fingerprint(event.digitalMediaWrapper().originalAttributes());
+  }
+
+  private static SpecimenKey specimenKey(DigitalSpecimenEvent event) {
+    return new SpecimenKey(event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID(),
+        event.digitalSpecimenWrapper().physicalSpecimenId());
+  }
+
+  private static MediaKey mediaKey(DigitalMediaEvent event) {
+    return new MediaKey(event.digitalMediaWrapper().attributes().getOdsSourceSystemID(),
+        getAccessUri(event));
+  }
+
+}
@@ -0,0 +1,282 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.HarvestPrefetchProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Detects the start of a harvest, and loads the stored state of all specimens and media of that
+  source system with one sequential scan. Later batches of the harvest are answered from the
+  prefetched table instead of with index lookups. A table is dropped once the harvest has been
+  idle for the configured timeout. All tables together are bounded by a memory budget; a table
+  that would exceed it is dropped while loading. The media URLs of the specimens are resolved by
+  the query, so a load holds no more than the table itself.
+  Like the fingerprint cache, a prefetched table only confirms records as unchanged; anything that
+  does not match is looked up in the database as usual.
+ */
+@Slf4j
+@Service
+public class HarvestPrefetchService {
+
+  // Estimated heap size of a table entry apart from its strings
+  private static final int ENTRY_OVERHEAD = 160;
+
+  private final SpecimenRepository specimenRepository;
+  private final MediaRepository mediaRepository;
+  private final HarvestPrefetchProperties properties;
+  // Map key is source system ID
+  private final Map<String, HarvestTable> tables = new ConcurrentHashMap<>();
+  private final Counter loadCounter;
+  private final Counter failedLoadCounter;
+  private final AtomicLong reservedBytes = new AtomicLong();
+  private ScheduledExecutorService prefetchExecutor;
+
+  public HarvestPrefetchService(SpecimenRepository specimenRepository,
+      MediaRepository mediaRepository, HarvestPrefetchProperties properties,
+      MeterRegistry meterRegistry) {
+    this.specimenRepository = specimenRepository;
+    this.mediaRepository = mediaRepository;
+    this.properties = properties;
+    this.loadCounter = meterRegistry.counter("harvest.prefetch.loads", "result", "loaded");
+    this.failedLoadCounter = meterRegistry.counter("harvest.prefetch.loads", "result", "failed");
+    Gauge.builder("harvest.prefetch.tables", tables, Map::size).register(meterRegistry);
+    Gauge.builder("harvest.prefetch.bytes", reservedBytes, AtomicLong::get)
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    var interval = Math.max(properties.getIdleTimeout().toMillis() / 2, 1);
+    prefetchExecutor = Executors.newScheduledThreadPool(properties.getMaxConcurrentLoads(),
+        Thread.ofPlatform().name("harvest-prefetch-", 0).daemon().factory());
+    prefetchExecutor.scheduleWithFixedDelay(this::evictIdle, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  // Keeps the harvests of the batch alive, and starts a prefetch for harvests that just started
+  public void observe(Collection<DigitalSpecimenEvent> events) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    var now = System.nanoTime();
+    events.stream()
+        .collect(Collectors.groupingBy(
+            event -> event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID(),
+            Collectors.counting()))
+        .forEach((sourceSystemId, count) -> {
+          var table = tables.get(sourceSystemId);
+          if (table != null) {
+            table.lastSeen = now;
+          } else if (count >= properties.getMinBatchSize()) {
+            startPrefetch(sourceSystemId, now);
+          }
+        });
+  }
+
+  private void startPrefetch(String sourceSystemId, long now) {
+    var table = register(sourceSystemId, now);
+    if (table == null) {
+      return;
+    }
+    try {
+      prefetchExecutor.execute(() -> load(sourceSystemId, table));
+    } catch (RejectedExecutionException e) {
+      tables.remove(sourceSystemId, table);
+    }
+  }
+
+  // Returns the new table, or null if the source system is already being prefetched
+  HarvestTable register(String sourceSystemId, long now) {
+    var table = new HarvestTable(now);
+    return tables.putIfAbsent(sourceSystemId, table) == null ? table : null;
+  }
+
+  void load(String sourceSystemId, HarvestTable table) {
+    log.info("Harvest of source system {} started, prefetching its records", sourceSystemId);
+    var start = System.nanoTime();
+    try {
+      mediaRepository.streamStoredMedia(sourceSystemId, properties.getFetchSize(), media -> {
+        table.media.put(media.accessUri(),
+            new MediaFingerprint(media.id(), fingerprint(media.originalData())));
+        return reserve(table, media.accessUri().length() + media.id().length());
+      });
+      specimenRepository.streamStoredSpecimens(sourceSystemId, properties.getFetchSize(),
+          specimen -> {
+            table.specimens.put(specimen.physicalSpecimenId(),
+                new SpecimenFingerprint(specimen.id(), fingerprint(specimen.originalData()),
+                    fingerprint(specimen.mediaUris())));
+            return reserve(table,
+                specimen.physicalSpecimenId().length() + specimen.id().length());
+          });
+    } catch (RuntimeException e) {
+      log.error("Failed to prefetch records of source system {}", sourceSystemId, e);
+      failedLoadCounter.increment();
+      tables.remove(sourceSystemId, table);
+      release(table);
+      return;
+    }
+    if (table.discarded) {
+      tables.remove(sourceSystemId, table);
+      release(table);
+      log.info("Stopped prefetching source system {}, it was evicted or exceeded the memory "
+          + "budget of {} bytes", sourceSystemId, properties.getMaxMemory());
+      return;
+    }
+    table.loaded = true;
+    // Evictions that happened during the load may have been overwritten by the load
+    table.invalidatedSpecimens.forEach(table.specimens::remove);
+    table.invalidatedMedia.forEach(table.media::remove);
+    table.invalidatedSpecimens.clear();
+    table.invalidatedMedia.clear();
+    loadCounter.increment();
+    log.info("Prefetched {} specimens and {} media of source system {} in {} ms",
+        table.specimens.size(), table.media.size(), sourceSystemId,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  // Returns false once the table is discarded, which stops its load
+  private boolean reserve(HarvestTable table, long stringLength) {
+    var entryBytes = ENTRY_OVERHEAD + stringLength;
+    table.bytes.addAndGet(entryBytes);
+    if (reservedBytes.addAndGet(entryBytes) > properties.getMaxMemory()) {
+      table.discarded = true;
+    }
+    return !table.discarded;
+  }
+
+  // Releases all bytes of the table, once
+  private void release(HarvestTable table) {
+    reservedBytes.addAndGet(-table.bytes.getAndSet(0));
+  }
+
+  public SpecimenFingerprint getSpecimen(SpecimenKey key) {
+    var table = tables.get(key.sourceSystemId());
+    if (table == null || !table.loaded) {
+      return null;
+    }
+    return table.specimens.get(key.physicalSpecimenId());
+  }
+
+  public MediaFingerprint getMedia(MediaKey key) {
+    var table = tables.get(key.sourceSystemId());
+    if (table == null || !table.loaded) {
+      return null;
+    }
+    return table.media.get(key.accessUri());
+  }
+
+  public void invalidateSpecimen(SpecimenKey key) {
+    var table = tables.get(key.sourceSystemId());
+    if (table != null) {
+      if (!table.loaded) {
+        table.invalidatedSpecimens.add(key.physicalSpecimenId());
+      }
+      table.specimens.remove(key.physicalSpecimenId());
+    }
+  }
+
+  public void invalidateMedia(MediaKey key) {
+    var table = tables.get(key.sourceSystemId());
+    if (table != null) {
+      if (!table.loaded) {
+        table.invalidatedMedia.add(key.accessUri());
+      }
+      table.media.remove(key.accessUri());
+    }
+  }
+
+  public void invalidateAll() {
+    tables.values().forEach(table -> {
+      table.discarded = true;
+      release(table);
+    });
+    tables.clear();
+  }
+
+  public Map<String, Object> getStatistics() {
+    var statistics = new HashMap<String, Object>();
+    tables.forEach((sourceSystemId, table) -> statistics.put(sourceSystemId, Map.of(
+        "loaded", table.loaded,
+        "specimens", table.specimens.size(),
+        "media", table.media.size(),
+        "bytes", table.bytes.get())));
+    return statistics;
+  }
+
+  void evictIdle() {
+    var now = System.nanoTime();
+    var idleTimeout = properties.getIdleTimeout().toNanos();
+    tables.entrySet().removeIf(entry -> {
+      var table = entry.getValue();
+      if (now - table.lastSeen < idleTimeout) {
+        return false;
+      }
+      table.discarded = true;
+      release(table);
+      log.info("Harvest of source system {} is idle, dropping {} prefetched records",
+          entry.getKey(), table.specimens.size() + table.media.size());
+      return true;
+    });
+  }
+
+  @PreDestroy
+  void stop() {
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
+  }
+
+  static class HarvestTable {
+
+    // Map key is physical specimen ID
+    private final Map<String, SpecimenFingerprint> specimens = new ConcurrentHashMap<>();
+    // Map key is media URL
+    private final Map<String, MediaFingerprint> media = new ConcurrentHashMap<>();
+    // Keys evicted while the table is loading
+    private final Set<String> invalidatedSpecimens = ConcurrentHashMap.newKeySet();
+    private final Set<String> invalidatedMedia = ConcurrentHashMap.newKeySet();
+    // Bytes of the table reserved from the memory budget
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long lastSeen;
+    private volatile boolean loaded;
+    private volatile boolean discarded;
+
+    HarvestTable(long lastSeen) {
+      this.lastSeen = lastSeen;
+    }
+  }
+
+}
@@ -0,0 +1,250 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.KnownRecordFilterProperties;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Keeps a Bloom filter of the physical specimen IDs of every source system, so events of specimens
+  that were never stored skip the database lookups. The filters are built in the background from
+  the database the first time a source system is seen, and specimens are added as they are
+  forwarded. Media are not filtered, as all stored media of a stored specimen are looked up to
+  compare its media ERs.
+  Until its filter is built, every record of a source system is treated as possibly known. A filter
+  is only complete if no other instance forwards the same specimens, so it can only be enabled
+  with sharding without failover, which routes every specimen to the same replica, and without the
+  priority queue and the stream, which are not sharded. Filters are built from the primary, as a
+  replica may not have all stored specimens yet.
+ */
+@Slf4j
+@Service
+public class KnownRecordFilterService {
+
+  private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+  private final SpecimenRepository specimenRepository;
+  private final KnownRecordFilterProperties properties;
+  private final RabbitMqProperties rabbitMqProperties;
+  // Map key is source system ID
+  private final Map<String, SourceSystemFilter> filters = new ConcurrentHashMap<>();
+  private final AtomicLong reservedBytes = new AtomicLong();
+  private final Counter buildCounter;
+  private final Counter failedBuildCounter;
+  private final Counter skippedSpecimenCounter;
+  private ExecutorService buildExecutor;
+
+  public KnownRecordFilterService(SpecimenRepository specimenRepository,
+      KnownRecordFilterProperties properties, RabbitMqProperties rabbitMqProperties,
+      MeterRegistry meterRegistry) {
+    this.specimenRepository = specimenRepository;
+    this.properties = properties;
+    this.rabbitMqProperties = rabbitMqProperties;
+    this.buildCounter = meterRegistry.counter("known.record.filter.builds", "result", "built");
+    this.failedBuildCounter = meterRegistry.counter("known.record.filter.builds", "result",
+        "failed");
+    this.skippedSpecimenCounter = meterRegistry.counter("known.record.filter.skipped.lookups",
+        "type", "specimen");
+    Gauge.builder("known.record.filter.bytes", reservedBytes, AtomicLong::get)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (!rabbitMqProperties.getSharding().isEnabled()
+        || rabbitMqProperties.getSharding().isFailover()
+        || rabbitMqProperties.getPriority().isEnabled()
+        || rabbitMqProperties.getStream().isEnabled()) {
+      throw new IllegalStateException("The known record filter requires sharding without "
+          + "failover, and without the priority queue and the stream, so no other instance "
+          + "forwards the same specimens");
+    }
+    buildExecutor = Executors.newSingleThreadExecutor(
+        Thread.ofPlatform().name("known-record-filter").daemon().factory());
+  }
+
+  // Starts building the filters of source systems that are new, or whose filters are due
+  public void observe(Collection<DigitalSpecimenEvent> events) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    var now = System.nanoTime();
+    events.stream()
+        .map(event -> event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID())
+        .distinct()
+        .forEach(sourceSystemId -> {
+          var filter = register(sourceSystemId, now);
+          if (filter != null) {
+            startBuild(sourceSystemId, filter);
+          }
+        });
+  }
+
+  private void startBuild(String sourceSystemId, SourceSystemFilter filter) {
+    try {
+      buildExecutor.execute(() -> build(sourceSystemId, filter));
+    } catch (RejectedExecutionException e) {
+      filter.failed(System.nanoTime() + RETRY_DELAY.toNanos());
+    }
+  }
+
+  // Returns the filter of the source system if it is due to be built, or null otherwise
+  SourceSystemFilter register(String sourceSystemId, long now) {
+    var filter = filters.computeIfAbsent(sourceSystemId, key -> new SourceSystemFilter());
+    return filter.startBuild(now) ? filter : null;
+  }
+
+  void build(String sourceSystemId, SourceSystemFilter filter) {
+    var start = System.nanoTime();
+    long bytes = 0;
+    try {
+      var fpr = properties.getFalsePositiveRate();
+      var expectedSpecimens = expectedRecords(specimenRepository.countSpecimens(sourceSystemId));
+      bytes = BloomFilter.sizeInBytes(expectedSpecimens, fpr);
+      if (!reserve(bytes)) {
+        log.warn("Not building a known record filter for source system {}, {} bytes would exceed "
+            + "the memory budget", sourceSystemId, bytes);
+        bytes = 0;
+        filter.failed(System.nanoTime() + properties.getRebuildInterval().toNanos());
+        return;
+      }
+      var next = BloomFilter.create(expectedSpecimens, fpr);
+      specimenRepository.streamPhysicalSpecimenIds(sourceSystemId, properties.getFetchSize(),
+          physicalSpecimenId -> {
+            next.add(physicalSpecimenId);
+            return true;
+          });
+      var previous = filter.built(next,
+          System.nanoTime() + properties.getRebuildInterval().toNanos());
+      if (previous != null) {
+        release(previous.sizeInBytes());
+      }
+      buildCounter.increment();
+      log.info("Built known record filter of {} bytes for source system {} in {} ms", bytes,
+          sourceSystemId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (RuntimeException e) {
+      log.error("Failed to build the known record filter of source system {}", sourceSystemId, e);
+      release(bytes);
+      failedBuildCounter.increment();
+      filter.failed(System.nanoTime() + RETRY_DELAY.toNanos());
+    }
+  }
+
+  // Leaves room for as many new records as are already stored
+  private long expectedRecords(int storedRecords) {
+    return Math.max(storedRecords * 2L, properties.getMinExpectedRecords());
+  }
+
+  private boolean reserve(long bytes) {
+    if (reservedBytes.addAndGet(bytes) > properties.getMaxMemory()) {
+      reservedBytes.addAndGet(-bytes);
+      return false;
+    }
+    return true;
+  }
+
+  private void release(long bytes) {
+    reservedBytes.addAndGet(-bytes);
+  }
+
+  public boolean isDefinitelyNew(DigitalSpecimenEvent event) {
+    var filter = filters.get(event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID());
+    var active = filter == null ? null : filter.active;
+    if (active == null
+        || active.mightContain(event.digitalSpecimenWrapper().physicalSpecimenId())) {
+      return false;
+    }
+    skippedSpecimenCounter.increment();
+    return true;
+  }
+
+  // Adds the forwarded specimens
+  public void addSpecimens(Collection<DigitalSpecimenEvent> events) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    events.forEach(event -> {
+      var filter = filters.get(event.digitalSpecimenWrapper().attributes().getOdsSourceSystemID());
+      if (filter != null) {
+        filter.add(event.digitalSpecimenWrapper().physicalSpecimenId());
+      }
+    });
+  }
+
+  @PreDestroy
+  void stop() {
+    if (buildExecutor != null) {
+      buildExecutor.shutdownNow();
+    }
+  }
+
+  static class SourceSystemFilter {
+
+    private volatile BloomFilter active;
+    private boolean building;
+    private boolean due = true;
+    private long nextBuild;
+    // Specimens forwarded during a build, added to the new filter once the build completes
+    private Set<String> journaledSpecimens;
+
+    private synchronized boolean startBuild(long now) {
+      if (building || (!due && now - nextBuild < 0)) {
+        return false;
+      }
+      building = true;
+      due = false;
+      journaledSpecimens = new HashSet<>();
+      return true;
+    }
+
+    // Replaces the active filter, and returns the previous one
+    private synchronized BloomFilter built(BloomFilter next, long nextBuild) {
+      journaledSpecimens.forEach(next::add);
+      var previous = active;
+      active = next;
+      finish(nextBuild);
+      return previous;
+    }
+
+    private synchronized void failed(long nextBuild) {
+      finish(nextBuild);
+    }
+
+    private void finish(long nextBuild) {
+      this.nextBuild = nextBuild;
+      building = false;
+      journaledSpecimens = null;
+    }
+
+    private synchronized void add(String physicalSpecimenId) {
+      if (active != null) {
+        active.add(physicalSpecimenId);
+      }
+      if (building) {
+        journaledSpecimens.add(physicalSpecimenId);
+      }
+    }
+  }
+
+}
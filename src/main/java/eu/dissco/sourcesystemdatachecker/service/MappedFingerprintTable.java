@@ -0,0 +1,371 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+  Open addressing hash table with linear probing, stored off-heap in a memory-mapped file, so its
+  content survives restarts and does not add to garbage collection.
+  Keys are 128-bit hashes, and every slot has a fixed width:
+  state (1) | id length (1) | padding (2) | epoch (4) | written at (8) | key (16) |
+  original data (16) | media set (16) | id (32)
+  Ids that do not fit are not stored. Removed slots are marked as deleted and reused. Once three
+  quarters of the slots are in use, a new key takes the place of the entry written longest ago in
+  the first slots of its probe chain, so the table keeps its most recent entries instead of
+  emptying itself. A key whose chain is still empty then only gets a slot while seven eighths of
+  the slots are in use, and is not stored beyond that.
+  A slot is only in use if its epoch is the epoch of the table, so clearing only moves the epoch
+  in the header and does not touch the slots, which keeps a cleared table sparse on disk and the
+  lock held briefly.
+ */
+@Slf4j
+class MappedFingerprintTable implements AutoCloseable {
+
+  private static final long MAGIC = 0x4453534346505431L;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 64;
+  private static final int SLOT_SIZE = 96;
+  private static final int MAX_ID_LENGTH = 32;
+  // Slots of a probe chain considered for eviction
+  private static final int EVICTION_PROBES = 8;
+
+  // Header offsets
+  private static final long MAGIC_OFFSET = 0;
+  private static final long VERSION_OFFSET = 8;
+  private static final long SLOT_SIZE_OFFSET = 12;
+  private static final long CAPACITY_OFFSET = 16;
+  private static final long SIZE_OFFSET = 24;
+  private static final long USED_OFFSET = 32;
+  private static final long WATERMARK_OFFSET = 40;
+  private static final long CLEAN_OFFSET = 48;
+  private static final long EPOCH_OFFSET = 56;
+
+  // Slot offsets
+  private static final long STATE = 0;
+  private static final long ID_LENGTH = 1;
+  private static final long SLOT_EPOCH = 4;
+  private static final long WRITTEN_AT = 8;
+  private static final long KEY = 16;
+  private static final long ORIGINAL_DATA = 32;
+  private static final long MEDIA_SET = 48;
+  private static final long ID = 64;
+
+  private static final byte EMPTY = 0;
+  private static final byte FULL = 1;
+  private static final byte DELETED = 2;
+
+  private final Arena arena;
+  private final MemorySegment segment;
+  private final long capacity;
+  private final long mask;
+  private final long loadLimit;
+  private final long hardLimit;
+  private final boolean cleanlyClosed;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final AtomicLong evictions = new AtomicLong();
+  private boolean closed;
+
+  private MappedFingerprintTable(Arena arena, MemorySegment segment, long capacity,
+      boolean cleanlyClosed) {
+    this.arena = arena;
+    this.segment = segment;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.loadLimit = capacity - (capacity >>> 2);
+    this.hardLimit = capacity - (capacity >>> 3);
+    this.cleanlyClosed = cleanlyClosed;
+  }
+
+  // Opens the table at the path, or creates it if it does not exist or has another layout
+  static MappedFingerprintTable open(Path path, long requestedCapacity) throws IOException {
+    var capacity = Long.highestOneBit(Math.max(requestedCapacity - 1, 1)) << 1;
+    var fileSize = HEADER_SIZE + capacity * SLOT_SIZE;
+    var arena = Arena.ofShared();
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      var compatible = channel.size() == fileSize && hasHeader(channel, capacity);
+      if (!compatible) {
+        channel.truncate(0);
+        // Extending the file leaves it sparse, so an empty table takes no disk space
+        channel.write(ByteBuffer.wrap(new byte[1]), fileSize - 1);
+      }
+      var segment = channel.map(MapMode.READ_WRITE, 0, fileSize, arena);
+      var cleanlyClosed = compatible && segment.get(JAVA_BYTE, CLEAN_OFFSET) == 1;
+      if (!compatible) {
+        segment.set(JAVA_LONG_UNALIGNED, MAGIC_OFFSET, MAGIC);
+        segment.set(JAVA_INT_UNALIGNED, VERSION_OFFSET, FORMAT_VERSION);
+        segment.set(JAVA_INT_UNALIGNED, SLOT_SIZE_OFFSET, SLOT_SIZE);
+        segment.set(JAVA_LONG_UNALIGNED, CAPACITY_OFFSET, capacity);
+        // Slots of a new file have epoch zero, so they start out empty
+        segment.set(JAVA_INT_UNALIGNED, EPOCH_OFFSET, 1);
+      }
+      // Marked as clean again on close, a crash leaves the table marked as unclean
+      segment.set(JAVA_BYTE, CLEAN_OFFSET, (byte) 0);
+      segment.force();
+      return new MappedFingerprintTable(arena, segment, capacity, cleanlyClosed);
+    } catch (IOException | RuntimeException e) {
+      arena.close();
+      throw e;
+    }
+  }
+
+  private static boolean hasHeader(FileChannel channel, long capacity) throws IOException {
+    var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+    channel.read(header, 0);
+    return header.getLong((int) MAGIC_OFFSET) == MAGIC
+        && header.getInt((int) VERSION_OFFSET) == FORMAT_VERSION
+        && header.getInt((int) SLOT_SIZE_OFFSET) == SLOT_SIZE
+        && header.getLong((int) CAPACITY_OFFSET) == capacity;
+  }
+
+  boolean wasCleanlyClosed() {
+    return cleanlyClosed;
+  }
+
+  long capacity() {
+    return capacity;
+  }
+
+  long size() {
+    return segment.get(JAVA_LONG_UNALIGNED, SIZE_OFFSET);
+  }
+
+  // Entries overwritten by newer keys since the table was opened
+  long evictions() {
+    return evictions.get();
+  }
+
+  long watermark() {
+    return segment.get(JAVA_LONG_UNALIGNED, WATERMARK_OFFSET);
+  }
+
+  void setWatermark(long watermark) {
+    segment.set(JAVA_LONG_UNALIGNED, WATERMARK_OFFSET, watermark);
+  }
+
+  Entry get(UUID key) {
+    lock.readLock().lock();
+    try {
+      var slot = closed ? -1 : find(key);
+      if (slot < 0) {
+        return null;
+      }
+      var id = new byte[segment.get(JAVA_BYTE, slot + ID_LENGTH)];
+      MemorySegment.copy(segment, JAVA_BYTE, slot + ID, id, 0, id.length);
+      return new Entry(new String(id, StandardCharsets.UTF_8),
+          readUuid(slot + ORIGINAL_DATA), readUuid(slot + MEDIA_SET),
+          segment.get(JAVA_LONG_UNALIGNED, slot + WRITTEN_AT));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // Returns false if the entry could not be stored
+  boolean put(UUID key, String id, UUID originalDataFingerprint, UUID mediaSetFingerprint,
+      long writtenAt) {
+    var idBytes = id.getBytes(StandardCharsets.UTF_8);
+    if (idBytes.length > MAX_ID_LENGTH) {
+      return false;
+    }
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      var slot = find(key);
+      if (slot < 0) {
+        slot = slotFor(key);
+        if (slot < 0) {
+          return false;
+        }
+      }
+      segment.set(JAVA_BYTE, slot + ID_LENGTH, (byte) idBytes.length);
+      segment.set(JAVA_INT_UNALIGNED, slot + SLOT_EPOCH, epoch());
+      segment.set(JAVA_LONG_UNALIGNED, slot + WRITTEN_AT, writtenAt);
+      writeUuid(slot + KEY, key);
+      writeUuid(slot + ORIGINAL_DATA, originalDataFingerprint);
+      writeUuid(slot + MEDIA_SET, mediaSetFingerprint);
+      MemorySegment.copy(idBytes, 0, segment, JAVA_BYTE, slot + ID, idBytes.length);
+      segment.set(JAVA_BYTE, slot + STATE, FULL);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void remove(UUID key) {
+    lock.writeLock().lock();
+    try {
+      var slot = closed ? -1 : find(key);
+      if (slot >= 0) {
+        segment.set(JAVA_BYTE, slot + STATE, DELETED);
+        addToHeader(SIZE_OFFSET, -1);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void clear() {
+    lock.writeLock().lock();
+    try {
+      if (!closed) {
+        clearSlots();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // Offset of the slot holding the key, or -1 if the key is absent
+  private long find(UUID key) {
+    var index = index(key);
+    for (long probes = 0; probes < capacity; probes++) {
+      var slot = HEADER_SIZE + index * SLOT_SIZE;
+      var state = state(slot);
+      if (state == EMPTY) {
+        return -1;
+      }
+      if (state == FULL && keyEquals(slot, key)) {
+        return slot;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  /*
+    Offset of the slot for a key that is absent, or -1 if it can not be stored. Below the load
+    limit this is the first deleted or empty slot of its probe chain, and the table is never
+    completely full. At the limit, a deleted slot is still reused, but an entry in the first
+    slots of the chain is evicted before an empty slot is taken. Overwriting a full slot keeps
+    the chains of the other keys intact.
+   */
+  private long slotFor(UUID key) {
+    var atLimit = used() >= loadLimit;
+    var index = index(key);
+    var oldest = -1L;
+    for (var probes = 1; ; probes++) {
+      var slot = HEADER_SIZE + index * SLOT_SIZE;
+      var state = state(slot);
+      if (state == DELETED) {
+        addToHeader(SIZE_OFFSET, 1);
+        return slot;
+      }
+      if (state == EMPTY) {
+        if (!atLimit || (oldest < 0 && used() < hardLimit)) {
+          addToHeader(USED_OFFSET, 1);
+          addToHeader(SIZE_OFFSET, 1);
+          return slot;
+        }
+        break;
+      }
+      if (atLimit && (oldest < 0 || writtenAt(slot) < writtenAt(oldest))) {
+        oldest = slot;
+      }
+      if (atLimit && probes >= EVICTION_PROBES) {
+        break;
+      }
+      index = (index + 1) & mask;
+    }
+    if (oldest >= 0 && evictions.getAndIncrement() == 0) {
+      log.warn("Fingerprint table of {} slots is full, evicting the oldest entries", capacity);
+    }
+    return oldest;
+  }
+
+  private long writtenAt(long slot) {
+    return segment.get(JAVA_LONG_UNALIGNED, slot + WRITTEN_AT);
+  }
+
+  // Slots written before the table was last cleared are empty
+  private byte state(long slot) {
+    if (segment.get(JAVA_INT_UNALIGNED, slot + SLOT_EPOCH) != epoch()) {
+      return EMPTY;
+    }
+    return segment.get(JAVA_BYTE, slot + STATE);
+  }
+
+  private int epoch() {
+    return segment.get(JAVA_INT_UNALIGNED, EPOCH_OFFSET);
+  }
+
+  private long index(UUID key) {
+    return key.getLeastSignificantBits() & mask;
+  }
+
+  private boolean keyEquals(long slot, UUID key) {
+    return segment.get(JAVA_LONG_UNALIGNED, slot + KEY) == key.getMostSignificantBits()
+        && segment.get(JAVA_LONG_UNALIGNED, slot + KEY + 8) == key.getLeastSignificantBits();
+  }
+
+  private UUID readUuid(long offset) {
+    return new UUID(segment.get(JAVA_LONG_UNALIGNED, offset),
+        segment.get(JAVA_LONG_UNALIGNED, offset + 8));
+  }
+
+  private void writeUuid(long offset, UUID value) {
+    var uuid = value == null ? new UUID(0, 0) : value;
+    segment.set(JAVA_LONG_UNALIGNED, offset, uuid.getMostSignificantBits());
+    segment.set(JAVA_LONG_UNALIGNED, offset + 8, uuid.getLeastSignificantBits());
+  }
+
+  private long used() {
+    return segment.get(JAVA_LONG_UNALIGNED, USED_OFFSET);
+  }
+
+  private void addToHeader(long offset, long delta) {
+    segment.set(JAVA_LONG_UNALIGNED, offset, segment.get(JAVA_LONG_UNALIGNED, offset) + delta);
+  }
+
+  private void clearSlots() {
+    var epoch = epoch() + 1;
+    if (epoch == 0) {
+      // Once the epoch wraps around, slots of an earlier epoch with the same number could show up
+      segment.asSlice(HEADER_SIZE).fill((byte) 0);
+      epoch = 1;
+    }
+    segment.set(JAVA_INT_UNALIGNED, EPOCH_OFFSET, epoch);
+    segment.set(JAVA_LONG_UNALIGNED, SIZE_OFFSET, 0);
+    segment.set(JAVA_LONG_UNALIGNED, USED_OFFSET, 0);
+  }
+
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      segment.force();
+      segment.set(JAVA_BYTE, CLEAN_OFFSET, (byte) 1);
+      segment.force();
+      arena.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  record Entry(String id, UUID originalDataFingerprint, UUID mediaSetFingerprint,
+               long writtenAt) {
+
+  }
+
+}
@@ -0,0 +1,148 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Dispatches MAS job requests, either directly or through the aggregator.
+  When rate limiting is enabled, every MAS has its own token bucket. Requests that exceed the
+  limit reserve the next free slot of the bucket, and are not held in memory but published to a
+  delay queue with the wait for that slot as expiration. They are dead-lettered to the deferred
+  queue once it expires, whose consumer dispatches them in their reserved slot without taking
+  another one, so every request is deferred at most once.
+  A failed publish is thrown, so the messages that requested the jobs are delivered again.
+ */
+@Slf4j
+@Service
+public class MasJobRateLimiter {
+
+  private final RabbitMqPublisherService publisherService;
+  private final MasJobRequestAggregator masJobRequestAggregator;
+  private final MasSchedulerProperties masSchedulerProperties;
+  private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final Counter immediateCounter;
+  private final Counter deferredCounter;
+
+  public MasJobRateLimiter(RabbitMqPublisherService publisherService,
+      MasJobRequestAggregator masJobRequestAggregator,
+      MasSchedulerProperties masSchedulerProperties, MeterRegistry meterRegistry) {
+    this.publisherService = publisherService;
+    this.masJobRequestAggregator = masJobRequestAggregator;
+    this.masSchedulerProperties = masSchedulerProperties;
+    this.immediateCounter = meterRegistry.counter("mas.rate.limit.requests", "result",
+        "immediate");
+    this.deferredCounter = meterRegistry.counter("mas.rate.limit.requests", "result", "deferred");
+  }
+
+  /*
+    Publishes the requests that are within the limit, and the others to the delay queue.
+    onPublished is called for every request once it is published to the MAS scheduler, deferred
+    requests are only passed to it when they are submitted again.
+   */
+  public void submit(Collection<MasJobRequest> masJobRequests,
+      Consumer<MasJobRequest> onPublished) {
+    if (!masSchedulerProperties.getRateLimit().isEnabled()) {
+      dispatch(masJobRequests, onPublished);
+      return;
+    }
+    var immediate = new ArrayList<MasJobRequest>();
+    var deferred = new ArrayList<Deferral>();
+    for (var masJobRequest : masJobRequests) {
+      var wait = bucketFor(masJobRequest.masId()).reserve();
+      if (wait.isZero()) {
+        immediate.add(masJobRequest);
+      } else {
+        deferred.add(new Deferral(masJobRequest, wait));
+      }
+    }
+    dispatch(immediate, onPublished);
+    immediateCounter.increment(immediate.size());
+    for (var deferral : deferred) {
+      publisherService.publishDeferredMasJobRequest(deferral.masJobRequest(), deferral.wait());
+    }
+    deferredCounter.increment(deferred.size());
+    if (!deferred.isEmpty()) {
+      log.debug("Deferred {} MAS jobs above the rate limit by up to {}", deferred.size(),
+          deferred.getLast().wait());
+    }
+  }
+
+  // Deferred requests return after the wait for the slot they reserved when they were submitted
+  public void dispatchDeferred(Collection<MasJobRequest> masJobRequests,
+      Consumer<MasJobRequest> onPublished) {
+    dispatch(masJobRequests, onPublished);
+  }
+
+  private void dispatch(Collection<MasJobRequest> masJobRequests,
+      Consumer<MasJobRequest> onPublished) {
+    if (masJobRequests.isEmpty()) {
+      return;
+    }
+    if (masSchedulerProperties.getAggregation().isEnabled()) {
+      masJobRequestAggregator.publish(masJobRequests, onPublished);
+    } else {
+      for (var masJobRequest : masJobRequests) {
+        publisherService.publishMasJobRequest(masJobRequest);
+        onPublished.accept(masJobRequest);
+      }
+    }
+  }
+
+  private TokenBucket bucketFor(String masId) {
+    return buckets.computeIfAbsent(masId,
+        k -> new TokenBucket(masSchedulerProperties.getRateLimit().getBurst(),
+            masSchedulerProperties.getRateLimit().getPermitsPerSecond()));
+  }
+
+  private static class TokenBucket {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    private TokenBucket(int capacity, double tokensPerSecond) {
+      this.capacity = capacity;
+      this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+      this.tokens = capacity;
+      this.lastRefill = System.nanoTime();
+    }
+
+    /*
+      Takes a token, which may be one that is not refilled yet. The bucket then goes into debt,
+      and the returned wait is the time until the debt is refilled, rounded up to milliseconds
+      as the message expiration is set in milliseconds.
+     */
+    synchronized Duration reserve() {
+      var now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+      lastRefill = now;
+      tokens--;
+      if (tokens >= 0) {
+        return Duration.ZERO;
+      }
+      return Duration.ofMillis((long) Math.ceil(-tokens / tokensPerNano / NANOS_PER_MILLI));
+    }
+  }
+
+  private record Deferral(
+      MasJobRequest masJobRequest,
+      Duration wait
+  ) {
+
+  }
+
+}
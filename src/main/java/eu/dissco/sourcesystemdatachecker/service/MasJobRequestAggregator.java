@@ -0,0 +1,66 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequestBatch;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Groups the MAS job requests of a consumer batch per MAS into MasJobRequestBatch messages, of at
+  most the configured number of targets. Groups are published before the batch is acknowledged,
+  nothing is held across batches. A failed publish is thrown, so the batch is delivered again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MasJobRequestAggregator {
+
+  private final RabbitMqPublisherService publisherService;
+  private final MasSchedulerProperties masSchedulerProperties;
+
+  // onPublished is called for the requests of every group once the group is published
+  public void publish(Collection<MasJobRequest> masJobRequests,
+      Consumer<MasJobRequest> onPublished) {
+    var groups = new LinkedHashMap<AggregationKey, Set<MasJobRequest>>();
+    for (var masJobRequest : masJobRequests) {
+      groups.computeIfAbsent(new AggregationKey(masJobRequest.masId(), masJobRequest.agentId(),
+          masJobRequest.targetType()), k -> new LinkedHashSet<>()).add(masJobRequest);
+    }
+    var maxTargets = masSchedulerProperties.getAggregation().getMaxTargets();
+    groups.forEach((key, requestSet) -> {
+      var requests = new ArrayList<>(requestSet);
+      for (var from = 0; from < requests.size(); from += maxTargets) {
+        var group = requests.subList(from, Math.min(requests.size(), from + maxTargets));
+        publish(key, group);
+        group.forEach(onPublished);
+      }
+    });
+  }
+
+  private void publish(AggregationKey key, List<MasJobRequest> masJobRequests) {
+    publisherService.publishMasJobRequestBatch(new MasJobRequestBatch(
+        key.masId(),
+        masJobRequests.stream().map(MasJobRequest::targetId).toList(),
+        false,
+        key.agentId(),
+        key.targetType()
+    ));
+    log.debug("Published batched MAS job request for MAS {} with {} targets", key.masId(),
+        masJobRequests.size());
+  }
+
+  private record AggregationKey(String masId, String agentId, MjrTargetType targetType) {
+
+  }
+
+}
@@ -0,0 +1,88 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.stereotype.Service;
+
+/*
+  Remembers which MAS job requests were published recently, across consumer batches.
+  Entries expire after the configured window, and the oldest entries are dropped once the
+  configured maximum is reached, so memory use stays bounded.
+ */
+@Service
+public class MasJobRequestDeduplicator {
+
+  private final MasSchedulerProperties.Deduplication properties;
+  // Insertion ordered, so the eldest entry is always the first to expire
+  private final LinkedHashMap<MasJobRequest, Long> publishedRequests = new LinkedHashMap<>();
+  private final Counter hits;
+  private final Counter misses;
+
+  public MasJobRequestDeduplicator(MasSchedulerProperties masSchedulerProperties,
+      MeterRegistry meterRegistry) {
+    this.properties = masSchedulerProperties.getDeduplication();
+    this.hits = meterRegistry.counter("mas.deduplication.requests", "result", "hit");
+    this.misses = meterRegistry.counter("mas.deduplication.requests", "result", "miss");
+    Gauge.builder("mas.deduplication.size", this, MasJobRequestDeduplicator::size)
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  // Returns true if an identical request was published within the window
+  public boolean isDuplicate(MasJobRequest masJobRequest) {
+    var now = System.nanoTime();
+    boolean duplicate;
+    synchronized (publishedRequests) {
+      evictExpired(now);
+      duplicate = publishedRequests.containsKey(masJobRequest);
+    }
+    if (duplicate) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return duplicate;
+  }
+
+  // Should only be called once the request has been published
+  public void register(MasJobRequest masJobRequest) {
+    var now = System.nanoTime();
+    synchronized (publishedRequests) {
+      publishedRequests.remove(masJobRequest);
+      publishedRequests.put(masJobRequest, now);
+      evictExpired(now);
+      if (publishedRequests.size() > properties.getMaxEntries()) {
+        var iterator = publishedRequests.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+      }
+    }
+  }
+
+  int size() {
+    synchronized (publishedRequests) {
+      return publishedRequests.size();
+    }
+  }
+
+  private void evictExpired(long now) {
+    var window = properties.getWindow().toNanos();
+    Iterator<Map.Entry<MasJobRequest, Long>> iterator = publishedRequests.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (now - iterator.next().getValue() < window) {
+        return;
+      }
+      iterator.remove();
+    }
+  }
+
+}
@@ -1,19 +1,16 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
 import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.DOI_PROXY;
-import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
 
 import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
 import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
-import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
-import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
 import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.sourcesystemdatachecker.properties.ApplicationProperties;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,25 +21,51 @@ import org.springframework.stereotype.Service;
 @Service
 public class MasSchedulerService {
 
-  private final RabbitMqPublisherService publisherService;
+  private final MasJobRateLimiter masJobRateLimiter;
   private final ApplicationProperties applicationProperties;
+  private final MasJobRequestDeduplicator masJobRequestDeduplicator;
 
   // Map key is specimen DOI
   public void scheduleMasForSpecimen(Map<String, DigitalSpecimenEvent> unchangedSpecimenEventMap) {
     var recordsToSchedule = getMasJobRequestsForSpecimens(unchangedSpecimenEventMap);
-    publishMas(recordsToSchedule);
-    log.debug("Scheduled {} forced MAS Jobs on unchanged specimens", recordsToSchedule.size());
+    var scheduled = publishMas(recordsToSchedule);
+    log.debug("Scheduled {} forced MAS Jobs on unchanged specimens, {} were recently scheduled",
+        scheduled, recordsToSchedule.size() - scheduled);
   }
 
-  public void scheduleMasForMedia(FilteredDigtialMedia filteredDigtialMedia,
-      Set<DigitalSpecimenEvent> specimenEvents) {
-    var recordsToSchedule = getMasJobRequestsForMedia(filteredDigtialMedia, specimenEvents);
-    publishMas(recordsToSchedule);
-    log.debug("Scheduled {} forced MAS Jobs on unchanged media", recordsToSchedule.size());
+  public void scheduleMasForMedia(FilteredDigtialMedia filteredDigtialMedia) {
+    var recordsToSchedule = getMasJobRequestsForMedia(filteredDigtialMedia);
+    var scheduled = publishMas(recordsToSchedule);
+    log.debug("Scheduled {} forced MAS Jobs on unchanged media, {} were recently scheduled",
+        scheduled, recordsToSchedule.size() - scheduled);
   }
 
-  private void publishMas(Set<MasJobRequest> masJobRequests) {
-    masJobRequests.forEach(publisherService::publishMasJobRequest);
+  /*
+    Jobs return here from the deferred queue. They were checked for duplicates and reserved their
+    slot of the rate limit before deferral.
+   */
+  public void scheduleDeferredMas(List<MasJobRequest> masJobRequests) {
+    masJobRateLimiter.dispatchDeferred(masJobRequests, this::registerPublished);
+    log.debug("Dispatched {} deferred MAS Jobs", masJobRequests.size());
+  }
+
+  private int publishMas(Set<MasJobRequest> masJobRequests) {
+    var toSchedule = masJobRequests.stream()
+        .filter(masJobRequest -> !masJobRequestDeduplicator.isEnabled()
+            || !masJobRequestDeduplicator.isDuplicate(masJobRequest))
+        .toList();
+    if (toSchedule.isEmpty()) {
+      return 0;
+    }
+    masJobRateLimiter.submit(toSchedule, this::registerPublished);
+    return toSchedule.size();
+  }
+
+  // Only called once a request is published, a deferred request is not registered yet
+  private void registerPublished(MasJobRequest masJobRequest) {
+    if (masJobRequestDeduplicator.isEnabled()) {
+      masJobRequestDeduplicator.register(masJobRequest);
+    }
   }
 
   private Set<MasJobRequest> getMasJobRequestsForSpecimens(
@@ -57,26 +80,11 @@ public class MasSchedulerService {
         .collect(Collectors.toSet());
   }
 
-  private Set<MasJobRequest> getMasJobRequestsForMedia(
-      FilteredDigtialMedia filteredDigtialMedia, Set<DigitalSpecimenEvent> specimenEvents) {
-    var unchangedMediaRecordMap = filteredDigtialMedia.unchangedMedia().stream().collect(Collectors.toMap(
-        DigitalMediaRecord::accessURI,
-        Function.identity()
-    ));
-    // Only schedule MAS jobs on existing records
-    return specimenEvents.stream()
-        .map(DigitalSpecimenEvent::digitalMediaEvents)
-        .flatMap(Collection::stream)
-        // Get unchanged media events from the specimen events
-        .filter(mediaEvent -> unchangedMediaRecordMap.containsKey(getAccessUri(mediaEvent)))
-        // Filter out media events that do not need MAS scheduling
-        .filter(DigitalMediaEvent::forceMasSchedule)
-        // Filter out media events that do not have any MASs requested
-        .filter(entry -> !entry.masList().isEmpty())
-        // Transform Media Records into MAS Job Requests
-        .map(entry -> entry.masList().stream()
-            .map(masId -> buildMasJobRequest(masId, unchangedMediaRecordMap.get(getAccessUri(entry)).id(),
-                MjrTargetType.DIGITAL_MEDIA))
+  // Only schedules MAS jobs on existing records, as indexed while filtering the media
+  private Set<MasJobRequest> getMasJobRequestsForMedia(FilteredDigtialMedia filteredDigtialMedia) {
+    return filteredDigtialMedia.forcedMasForUnchangedMedia().entrySet().stream()
+        .map(entry -> entry.getValue().stream()
+            .map(masId -> buildMasJobRequest(masId, entry.getKey(), MjrTargetType.DIGITAL_MEDIA))
             .collect(Collectors.toSet()))
         .flatMap(Collection::stream)
         .collect(Collectors.toSet());
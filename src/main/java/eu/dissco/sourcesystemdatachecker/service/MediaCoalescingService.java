@@ -0,0 +1,128 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
+
+import eu.dissco.sourcesystemdatachecker.domain.media.CoalescedDigitalMedia;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaWrapper;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.MediaCoalescingProperties;
+import eu.dissco.sourcesystemdatachecker.properties.MediaCoalescingProperties.EntityRelationshipRule;
+import eu.dissco.sourcesystemdatachecker.schema.DigitalMedia;
+import eu.dissco.sourcesystemdatachecker.schema.EntityRelationship;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+/*
+  The same media, such as a shared label image, can be carried by several specimens of a batch.
+  Its events are coalesced by access URI and original attributes, so the media is compared and
+  published only once. Events with other original attributes are not coalesced, so each of them is
+  compared with the stored media and a changed one is always forwarded.
+  The event of the specimen with the lowest ID is kept, with the entity relationships chosen by the
+  configured rule. When any of the events forces a MAS schedule, only the MASs of the forcing
+  events are kept, so MASs that were not forced are not scheduled on unchanged media. Otherwise the
+  MASs of all events are kept. Events that were not identical are counted as variants.
+ */
+@Service
+public class MediaCoalescingService {
+
+  private static final Comparator<DigitalSpecimenEvent> SPECIMEN_ORDER = Comparator.comparing(
+          (DigitalSpecimenEvent event) -> event.digitalSpecimenWrapper().attributes()
+              .getOdsSourceSystemID())
+      .thenComparing(event -> event.digitalSpecimenWrapper().physicalSpecimenId());
+
+  private final MediaCoalescingProperties properties;
+  private final JsonMapper mapper;
+  private final Counter duplicateComparisons;
+  private final Counter duplicatePublishes;
+
+  public MediaCoalescingService(MediaCoalescingProperties properties, JsonMapper mapper,
+      MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.mapper = mapper;
+    this.duplicateComparisons = meterRegistry.counter("media.coalescing.duplicates", "type",
+        "comparison");
+    this.duplicatePublishes = meterRegistry.counter("media.coalescing.duplicates", "type",
+        "publish");
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  /*
+    Returns one media event per access URI and original attributes, in order of the IDs of the
+    specimens, so the kept event does not depend on the order of the batch
+   */
+  public List<CoalescedDigitalMedia> coalesce(Collection<DigitalSpecimenEvent> specimenEvents) {
+    var mediaEventsByKey = new LinkedHashMap<CoalescingKey, List<DigitalMediaEvent>>();
+    specimenEvents.stream()
+        .sorted(SPECIMEN_ORDER)
+        .map(DigitalSpecimenEvent::digitalMediaEvents)
+        .flatMap(Collection::stream)
+        .forEach(mediaEvent -> mediaEventsByKey.computeIfAbsent(coalescingKey(mediaEvent),
+            k -> new ArrayList<>()).add(mediaEvent));
+    var coalescedMedia = new ArrayList<CoalescedDigitalMedia>(mediaEventsByKey.size());
+    for (var mediaEvents : mediaEventsByKey.values()) {
+      duplicateComparisons.increment(mediaEvents.size() - 1.0);
+      var variants = new HashSet<>(mediaEvents).size();
+      coalescedMedia.add(new CoalescedDigitalMedia(
+          variants == 1 ? mediaEvents.getFirst() : merge(mediaEvents), variants));
+    }
+    return coalescedMedia;
+  }
+
+  // Counts the variants of changed media that are published as a single event
+  public void countPublished(CoalescedDigitalMedia coalescedMedia) {
+    duplicatePublishes.increment(coalescedMedia.variants() - 1.0);
+  }
+
+  private DigitalMediaEvent merge(List<DigitalMediaEvent> mediaEvents) {
+    var first = mediaEvents.getFirst();
+    var forceMasSchedule = mediaEvents.stream()
+        .anyMatch(mediaEvent -> Boolean.TRUE.equals(mediaEvent.forceMasSchedule()));
+    var masList = new HashSet<String>();
+    mediaEvents.stream()
+        .filter(mediaEvent -> !forceMasSchedule
+            || Boolean.TRUE.equals(mediaEvent.forceMasSchedule()))
+        .forEach(mediaEvent -> masList.addAll(mediaEvent.masList()));
+    var wrapper = first.digitalMediaWrapper();
+    if (properties.getEntityRelationships() == EntityRelationshipRule.UNION) {
+      wrapper = new DigitalMediaWrapper(wrapper.type(), mergeEntityRelationships(mediaEvents),
+          wrapper.originalAttributes());
+    }
+    return new DigitalMediaEvent(masList, wrapper, forceMasSchedule);
+  }
+
+  // Copies the attributes of the first event, as these are shared with its specimen event
+  private DigitalMedia mergeEntityRelationships(List<DigitalMediaEvent> mediaEvents) {
+    var entityRelationships = new LinkedHashSet<EntityRelationship>();
+    mediaEvents.forEach(mediaEvent -> entityRelationships.addAll(
+        mediaEvent.digitalMediaWrapper().attributes().getOdsHasEntityRelationships()));
+    var attributes = mapper.convertValue(
+        mediaEvents.getFirst().digitalMediaWrapper().attributes(), DigitalMedia.class);
+    attributes.setOdsHasEntityRelationships(new ArrayList<>(entityRelationships));
+    return attributes;
+  }
+
+  private static CoalescingKey coalescingKey(DigitalMediaEvent mediaEvent) {
+    return new CoalescingKey(getAccessUri(mediaEvent),
+        fingerprint(mediaEvent.digitalMediaWrapper().originalAttributes()));
+  }
+
+  private record CoalescingKey(String accessUri, UUID originalDataFingerprint) {
+
+  }
+
+}
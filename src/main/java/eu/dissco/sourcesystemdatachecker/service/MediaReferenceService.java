@@ -0,0 +1,141 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.DOI_PROXY;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getCurrentDigitalMediaRecordsForSpecimen;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.hasForcedMas;
+
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaWrapper;
+import eu.dissco.sourcesystemdatachecker.domain.media.MediaReference;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.ReferencedDigitalSpecimens;
+import eu.dissco.sourcesystemdatachecker.properties.MediaReferenceProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.schema.DigitalMedia;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  A changed specimen is forwarded with all of its media, even if most of them are unchanged.
+  Media that are related to the stored specimen and whose original data is unchanged are replaced
+  by a reference: a media event marked with the version of the reference payload, with only the ID,
+  access URI and source system of the stored media, and without original attributes. The
+  processing service keeps the stored media of a reference as it is.
+  Media with a forced MAS are always forwarded in full.
+ */
+@Slf4j
+@Service
+public class MediaReferenceService {
+
+  private final MediaRepository mediaRepository;
+  private final MediaReferenceProperties properties;
+  private final Counter replacedMedia;
+
+  public MediaReferenceService(MediaRepository mediaRepository,
+      MediaReferenceProperties properties, MeterRegistry meterRegistry) {
+    this.mediaRepository = mediaRepository;
+    this.properties = properties;
+    this.replacedMedia = meterRegistry.counter("media.reference.replaced");
+  }
+
+  /*
+    Takes the changed specimens and the current records of those that exist, keyed by physical
+    specimen ID. Returns the specimens to forward, and the IDs of the media that were replaced,
+    whose last checked should be updated.
+   */
+  public ReferencedDigitalSpecimens replaceUnchangedMedia(
+      Set<DigitalSpecimenEvent> changedSpecimens,
+      Map<String, DigitalSpecimenRecord> currentSpecimenRecords) {
+    if (!properties.isEnabled() || currentSpecimenRecords.isEmpty()) {
+      return new ReferencedDigitalSpecimens(changedSpecimens, Set.of());
+    }
+    var currentMedia = getCurrentMedia(changedSpecimens, currentSpecimenRecords);
+    if (currentMedia.isEmpty()) {
+      return new ReferencedDigitalSpecimens(changedSpecimens, Set.of());
+    }
+    var specimens = new HashSet<DigitalSpecimenEvent>();
+    var unchangedMediaIds = new HashSet<String>();
+    for (var specimenEvent : changedSpecimens) {
+      var currentSpecimen = currentSpecimenRecords.get(
+          specimenEvent.digitalSpecimenWrapper().physicalSpecimenId());
+      if (currentSpecimen == null) {
+        specimens.add(specimenEvent);
+        continue;
+      }
+      var relatedMediaIds = getCurrentDigitalMediaRecordsForSpecimen(
+          currentSpecimen.digitalSpecimenWrapper());
+      var mediaEvents = specimenEvent.digitalMediaEvents().stream()
+          .map(mediaEvent -> {
+            var mediaRecord = currentMedia.get(getAccessUri(mediaEvent));
+            if (mediaRecord == null || !relatedMediaIds.contains(mediaRecord.id())
+                || hasForcedMas(mediaEvent) || !Objects.equals(
+                mediaEvent.digitalMediaWrapper().originalAttributes(),
+                mediaRecord.originalAttributes())) {
+              return mediaEvent;
+            }
+            unchangedMediaIds.add(mediaRecord.id());
+            return toReference(mediaEvent, mediaRecord);
+          })
+          .toList();
+      specimens.add(new DigitalSpecimenEvent(specimenEvent.masList(),
+          specimenEvent.digitalSpecimenWrapper(), mediaEvents, specimenEvent.forceMasSchedule()));
+    }
+    replacedMedia.increment(unchangedMediaIds.size());
+    log.info("Replaced {} unchanged media of changed specimens by a reference",
+        unchangedMediaIds.size());
+    return new ReferencedDigitalSpecimens(specimens, unchangedMediaIds);
+  }
+
+  // Only media related to the stored version of a changed specimen can be replaced
+  private Map<String, DigitalMediaRecord> getCurrentMedia(
+      Set<DigitalSpecimenEvent> changedSpecimens,
+      Map<String, DigitalSpecimenRecord> currentSpecimenRecords) {
+    var currentMediaIds = new HashSet<String>();
+    var incomingMediaUris = new HashSet<String>();
+    var sourceSystemIds = new HashSet<String>();
+    for (var specimenEvent : changedSpecimens) {
+      var currentSpecimen = currentSpecimenRecords.get(
+          specimenEvent.digitalSpecimenWrapper().physicalSpecimenId());
+      if (currentSpecimen == null || specimenEvent.digitalMediaEvents().isEmpty()) {
+        continue;
+      }
+      currentMediaIds.addAll(
+          getCurrentDigitalMediaRecordsForSpecimen(currentSpecimen.digitalSpecimenWrapper()));
+      specimenEvent.digitalMediaEvents().forEach(mediaEvent -> {
+        incomingMediaUris.add(getAccessUri(mediaEvent));
+        sourceSystemIds.add(mediaEvent.digitalMediaWrapper().attributes().getOdsSourceSystemID());
+      });
+    }
+    if (currentMediaIds.isEmpty() || incomingMediaUris.isEmpty()) {
+      return Map.of();
+    }
+    return mediaRepository.getExistingDigitalMedia(currentMediaIds, incomingMediaUris,
+        sourceSystemIds);
+  }
+
+  private static DigitalMediaEvent toReference(DigitalMediaEvent mediaEvent,
+      DigitalMediaRecord mediaRecord) {
+    return new DigitalMediaEvent(
+        mediaEvent.masList(),
+        new DigitalMediaWrapper(
+            mediaEvent.digitalMediaWrapper().type(),
+            new DigitalMedia()
+                .withId(DOI_PROXY + mediaRecord.id())
+                .withAcAccessURI(mediaRecord.accessURI())
+                .withOdsSourceSystemID(
+                    mediaEvent.digitalMediaWrapper().attributes().getOdsSourceSystemID()),
+            null),
+        mediaEvent.forceMasSchedule(),
+        MediaReference.CURRENT);
+  }
+
+}
@@ -0,0 +1,227 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.PersistedFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/*
+  Off-heap second tier of the fingerprint cache, kept in memory-mapped files so a restarted or
+  new pod does not start with an empty cache.
+  On startup, the store is validated against the database: entries of records modified since
+  the previous start are evicted. A store that was not closed cleanly, or that is too far behind,
+  is cleared instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PersistentFingerprintStore {
+
+  // Allows for clock differences between the pods and the database
+  private static final Duration CLOCK_MARGIN = Duration.ofMinutes(5);
+  private static final int FETCH_SIZE = 5_000;
+
+  private final SpecimenRepository specimenRepository;
+  private final MediaRepository mediaRepository;
+  private final FingerprintCacheProperties properties;
+  private volatile MappedFingerprintTable specimenTable;
+  private volatile MappedFingerprintTable mediaTable;
+
+  @PostConstruct
+  void open() {
+    if (!properties.isEnabled() || !properties.getPersistent().isEnabled()) {
+      return;
+    }
+    var directory = Path.of(properties.getPersistent().getDirectory());
+    var capacity = properties.getPersistent().getCapacity();
+    MappedFingerprintTable specimens = null;
+    try {
+      Files.createDirectories(directory);
+      specimens = MappedFingerprintTable.open(directory.resolve("specimens.fp"), capacity);
+      var media = MappedFingerprintTable.open(directory.resolve("media.fp"), capacity);
+      var validatedAt = Instant.now();
+      validate(specimens, media);
+      specimens.setWatermark(validatedAt.toEpochMilli());
+      media.setWatermark(validatedAt.toEpochMilli());
+      specimenTable = specimens;
+      mediaTable = media;
+    } catch (IOException e) {
+      log.error("Unable to open the fingerprint store in {}, continuing without it", directory, e);
+      if (specimens != null) {
+        specimens.close();
+      }
+    }
+  }
+
+  private void validate(MappedFingerprintTable specimens, MappedFingerprintTable media) {
+    if (!specimens.wasCleanlyClosed() || !media.wasCleanlyClosed()
+        || specimens.watermark() != media.watermark()) {
+      log.info("Fingerprint store is new or was not closed cleanly, starting empty");
+      specimens.clear();
+      media.clear();
+      return;
+    }
+    var since = Instant.ofEpochMilli(specimens.watermark()).minus(CLOCK_MARGIN);
+    var maxEvictions = properties.getPersistent().getMaxStartupEvictions();
+    var evictions = new AtomicInteger();
+    try {
+      specimenRepository.streamModifiedSince(since, FETCH_SIZE, key -> {
+        specimens.remove(specimenKey(key));
+        return evictions.incrementAndGet() <= maxEvictions;
+      });
+      if (evictions.get() <= maxEvictions) {
+        mediaRepository.streamModifiedSince(since, FETCH_SIZE, key -> {
+          media.remove(mediaKey(key));
+          return evictions.incrementAndGet() <= maxEvictions;
+        });
+      }
+    } catch (RuntimeException e) {
+      log.warn("Unable to validate the fingerprint store, starting empty", e);
+      specimens.clear();
+      media.clear();
+      return;
+    }
+    if (evictions.get() > maxEvictions) {
+      log.info("More than {} records were modified since {}, starting with an empty fingerprint "
+          + "store", maxEvictions, since);
+      specimens.clear();
+      media.clear();
+      return;
+    }
+    log.info("Loaded fingerprint store with {} specimens and {} media, evicted {} modified records",
+        specimens.size(), media.size(), evictions.get());
+  }
+
+  public boolean isOpen() {
+    return specimenTable != null;
+  }
+
+  // The time the fingerprint was written is kept, so a promoted fingerprint expires on time
+  public PersistedFingerprint<SpecimenFingerprint> getSpecimen(SpecimenKey key) {
+    var table = specimenTable;
+    if (table == null) {
+      return null;
+    }
+    var entry = table.get(specimenKey(key));
+    if (entry == null || isExpired(entry)) {
+      return null;
+    }
+    return new PersistedFingerprint<>(new SpecimenFingerprint(entry.id(),
+        entry.originalDataFingerprint(), entry.mediaSetFingerprint()),
+        Instant.ofEpochMilli(entry.writtenAt()));
+  }
+
+  public PersistedFingerprint<MediaFingerprint> getMedia(MediaKey key) {
+    var table = mediaTable;
+    if (table == null) {
+      return null;
+    }
+    var entry = table.get(mediaKey(key));
+    if (entry == null || isExpired(entry)) {
+      return null;
+    }
+    return new PersistedFingerprint<>(
+        new MediaFingerprint(entry.id(), entry.originalDataFingerprint()),
+        Instant.ofEpochMilli(entry.writtenAt()));
+  }
+
+  public void putSpecimen(SpecimenKey key, SpecimenFingerprint specimenFingerprint) {
+    var table = specimenTable;
+    if (table != null) {
+      table.put(specimenKey(key), specimenFingerprint.id(),
+          specimenFingerprint.originalDataFingerprint(),
+          specimenFingerprint.mediaSetFingerprint(), System.currentTimeMillis());
+    }
+  }
+
+  public void putMedia(MediaKey key, MediaFingerprint mediaFingerprint) {
+    var table = mediaTable;
+    if (table != null) {
+      table.put(mediaKey(key), mediaFingerprint.id(), mediaFingerprint.originalDataFingerprint(),
+          null, System.currentTimeMillis());
+    }
+  }
+
+  public void removeSpecimen(SpecimenKey key) {
+    var table = specimenTable;
+    if (table != null) {
+      table.remove(specimenKey(key));
+    }
+  }
+
+  public void removeMedia(MediaKey key) {
+    var table = mediaTable;
+    if (table != null) {
+      table.remove(mediaKey(key));
+    }
+  }
+
+  public void clear() {
+    var specimens = specimenTable;
+    var media = mediaTable;
+    if (specimens != null) {
+      specimens.clear();
+      media.clear();
+    }
+  }
+
+  public Map<String, Object> getStatistics() {
+    var specimens = specimenTable;
+    var media = mediaTable;
+    if (specimens == null) {
+      return Map.of("open", false);
+    }
+    return Map.of(
+        "open", true,
+        "specimens", specimens.size(),
+        "media", media.size(),
+        "capacity", specimens.capacity(),
+        "specimenEvictions", specimens.evictions(),
+        "mediaEvictions", media.evictions());
+  }
+
+  private boolean isExpired(MappedFingerprintTable.Entry entry) {
+    return System.currentTimeMillis() - entry.writtenAt() > properties.getTtl().toMillis();
+  }
+
+  private static UUID specimenKey(SpecimenKey key) {
+    return fingerprint(key.sourceSystemId(), key.physicalSpecimenId());
+  }
+
+  private static UUID mediaKey(MediaKey key) {
+    return fingerprint(key.sourceSystemId(), key.accessUri());
+  }
+
+  @PreDestroy
+  void close() {
+    var specimens = specimenTable;
+    var media = mediaTable;
+    specimenTable = null;
+    mediaTable = null;
+    if (specimens != null) {
+      specimens.close();
+      media.close();
+      log.info("Closed the fingerprint store");
+    }
+  }
+
+}
@@ -1,11 +1,24 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
+import static eu.dissco.sourcesystemdatachecker.component.ShardAssignmentComponent.OWN_SHARD_PRIORITY;
+import static eu.dissco.sourcesystemdatachecker.component.ShardAssignmentComponent.STANDBY_SHARD_PRIORITY;
+
+import com.rabbitmq.client.Channel;
+import eu.dissco.sourcesystemdatachecker.component.AdaptiveBatchSizeComponent;
+import eu.dissco.sourcesystemdatachecker.component.BatchByteBudgetComponent;
+import eu.dissco.sourcesystemdatachecker.component.BatchPipelineComponent;
+import eu.dissco.sourcesystemdatachecker.component.KeyPartitionedExecutorComponent;
+import eu.dissco.sourcesystemdatachecker.component.MessageCompressionComponent;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
@@ -16,16 +29,106 @@ import tools.jackson.databind.json.JsonMapper;
 @RequiredArgsConstructor
 public class RabbitMqConsumerService {
 
+  public static final String BULK_LISTENER_ID = "source-system-data-checker-listener";
+  public static final String STANDBY_LISTENER_ID = "source-system-data-checker-standby-listener";
+  // Containers of the bulk lane, for the components that pause or tune it
+  public static final List<String> BULK_LISTENER_IDS = List.of(BULK_LISTENER_ID,
+      STANDBY_LISTENER_ID);
+
   private final JsonMapper mapper;
   private final SourceSystemDataCheckerService sourceSystemDataCheckerService;
+  private final BatchPipelineComponent batchPipelineComponent;
+  private final KeyPartitionedExecutorComponent keyPartitionedExecutorComponent;
+  private final AdaptiveBatchSizeComponent adaptiveBatchSizeComponent;
+  private final BatchByteBudgetComponent batchByteBudgetComponent;
+  private final MessageCompressionComponent messageCompressionComponent;
+  private final MasSchedulerService masSchedulerService;
+
+  /*
+    Consumes the configured queue, or the shards owned by this replica. Messages are received
+    compressed, and each part is only decompressed and decoded when it is handled.
+   */
+  @RabbitListener(id = BULK_LISTENER_ID, queues = "#{@shardAssignmentComponent.queueNames}",
+      containerFactory = "consumerBatchContainerFactory", priority = OWN_SHARD_PRIORITY)
+  public void getMessages(List<Message> messages, Channel channel) throws InterruptedException {
+    var parts = batchByteBudgetComponent.split(messages,
+        messageCompressionComponent::uncompressedSize);
+    if (!batchPipelineComponent.isEnabled()) {
+      var start = System.nanoTime();
+      parts.forEach(part -> handleMessages(decompress(part)));
+      adaptiveBatchSizeComponent.record(messages.size(),
+          Duration.ofNanos(System.nanoTime() - start));
+      return;
+    }
+    for (var part : parts) {
+      var deliveryTag = part.getLast().getMessageProperties().getDeliveryTag();
+      Set<DigitalSpecimenEvent> events;
+      try {
+        events = decode(decompress(part));
+      } catch (RuntimeException e) {
+        // Acknowledgements are manual, so the part must be rejected in order with the others
+        batchPipelineComponent.submitFailed(e, channel, deliveryTag);
+        continue;
+      }
+      batchPipelineComponent.submit(events, channel, deliveryTag);
+    }
+  }
+
+  /*
+    Consumes the shards of the other replicas at a lower priority. A shard queue only delivers to
+    this consumer while the replica that owns it is gone, and switches back once it returns.
+   */
+  @RabbitListener(id = STANDBY_LISTENER_ID,
+      queues = "#{@shardAssignmentComponent.standbyQueueNames}",
+      containerFactory = "consumerBatchContainerFactory", priority = STANDBY_SHARD_PRIORITY,
+      autoStartup = "#{@shardAssignmentComponent.hasStandbyQueues()}")
+  public void getStandbyMessages(List<Message> messages, Channel channel)
+      throws InterruptedException {
+    getMessages(messages, channel);
+  }
+
+  @RabbitListener(queues = {
+      "${rabbitmq.priority.queue-name:source-system-data-checker-priority-queue}"},
+      containerFactory = "priorityBatchContainerFactory",
+      autoStartup = "${rabbitmq.priority.enabled:false}")
+  public void getPriorityMessages(@Payload List<String> messages) {
+    batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length)
+        .forEach(this::handleMessages);
+  }
 
+  // Forced MAS jobs that were above the rate limit, once their reserved slot is due
   @RabbitListener(queues = {
-      "${rabbitmq.queue-name:source-system-data-checker-queue}"}, containerFactory = "consumerBatchContainerFactory")
-  public void getMessages(@Payload List<String> messages) {
-    var events = messages.stream()
+      "${rabbitmq.mas-scheduler.deferred-queue-name:source-system-data-checker-mas-deferred-queue}"},
+      containerFactory = "priorityBatchContainerFactory",
+      autoStartup = "${mas-scheduler.rate-limit.enabled:false}")
+  public void getDeferredMasJobRequests(@Payload List<String> messages) {
+    masSchedulerService.scheduleDeferredMas(messages.stream()
+        .map(message -> mapper.readValue(message, MasJobRequest.class))
+        .toList());
+  }
+
+  // Batches of the stream consumer
+  public void getStreamMessages(List<String> messages) {
+    batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length)
+        .forEach(this::handleMessages);
+  }
+
+  private void handleMessages(List<String> messages) {
+    if (keyPartitionedExecutorComponent.isEnabled()) {
+      keyPartitionedExecutorComponent.handleMessages(decode(messages));
+    } else {
+      sourceSystemDataCheckerService.handleMessages(decode(messages));
+    }
+  }
+
+  private List<String> decompress(List<Message> messages) {
+    return messages.stream().map(messageCompressionComponent::toPayload).toList();
+  }
+
+  private Set<DigitalSpecimenEvent> decode(List<String> messages) {
+    return messages.stream()
         .map(message -> mapper.readValue(message, DigitalSpecimenEvent.class))
         .filter(Objects::nonNull).collect(Collectors.toSet());
-    sourceSystemDataCheckerService.handleMessages(events);
   }
 
 }
@@ -1,42 +1,70 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
 import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequestBatch;
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import java.time.Duration;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
-import tools.jackson.databind.json.JsonMapper;
 
+/*
+  Events are handed to the template as objects; the MessageCompressionComponent serialises them
+  straight into the compressed message body
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class RabbitMqPublisherService {
 
-  private final JsonMapper mapper;
   private final RabbitTemplate rabbitTemplate;
   private final RabbitMqProperties rabbitMqProperties;
 
   public void publishNameUsageEvent(DigitalSpecimenEvent event) {
     rabbitTemplate.convertAndSend(
         rabbitMqProperties.getNameUsage().getExchangeName(),
-        rabbitMqProperties.getNameUsage().getRoutingKeyName(), mapper.writeValueAsString(event)
+        rabbitMqProperties.getNameUsage().getRoutingKeyName(), event
     );
   }
 
   public void publishMediaEvent(DigitalMediaEvent event) {
     rabbitTemplate.convertAndSend(
         rabbitMqProperties.getMedia().getExchangeName(),
-        rabbitMqProperties.getMedia().getRoutingKeyName(), mapper.writeValueAsString(event)
+        rabbitMqProperties.getMedia().getRoutingKeyName(), event
     );
   }
 
+  // Stream messages that could not be handled, published as received through the default exchange
+  public void publishStreamDeadLetter(byte[] body, String contentEncoding) {
+    var messageProperties = new MessageProperties();
+    messageProperties.setContentType("application/json");
+    messageProperties.setContentEncoding(contentEncoding);
+    rabbitTemplate.send("", rabbitMqProperties.getStream().getDeadLetterQueueName(),
+        new Message(body, messageProperties));
+  }
+
   public void publishMasJobRequest(MasJobRequest masJobRequest) {
     rabbitTemplate.convertAndSend(rabbitMqProperties.getMasScheduler().getExchangeName(),
-        rabbitMqProperties.getMasScheduler().getRoutingKeyName(),
-        mapper.writeValueAsString(masJobRequest));
+        rabbitMqProperties.getMasScheduler().getRoutingKeyName(), masJobRequest);
+  }
+
+  // Published to the delay queue through the default exchange, and expires after the delay
+  public void publishDeferredMasJobRequest(MasJobRequest masJobRequest, Duration delay) {
+    rabbitTemplate.convertAndSend("", rabbitMqProperties.getMasScheduler().getDelayQueueName(),
+        masJobRequest, message -> {
+          message.getMessageProperties().setExpiration(String.valueOf(delay.toMillis()));
+          return message;
+        });
+  }
+
+  public void publishMasJobRequestBatch(MasJobRequestBatch masJobRequestBatch) {
+    rabbitTemplate.convertAndSend(rabbitMqProperties.getMasScheduler().getExchangeName(),
+        rabbitMqProperties.getMasScheduler().getBatchRoutingKeyName(), masJobRequestBatch);
   }
 
 }
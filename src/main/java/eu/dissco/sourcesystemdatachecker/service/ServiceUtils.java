@@ -1,6 +1,14 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenWrapper;
+import eu.dissco.sourcesystemdatachecker.schema.EntityRelationship;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ServiceUtils {
 
@@ -14,4 +22,42 @@ public class ServiceUtils {
     return mediaEvent.digitalMediaWrapper().attributes().getAcAccessURI();
   }
 
+  protected static String stripDoiProxy(String uri) {
+    return uri.startsWith(DOI_PROXY) ?
+        uri.substring(DOI_PROXY.length()) : uri;
+  }
+
+  protected static boolean hasForcedMas(DigitalMediaEvent mediaEvent) {
+    return Boolean.TRUE.equals(mediaEvent.forceMasSchedule()) && !mediaEvent.masList().isEmpty();
+  }
+
+  /*
+  Looks in the current version of the specimen and extracts the related media URIs
+   */
+  protected static Set<String> getCurrentDigitalMediaRecordsForSpecimen(
+      DigitalSpecimenWrapper currentSpecimenWrapper) {
+    return currentSpecimenWrapper.attributes().getOdsHasEntityRelationships()
+        .stream()
+        .filter(er -> "hasDigitalMedia".equals(er.getDwcRelationshipOfResource()))
+        .map(EntityRelationship::getOdsRelatedResourceURI)
+        .map(URI::toString)
+        .map(ServiceUtils::stripDoiProxy)
+        .collect(Collectors.toSet());
+  }
+
+  /*
+    The media set of a stored specimen: the access URIs of the stored media it relates to. Relations
+    to media that are not stored are left out. The incoming media of a specimen are compared with
+    this set by the database lookup and by every fingerprint tier, so a removed media ER is a change
+    for all of them.
+   */
+  protected static Set<String> getStoredMediaUris(Collection<String> mediaIds,
+      Function<String, String> accessUriById) {
+    return mediaIds.stream()
+        .map(ServiceUtils::stripDoiProxy)
+        .map(accessUriById)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+  }
+
 }
@@ -1,22 +1,26 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
-import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.DOI_PROXY;
 import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getAccessUri;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getCurrentDigitalMediaRecordsForSpecimen;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.getStoredMediaUris;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.hasForcedMas;
 
+import eu.dissco.sourcesystemdatachecker.component.BatchStageComponent;
+import eu.dissco.sourcesystemdatachecker.domain.BatchDecision;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.CachedDigitalSpecimens;
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
 import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenRecord;
-import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenWrapper;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.FilteredDigitalSpecimens;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.ReferencedDigitalSpecimens;
 import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
 import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
-import eu.dissco.sourcesystemdatachecker.schema.EntityRelationship;
-import java.net.URI;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,21 +40,67 @@ public class SourceSystemDataCheckerService {
   private final MediaRepository mediaRepository;
   private final RabbitMqPublisherService rabbitMqPublisherService;
   private final MasSchedulerService masSchedulerService;
+  private final FingerprintCacheService fingerprintCacheService;
+  private final KnownRecordFilterService knownRecordFilterService;
+  private final ForwardedRecordDeduplicator forwardedRecordDeduplicator;
+  private final MediaReferenceService mediaReferenceService;
+  private final MediaCoalescingService mediaCoalescingService;
+  private final BatchStageComponent batchStageComponent;
 
   public void handleMessages(Set<DigitalSpecimenEvent> events) {
+    emit(decide(events));
+  }
+
+  /*
+    Looks up the stored state of the events and decides what to forward and what is unchanged.
+    Nothing is published or written to the database yet.
+   */
+  public BatchDecision decide(Set<DigitalSpecimenEvent> events) {
     log.info("Received {} unique events", events.size());
-    var specimenEventMap = events.stream().collect(Collectors.toMap(
-        event -> event.digitalSpecimenWrapper().physicalSpecimenId(),
-        Function.identity()
-    ));
-    var currentSpecimenRecords = getCurrentSpecimen(specimenEventMap);
-    var currentMediaRecords = getCurrentMedia(specimenEventMap);
+    knownRecordFilterService.observe(events);
+    var cachedSpecimens = fingerprintCacheService.getUnchangedSpecimens(events);
+    var cachedPhysicalSpecimenIds = cachedSpecimens.unchangedSpecimens().values().stream()
+        .map(event -> event.digitalSpecimenWrapper().physicalSpecimenId())
+        .collect(Collectors.toSet());
+    // Specimens that were never stored are published without looking them up
+    var uncachedEvents = events.stream()
+        .filter(event -> !cachedPhysicalSpecimenIds.contains(
+            event.digitalSpecimenWrapper().physicalSpecimenId()))
+        .collect(Collectors.partitioningBy(
+            event -> knownRecordFilterService.isDefinitelyNew(event)));
+    var definitelyNewSpecimens = new HashSet<>(uncachedEvents.get(true));
+    var specimenEventMap = uncachedEvents.get(false).stream()
+        .collect(Collectors.toMap(
+            event -> event.digitalSpecimenWrapper().physicalSpecimenId(),
+            Function.identity()
+        ));
+    if (fingerprintCacheService.isEnabled()) {
+      log.info("{} specimens are unchanged according to the fingerprint cache",
+          cachedSpecimens.unchangedSpecimens().size());
+    }
+    if (!definitelyNewSpecimens.isEmpty()) {
+      log.info("{} specimens are new according to the known record filter",
+          definitelyNewSpecimens.size());
+    }
+    var currentSpecimenRecords = batchStageComponent.run("specimen-lookup",
+        () -> getCurrentSpecimen(specimenEventMap));
+    // Specimens with changed original data are forwarded with all their media, so their media
+    // are not looked up
+    var candidateSpecimenRecords = filterUnchangedOriginalData(specimenEventMap,
+        currentSpecimenRecords);
+    // Neither are the media of specimens whose known set of media differs from the incoming one
+    var changedMediaSets = getChangedMediaSets(specimenEventMap, candidateSpecimenRecords);
+    var currentMediaRecords = batchStageComponent.run("media-lookup",
+        () -> getCurrentMedia(candidateSpecimenRecords.stream()
+            .filter(specimenRecord -> !changedMediaSets.contains(
+                specimenRecord.digitalSpecimenWrapper().physicalSpecimenId()))
+            .toList()));
     log.info("Received {} existing specimen and {} existing media", currentSpecimenRecords.size(),
         currentMediaRecords.size());
     var currentSpecimensWithMediaUris = pairSpecimensWithMedia(currentSpecimenRecords,
         currentMediaRecords);
     var filteredSpecimenEvents = filterChangedAndNewSpecimens(specimenEventMap,
-        currentSpecimensWithMediaUris);
+        currentSpecimensWithMediaUris, changedMediaSets);
     log.info("{} specimens are new or changed; {} specimens are unchanged",
         filteredSpecimenEvents.newOrChangedSpecimens().size(),
         filteredSpecimenEvents.unchangedSpecimens().size());
@@ -59,42 +109,132 @@ public class SourceSystemDataCheckerService {
         currentMediaRecords);
     log.info("{} media are changed and belong to an unchanged specimen",
         filteredMediaEvents.newOrChangedMedia().size());
-    updateLastCheckedSpecimens(filteredSpecimenEvents.unchangedSpecimens().keySet());
-    updateLastCheckedMedia(filteredMediaEvents.unchangedMedia());
+    fingerprintCacheService.update(filteredSpecimenEvents, filteredMediaEvents);
+    var referencedSpecimens = batchStageComponent.run("media-reference",
+        () -> mediaReferenceService.replaceUnchangedMedia(
+            filteredSpecimenEvents.newOrChangedSpecimens(), currentSpecimensWithMediaUris));
+    var unchangedSpecimens = mergeUnchangedSpecimens(filteredSpecimenEvents, cachedSpecimens);
+    var unchangedMediaIds = mergeUnchangedMediaIds(filteredMediaEvents, cachedSpecimens,
+        referencedSpecimens);
+    var specimensToPublish = mergeNewSpecimens(referencedSpecimens.specimens(),
+        definitelyNewSpecimens);
+    return new BatchDecision(unchangedSpecimens, unchangedMediaIds, specimensToPublish,
+        filteredMediaEvents.newOrChangedMedia(),
+        mergeForcedMas(filteredMediaEvents, cachedSpecimens));
+  }
+
+  // Every decision is made, so the stages of the emit do not depend on each other
+  public void emit(BatchDecision batchDecision) {
+    var emitStages = new LinkedHashMap<String, Runnable>();
+    emitStages.put("specimen-last-checked",
+        () -> updateLastCheckedSpecimens(batchDecision.unchangedSpecimens().keySet()));
+    emitStages.put("media-last-checked",
+        () -> updateLastCheckedMedia(batchDecision.unchangedMediaIds()));
+    emitStages.put("specimen-publish",
+        () -> publishChangedAndNewSpecimens(batchDecision.newOrChangedSpecimens()));
+    emitStages.put("media-publish",
+        () -> publishedChangedMedia(batchDecision.newOrChangedMedia()));
+    emitStages.put("specimen-mas",
+        () -> scheduleMasForSpecimen(batchDecision.unchangedSpecimens()));
+    emitStages.put("media-mas", () -> scheduleMasForMedia(batchDecision.forcedMasMedia()));
+    batchStageComponent.runIndependent(emitStages);
     log.info("Successfully updated lastChecked for {} specimens and {} media",
-        filteredSpecimenEvents.unchangedSpecimens().size(),
-        filteredMediaEvents.unchangedMedia().size());
-    publishChangedAndNewSpecimens(filteredSpecimenEvents.newOrChangedSpecimens());
-    publishedChangedMedia(filteredMediaEvents.newOrChangedMedia());
-    scheduleMasForSpecimen(filteredSpecimenEvents);
-    scheduleMasForMedia(filteredMediaEvents, events);
+        batchDecision.unchangedSpecimens().size(), batchDecision.unchangedMediaIds().size());
+  }
+
+  private static Set<DigitalSpecimenEvent> mergeNewSpecimens(
+      Set<DigitalSpecimenEvent> changedSpecimens,
+      Set<DigitalSpecimenEvent> definitelyNewSpecimens) {
+    if (definitelyNewSpecimens.isEmpty()) {
+      return changedSpecimens;
+    }
+    var newOrChangedSpecimens = new HashSet<>(changedSpecimens);
+    newOrChangedSpecimens.addAll(definitelyNewSpecimens);
+    return newOrChangedSpecimens;
   }
 
-  private void scheduleMasForSpecimen(FilteredDigitalSpecimens filteredDigitalSpecimens) {
-    if (!filteredDigitalSpecimens.unchangedSpecimens().isEmpty()) {
-      masSchedulerService.scheduleMasForSpecimen(filteredDigitalSpecimens.unchangedSpecimens());
+  private static Map<String, DigitalSpecimenEvent> mergeUnchangedSpecimens(
+      FilteredDigitalSpecimens filteredDigitalSpecimens, CachedDigitalSpecimens cachedSpecimens) {
+    if (cachedSpecimens.unchangedSpecimens().isEmpty()) {
+      return filteredDigitalSpecimens.unchangedSpecimens();
     }
+    var unchangedSpecimens = new HashMap<>(filteredDigitalSpecimens.unchangedSpecimens());
+    unchangedSpecimens.putAll(cachedSpecimens.unchangedSpecimens());
+    return unchangedSpecimens;
+  }
+
+  private static Set<String> mergeUnchangedMediaIds(FilteredDigtialMedia filteredDigtialMedia,
+      CachedDigitalSpecimens cachedSpecimens, ReferencedDigitalSpecimens referencedSpecimens) {
+    var unchangedMediaIds = filteredDigtialMedia.unchangedMedia().stream()
+        .map(DigitalMediaRecord::id)
+        .collect(Collectors.toCollection(HashSet::new));
+    unchangedMediaIds.addAll(cachedSpecimens.unchangedMediaIds());
+    unchangedMediaIds.addAll(referencedSpecimens.unchangedMediaIds());
+    return unchangedMediaIds;
   }
 
-  private void scheduleMasForMedia(FilteredDigtialMedia filteredDigtialMedia,
-      Set<DigitalSpecimenEvent> specimenEvents) {
-    if (filteredDigtialMedia.unchangedMedia().isEmpty()) {
+  private static FilteredDigtialMedia mergeForcedMas(FilteredDigtialMedia filteredDigtialMedia,
+      CachedDigitalSpecimens cachedSpecimens) {
+    if (cachedSpecimens.forcedMasForUnchangedMedia().isEmpty()) {
+      return filteredDigtialMedia;
+    }
+    var forcedMas = new HashMap<>(filteredDigtialMedia.forcedMasForUnchangedMedia());
+    cachedSpecimens.forcedMasForUnchangedMedia().forEach((mediaId, masIds) ->
+        forcedMas.merge(mediaId, masIds, (current, added) -> {
+          var merged = new HashSet<>(current);
+          merged.addAll(added);
+          return merged;
+        }));
+    return new FilteredDigtialMedia(filteredDigtialMedia.newOrChangedMedia(),
+        filteredDigtialMedia.unchangedMedia(), forcedMas);
+  }
+
+  private void scheduleMasForSpecimen(Map<String, DigitalSpecimenEvent> unchangedSpecimens) {
+    if (!unchangedSpecimens.isEmpty()) {
+      masSchedulerService.scheduleMasForSpecimen(unchangedSpecimens);
+    }
+  }
+
+  private void scheduleMasForMedia(FilteredDigtialMedia filteredDigtialMedia) {
+    if (filteredDigtialMedia.forcedMasForUnchangedMedia().isEmpty()) {
       return;
     }
-    masSchedulerService.scheduleMasForMedia(filteredDigtialMedia, specimenEvents);
+    masSchedulerService.scheduleMasForMedia(filteredDigtialMedia);
   }
 
   private void publishChangedAndNewSpecimens(Set<DigitalSpecimenEvent> digitalSpecimenEvents) {
-    digitalSpecimenEvents.forEach(
-        rabbitMqPublisherService::publishNameUsageEvent);
-    log.info("Published {} specimen events to the name usage service",
-        digitalSpecimenEvents.size());
+    var published = 0;
+    for (var digitalSpecimenEvent : digitalSpecimenEvents) {
+      if (forwardedRecordDeduplicator.isEnabled()
+          && forwardedRecordDeduplicator.isDuplicate(digitalSpecimenEvent)) {
+        continue;
+      }
+      rabbitMqPublisherService.publishNameUsageEvent(digitalSpecimenEvent);
+      if (forwardedRecordDeduplicator.isEnabled()) {
+        forwardedRecordDeduplicator.register(digitalSpecimenEvent);
+      }
+      published++;
+    }
+    knownRecordFilterService.addSpecimens(digitalSpecimenEvents);
+    log.info("Published {} specimen events to the name usage service, {} were recently forwarded",
+        published, digitalSpecimenEvents.size() - published);
   }
 
   private void publishedChangedMedia(Set<DigitalMediaEvent> digitalMediaEvents) {
-    digitalMediaEvents.forEach(rabbitMqPublisherService::publishMediaEvent);
-    log.info("Published {} digital media events to the processing service",
-        digitalMediaEvents.size());
+    var published = 0;
+    for (var digitalMediaEvent : digitalMediaEvents) {
+      if (forwardedRecordDeduplicator.isEnabled()
+          && forwardedRecordDeduplicator.isDuplicate(digitalMediaEvent)) {
+        continue;
+      }
+      rabbitMqPublisherService.publishMediaEvent(digitalMediaEvent);
+      if (forwardedRecordDeduplicator.isEnabled()) {
+        forwardedRecordDeduplicator.register(digitalMediaEvent);
+      }
+      published++;
+    }
+    log.info("Published {} digital media events to the processing service, {} were recently "
+        + "forwarded", published, digitalMediaEvents.size() - published);
   }
 
   private void updateLastCheckedSpecimens(Set<String> unchangedRecords) {
@@ -104,24 +244,23 @@ public class SourceSystemDataCheckerService {
     specimenRepository.updateLastChecked(unchangedRecords);
   }
 
-  private void updateLastCheckedMedia(Set<DigitalMediaRecord> unchangedRecords) {
-    if (unchangedRecords.isEmpty()) {
+  private void updateLastCheckedMedia(Set<String> unchangedMediaIds) {
+    if (unchangedMediaIds.isEmpty()) {
       return;
     }
-    var mediaIds = unchangedRecords.stream().map(DigitalMediaRecord::id)
-        .collect(Collectors.toSet());
-    mediaRepository.updateLastChecked(mediaIds);
+    mediaRepository.updateLastChecked(unchangedMediaIds);
   }
 
   /*
     Takes incoming specimen events and the corresponding records of the events that exist
     Returns a list of new specimens and changed specimens, filtering out unchanged specimens
     An unchanged specimen is one whose original data is unchanged AND its media ERs are unchanged (none added, none removed)
+    Specimens of which the media ERs are already known to be changed are passed by physical specimen ID
     This list of changed will be sent downstream to the ingestion process
    */
   public FilteredDigitalSpecimens filterChangedAndNewSpecimens(
       Map<String, DigitalSpecimenEvent> specimenEventMap,
-      Map<String, DigitalSpecimenRecord> currentSpecimenRecords) {
+      Map<String, DigitalSpecimenRecord> currentSpecimenRecords, Set<String> changedMediaSets) {
     if (currentSpecimenRecords.isEmpty()) {
       return new FilteredDigitalSpecimens(new HashSet<>(specimenEventMap.values()), Map.of());
     }
@@ -129,7 +268,8 @@ public class SourceSystemDataCheckerService {
     var unchangedSpecimens = new HashMap<String, DigitalSpecimenEvent>();
     specimenEventMap.forEach((key, value) -> {
       var currentSpecimen = currentSpecimenRecords.get(key);
-      if (currentSpecimen == null || specimenIsChanged(value, currentSpecimenRecords.get(key))) {
+      if (currentSpecimen == null || changedMediaSets.contains(key)
+          || specimenIsChanged(value, currentSpecimen)) {
         changedSpecimens.add(value);
       } else {
         unchangedSpecimens.put(currentSpecimen.id(), value);
@@ -140,11 +280,46 @@ public class SourceSystemDataCheckerService {
 
   private static boolean specimenIsChanged(DigitalSpecimenEvent specimenEvent,
       DigitalSpecimenRecord currentSpecimenRecord) {
-    return !Objects.equals(specimenEvent.digitalSpecimenWrapper().originalAttributes(),
-        currentSpecimenRecord.digitalSpecimenWrapper().originalAttributes()) ||
+    return originalDataIsChanged(specimenEvent, currentSpecimenRecord) ||
         specimenMediaEntityRelationshipsAreChanged(specimenEvent, currentSpecimenRecord);
   }
 
+  private static boolean originalDataIsChanged(DigitalSpecimenEvent specimenEvent,
+      DigitalSpecimenRecord currentSpecimenRecord) {
+    return !Objects.equals(specimenEvent.digitalSpecimenWrapper().originalAttributes(),
+        currentSpecimenRecord.digitalSpecimenWrapper().originalAttributes());
+  }
+
+  // Current specimens whose original data is unchanged, and so may still be unchanged
+  private static List<DigitalSpecimenRecord> filterUnchangedOriginalData(
+      Map<String, DigitalSpecimenEvent> specimenEventMap,
+      List<DigitalSpecimenRecord> currentSpecimenRecords) {
+    return currentSpecimenRecords.stream()
+        .filter(specimenRecord -> {
+          var specimenEvent = specimenEventMap.get(
+              specimenRecord.digitalSpecimenWrapper().physicalSpecimenId());
+          return specimenEvent != null && !originalDataIsChanged(specimenEvent, specimenRecord);
+        })
+        .toList();
+  }
+
+  private Set<String> getChangedMediaSets(Map<String, DigitalSpecimenEvent> specimenEventMap,
+      List<DigitalSpecimenRecord> candidateSpecimenRecords) {
+    if (candidateSpecimenRecords.isEmpty()) {
+      return Set.of();
+    }
+    var changedMediaSets = fingerprintCacheService.getChangedMediaSets(
+        candidateSpecimenRecords.stream()
+            .map(specimenRecord -> specimenEventMap.get(
+                specimenRecord.digitalSpecimenWrapper().physicalSpecimenId()))
+            .toList());
+    if (!changedMediaSets.isEmpty()) {
+      log.info("{} specimens have a changed set of media according to the fingerprint cache",
+          changedMediaSets.size());
+    }
+    return changedMediaSets;
+  }
+
   private static boolean specimenMediaEntityRelationshipsAreChanged(
       DigitalSpecimenEvent specimenEvent, DigitalSpecimenRecord currentSpecimenRecord) {
     var incomingMedia = specimenEvent.digitalMediaEvents().stream()
@@ -158,30 +333,50 @@ public class SourceSystemDataCheckerService {
     Returns a list of new media and changed media, filtering out unchanged specimens media
     This only filters out media that should be sent in the media-only queue.
     This list will be sent downstream to the ingestion process.
+    Forced MASs on unchanged media are indexed by media ID, so they can be scheduled without
+    revisiting the media events.
+    Media shared by several specimens can be coalesced, so they are compared and published once.
    */
   public FilteredDigtialMedia filterChangedAndNewMedia(
       Collection<DigitalSpecimenEvent> unchangedSpecimenEvents,
       Map<String, DigitalMediaRecord> currentMediaRecords) {
     // No unchanged specimens, so all media will be published with the specimen
     if (unchangedSpecimenEvents.isEmpty()) {
-      return new FilteredDigtialMedia(Set.of(), Set.of());
+      return new FilteredDigtialMedia(Set.of(), Set.of(), Map.of());
+    }
+    var filteredMedia = new FilteredDigtialMedia(new HashSet<>(), new HashSet<>(),
+        new HashMap<>());
+    if (mediaCoalescingService.isEnabled()) {
+      mediaCoalescingService.coalesce(unchangedSpecimenEvents).forEach(coalescedMedia -> {
+        if (filterMedia(coalescedMedia.digitalMediaEvent(), currentMediaRecords, filteredMedia)) {
+          mediaCoalescingService.countPublished(coalescedMedia);
+        }
+      });
+      return filteredMedia;
     }
-    var changedMediaWithUnchangedSpecimens = new HashSet<DigitalMediaEvent>();
-    var unchangedMedia = new HashSet<DigitalMediaRecord>();
     unchangedSpecimenEvents
         .stream()
         .map(DigitalSpecimenEvent::digitalMediaEvents)
         .flatMap(Collection::stream)
-        .forEach(mediaEvent -> {
-          var currentMedia = currentMediaRecords.get(getAccessUri(mediaEvent));
-          if (currentMedia == null ||
-              mediaIsChanged(mediaEvent, currentMediaRecords.get(getAccessUri(mediaEvent)))) {
-            changedMediaWithUnchangedSpecimens.add(mediaEvent);
-          } else {
-            unchangedMedia.add(currentMedia);
-          }
-        });
-    return new FilteredDigtialMedia(changedMediaWithUnchangedSpecimens, unchangedMedia);
+        .forEach(mediaEvent -> filterMedia(mediaEvent, currentMediaRecords, filteredMedia));
+    return filteredMedia;
+  }
+
+  // Adds the media event to the filtered media, returns true if it is new or changed
+  private static boolean filterMedia(DigitalMediaEvent mediaEvent,
+      Map<String, DigitalMediaRecord> currentMediaRecords, FilteredDigtialMedia filteredMedia) {
+    var currentMedia = currentMediaRecords.get(getAccessUri(mediaEvent));
+    if (currentMedia == null || mediaIsChanged(mediaEvent, currentMedia)) {
+      filteredMedia.newOrChangedMedia().add(mediaEvent);
+      return true;
+    }
+    filteredMedia.unchangedMedia().add(currentMedia);
+    if (hasForcedMas(mediaEvent)) {
+      filteredMedia.forcedMasForUnchangedMedia()
+          .computeIfAbsent(currentMedia.id(), k -> new HashSet<>())
+          .addAll(mediaEvent.masList());
+    }
+    return false;
   }
 
   private static boolean mediaIsChanged(DigitalMediaEvent mediaEvent,
@@ -192,6 +387,9 @@ public class SourceSystemDataCheckerService {
 
   private List<DigitalSpecimenRecord> getCurrentSpecimen(
       Map<String, DigitalSpecimenEvent> eventMap) {
+    if (eventMap.isEmpty()) {
+      return List.of();
+    }
     var sourceSystemIds = eventMap.values().stream()
         .map(specimenEvent -> specimenEvent.digitalSpecimenWrapper().attributes()
             .getOdsSourceSystemID())
@@ -199,21 +397,26 @@ public class SourceSystemDataCheckerService {
     return specimenRepository.getDigitalSpecimens(eventMap.keySet(), sourceSystemIds);
   }
 
+  /*
+    Only media related to the given specimens are looked up, as only those are needed to compare
+    their media ERs, and the media of specimens that turn out to be unchanged. All of them are
+    looked up, also those that are no longer in the batch, so a removed media ER is seen.
+   */
   private Map<String, DigitalMediaRecord> getCurrentMedia(
-      Map<String, DigitalSpecimenEvent> specimenEventMap) {
-    var incomingMediaUris = new HashSet<String>();
-    var sourceSystemIds = new HashSet<String>();
-    specimenEventMap.values().stream()
-        .map(DigitalSpecimenEvent::digitalMediaEvents)
+      List<DigitalSpecimenRecord> currentSpecimenRecords) {
+    var currentMediaIds = currentSpecimenRecords.stream()
+        .map(DigitalSpecimenRecord::digitalSpecimenWrapper)
+        .map(ServiceUtils::getCurrentDigitalMediaRecordsForSpecimen)
         .flatMap(Collection::stream)
-        .forEach(mediaEvent -> {
-          incomingMediaUris.add(getAccessUri(mediaEvent));
-          sourceSystemIds.add(mediaEvent.digitalMediaWrapper().attributes().getOdsSourceSystemID());
-        });
-    if (!incomingMediaUris.isEmpty()) {
-      return mediaRepository.getExistingDigitalMedia(incomingMediaUris, sourceSystemIds);
+        .collect(Collectors.toSet());
+    if (currentMediaIds.isEmpty()) {
+      return Map.of();
     }
-    return Map.of();
+    var sourceSystemIds = currentSpecimenRecords.stream()
+        .map(specimenRecord -> specimenRecord.digitalSpecimenWrapper().attributes()
+            .getOdsSourceSystemID())
+        .collect(Collectors.toSet());
+    return mediaRepository.getExistingDigitalMedia(currentMediaIds, sourceSystemIds);
   }
 
   // Pairs current specimens with current media in the DigitalSpecimenRecord
@@ -227,17 +430,12 @@ public class SourceSystemDataCheckerService {
               Function.identity()
           ));
     }
-    HashMap<String, DigitalMediaRecord> mediaIdMap = HashMap.newHashMap(currentDigitalMedia.size());
-    currentDigitalMedia.values().forEach(m -> mediaIdMap.put(m.id(), m));
+    HashMap<String, String> mediaUriMap = HashMap.newHashMap(currentDigitalMedia.size());
+    currentDigitalMedia.values().forEach(m -> mediaUriMap.put(m.id(), m.accessURI()));
     return currentDigitalSpecimens.stream()
         .map(specimenRecord -> {
-          var mediaIds = getCurrentDigitalMediaRecordsForSpecimen(
-              specimenRecord.digitalSpecimenWrapper());
-          var mediaUris = mediaIds.stream()
-              .map(mediaIdMap::get)
-              .filter(Objects::nonNull)
-              .map(DigitalMediaRecord::accessURI)
-              .collect(Collectors.toSet());
+          var mediaUris = getStoredMediaUris(getCurrentDigitalMediaRecordsForSpecimen(
+              specimenRecord.digitalSpecimenWrapper()), mediaUriMap::get);
           return new DigitalSpecimenRecord(
               specimenRecord.id(),
               specimenRecord.digitalSpecimenWrapper(),
@@ -248,23 +446,4 @@ public class SourceSystemDataCheckerService {
             Function.identity()
         ));
   }
-
-  /*
-  Looks in the current version of the specimen and extracts the related media URIs
-   */
-  private static Set<String> getCurrentDigitalMediaRecordsForSpecimen(
-      DigitalSpecimenWrapper currentSpecimenWrapper) {
-    return currentSpecimenWrapper.attributes().getOdsHasEntityRelationships()
-        .stream()
-        .filter(er -> "hasDigitalMedia".equals(er.getDwcRelationshipOfResource()))
-        .map(EntityRelationship::getOdsRelatedResourceURI)
-        .map(URI::toString)
-        .map(SourceSystemDataCheckerService::stripDoiProxy)
-        .collect(Collectors.toSet());
-  }
-
-  private static String stripDoiProxy(String uri) {
-    return uri.startsWith(DOI_PROXY) ?
-        uri.substring(DOI_PROXY.length()) : uri;
-  }
 }
@@ -38,6 +38,7 @@ public class TestUtils {
   public static final String MEDIA_URI_1 = "https://media.com/1";
   public static final String MEDIA_URI_2 = "https://media.com/2";
   public static final String SPECIMEN_DOI = "10.3535/AAA-AAA-AAA";
+  public static final String SPECIMEN_DOI_2 = "10.3535/BBB-BBB-BBB";
   public static final String MEDIA_DOI_1 = "10.3535/111-111-111";
   public static final String MEDIA_DOI_2 = "10.3535/222-222-222";
   public static final String MAS_ID = "10.2000.1025/GGG-EEE-FFF";
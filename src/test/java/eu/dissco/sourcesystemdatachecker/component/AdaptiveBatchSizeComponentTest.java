@@ -0,0 +1,122 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_ID;
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.STANDBY_LISTENER_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveBatchSizeComponentTest {
+
+  @Mock
+  private RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  @Mock
+  private SimpleMessageListenerContainer container;
+  @Mock
+  private SimpleMessageListenerContainer standbyContainer;
+  private RabbitMqProperties properties;
+  private SimpleMeterRegistry meterRegistry;
+  private AdaptiveBatchSizeComponent adaptiveBatchSizeComponent;
+
+  @BeforeEach
+  void setup() {
+    properties = new RabbitMqProperties();
+    properties.getAdaptiveBatch().setEnabled(true);
+    properties.getAdaptiveBatch().setMaxHeapUsage(1.0);
+    meterRegistry = new SimpleMeterRegistry();
+    adaptiveBatchSizeComponent = new AdaptiveBatchSizeComponent(listenerEndpointRegistry,
+        properties, meterRegistry);
+  }
+
+  @Test
+  void testShrinkSlowBatch() {
+    // Given
+    givenContainers();
+
+    // When
+    adaptiveBatchSizeComponent.record(500, Duration.ofSeconds(10));
+
+    // Then
+    then(container).should().setBatchSize(250);
+    then(standbyContainer).should().setBatchSize(250);
+    assertThat(adaptiveBatchSizeComponent.getBatchSize()).isEqualTo(250);
+    assertThat(meterRegistry.counter("rabbitmq.adaptive.batch.adjustments", "reason", "latency")
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testGrowFastFullBatch() {
+    // Given
+    givenContainers();
+
+    // When
+    adaptiveBatchSizeComponent.record(500, Duration.ofSeconds(1));
+
+    // Then
+    then(container).should().setBatchSize(1000);
+    assertThat(adaptiveBatchSizeComponent.getBatchSize()).isEqualTo(1000);
+    assertThat(adaptiveBatchSizeComponent.getReceiveTimeout()).isEqualTo(1000);
+  }
+
+  @Test
+  void testShrinkAboveHeapBudget() {
+    // Given
+    properties.getAdaptiveBatch().setMaxHeapUsage(0.8);
+    adaptiveBatchSizeComponent.setHeapUsage(() -> 0.9);
+    givenContainers();
+
+    // When
+    adaptiveBatchSizeComponent.record(500, Duration.ofSeconds(1));
+
+    // Then
+    assertThat(adaptiveBatchSizeComponent.getBatchSize()).isEqualTo(250);
+    assertThat(meterRegistry.counter("rabbitmq.adaptive.batch.adjustments", "reason", "memory")
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testShorterReceiveTimeoutForPartialBatch() {
+    // Given
+    givenContainers();
+
+    // When
+    adaptiveBatchSizeComponent.record(100, Duration.ofSeconds(1));
+
+    // Then
+    then(container).should().setReceiveTimeout(500);
+    assertThat(adaptiveBatchSizeComponent.getBatchSize()).isEqualTo(500);
+  }
+
+  @Test
+  void testStayWithinLimits() {
+    // Given
+    properties.getAdaptiveBatch().setMinBatchSize(400);
+    givenContainers();
+
+    // When
+    adaptiveBatchSizeComponent.record(500, Duration.ofMinutes(1));
+
+    // Then
+    then(container).should().setBatchSize(400);
+    assertThat(adaptiveBatchSizeComponent.getBatchSize()).isEqualTo(400);
+  }
+
+  private void givenContainers() {
+    given(listenerEndpointRegistry.getListenerContainer(BULK_LISTENER_ID)).willReturn(container);
+    given(listenerEndpointRegistry.getListenerContainer(STANDBY_LISTENER_ID))
+        .willReturn(standbyContainer);
+  }
+
+}
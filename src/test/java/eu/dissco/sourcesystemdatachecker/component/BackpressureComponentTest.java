@@ -0,0 +1,151 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_ID;
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.STANDBY_LISTENER_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class BackpressureComponentTest {
+
+  private static final String QUEUE = "name-usage-service-queue";
+
+  @Mock
+  private AmqpAdmin amqpAdmin;
+  @Mock
+  private RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  @Mock
+  private MessageListenerContainer container;
+  @Mock
+  private MessageListenerContainer standbyContainer;
+  private BackpressureComponent backpressureComponent;
+
+  @BeforeEach
+  void setup() {
+    var properties = new RabbitMqProperties();
+    properties.getBackpressure().setQueueNames(List.of(QUEUE));
+    properties.getBackpressure().setHighWatermark(100);
+    properties.getBackpressure().setLowWatermark(10);
+    backpressureComponent = new BackpressureComponent(amqpAdmin, listenerEndpointRegistry,
+        properties, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void testPauseAboveHighWatermark() {
+    // Given
+    given(amqpAdmin.getQueueInfo(QUEUE)).willReturn(new QueueInformation(QUEUE, 100, 1));
+    givenRunningContainer();
+
+    // When
+    backpressureComponent.sample();
+
+    // Then
+    then(container).should().stop();
+    then(standbyContainer).should(never()).stop();
+    assertThat(backpressureComponent.isPaused()).isTrue();
+  }
+
+  @Test
+  void testPipelineRejected() {
+    // Given
+    var properties = new RabbitMqProperties();
+    properties.getBackpressure().setEnabled(true);
+    properties.getPipeline().setEnabled(true);
+    backpressureComponent = new BackpressureComponent(amqpAdmin, listenerEndpointRegistry,
+        properties, new SimpleMeterRegistry());
+
+    // When / Then
+    assertThatThrownBy(() -> backpressureComponent.start())
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testStayPausedBetweenWatermarks() {
+    // Given
+    given(amqpAdmin.getQueueInfo(QUEUE)).willReturn(new QueueInformation(QUEUE, 100, 1),
+        new QueueInformation(QUEUE, 50, 1));
+    givenRunningContainer();
+
+    // When
+    backpressureComponent.sample();
+    backpressureComponent.sample();
+
+    // Then
+    then(container).should(never()).start();
+    assertThat(backpressureComponent.isPaused()).isTrue();
+  }
+
+  @Test
+  void testResumeBelowLowWatermark() {
+    // Given
+    given(amqpAdmin.getQueueInfo(QUEUE)).willReturn(new QueueInformation(QUEUE, 100, 1),
+        new QueueInformation(QUEUE, 10, 1));
+    givenRunningContainer();
+
+    // When
+    backpressureComponent.sample();
+    backpressureComponent.sample();
+
+    // Then
+    then(container).should().start();
+    assertThat(backpressureComponent.isPaused()).isFalse();
+  }
+
+  @Test
+  void testFailedResumeRetriedOnNextSample() {
+    // Given
+    given(amqpAdmin.getQueueInfo(QUEUE)).willReturn(new QueueInformation(QUEUE, 100, 1),
+        new QueueInformation(QUEUE, 10, 1));
+    givenRunningContainer();
+    willThrow(new IllegalStateException("Channel closed")).willDoNothing().given(container).start();
+
+    // When
+    backpressureComponent.sample();
+    backpressureComponent.sample();
+    backpressureComponent.sample();
+
+    // Then
+    then(container).should(times(2)).start();
+    assertThat(backpressureComponent.isPaused()).isFalse();
+  }
+
+  @Test
+  void testUnknownQueueDoesNotPause() {
+    // Given
+    given(amqpAdmin.getQueueInfo(QUEUE)).willReturn(null);
+
+    // When
+    backpressureComponent.sample();
+
+    // Then
+    then(listenerEndpointRegistry).shouldHaveNoInteractions();
+    assertThat(backpressureComponent.isPaused()).isFalse();
+  }
+
+  // The standby container is not running, as this replica does not stand by for any shard
+  private void givenRunningContainer() {
+    given(listenerEndpointRegistry.getListenerContainer(BULK_LISTENER_ID)).willReturn(container);
+    given(listenerEndpointRegistry.getListenerContainer(STANDBY_LISTENER_ID))
+        .willReturn(standbyContainer);
+    given(container.isRunning()).willReturn(true);
+  }
+
+}
@@ -0,0 +1,91 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class BatchByteBudgetComponentTest {
+
+  private RabbitMqProperties properties;
+  private SimpleMeterRegistry meterRegistry;
+  private BatchByteBudgetComponent batchByteBudgetComponent;
+
+  @BeforeEach
+  void setup() {
+    properties = new RabbitMqProperties();
+    properties.getByteBudget().setEnabled(true);
+    properties.getByteBudget().setMaxBatchSize(DataSize.ofBytes(10));
+    meterRegistry = new SimpleMeterRegistry();
+    batchByteBudgetComponent = new BatchByteBudgetComponent(properties, meterRegistry);
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+    properties.getByteBudget().setEnabled(false);
+    var messages = List.of("aaaaaaaa", "bbbbbbbb");
+
+    // When
+    var result = batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length);
+
+    // Then
+    assertThat(result).containsExactly(messages);
+  }
+
+  @Test
+  void testSplitWithinBudget() {
+    // Given
+    var messages = List.of("aaaa", "bbbb", "cccc", "dd");
+
+    // When
+    var result = batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length);
+
+    // Then
+    assertThat(result).containsExactly(List.of("aaaa", "bbbb"), List.of("cccc", "dd"));
+    assertThat(meterRegistry.counter("rabbitmq.byte.budget.splits").count()).isEqualTo(1);
+  }
+
+  @Test
+  void testOversizedMessageOnItsOwn() {
+    // Given
+    var messages = List.of("aaaa", "bbbbbbbbbbbb", "cccc");
+
+    // When
+    var result = batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length);
+
+    // Then
+    assertThat(result).containsExactly(List.of("aaaa"), List.of("bbbbbbbbbbbb"), List.of("cccc"));
+    assertThat(meterRegistry.counter("rabbitmq.byte.budget.oversized").count()).isEqualTo(1);
+  }
+
+  @Test
+  void testSplitByUtf8Bytes() {
+    // Given
+    var messages = List.of("ééééé", "a");
+
+    // When
+    var result = batchByteBudgetComponent.split(messages, BatchByteBudgetComponent::utf8Length);
+
+    // Then
+    assertThat(result).containsExactly(List.of("ééééé"), List.of("a"));
+  }
+
+  @Test
+  void testUtf8Length() {
+    // Given
+    var message = "aé€\uD83E\uDD8B";
+
+    // When
+    var result = BatchByteBudgetComponent.utf8Length(message);
+
+    // Then
+    assertThat(result).isEqualTo(message.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+}
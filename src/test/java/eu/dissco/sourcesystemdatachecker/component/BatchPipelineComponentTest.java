@@ -0,0 +1,172 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.BULK_LISTENER_ID;
+import static eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService.STANDBY_LISTENER_ID;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+
+import com.rabbitmq.client.Channel;
+import eu.dissco.sourcesystemdatachecker.domain.BatchDecision;
+import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.service.SourceSystemDataCheckerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class BatchPipelineComponentTest {
+
+  @Mock
+  private SourceSystemDataCheckerService sourceSystemDataCheckerService;
+  @Mock
+  private Channel channel;
+  @Mock
+  private RabbitListenerEndpointRegistry listenerEndpointRegistry;
+  @Mock
+  private MessageListenerContainer container;
+  @Mock
+  private MessageListenerContainer standbyContainer;
+  private BatchPipelineComponent batchPipelineComponent;
+
+  @BeforeEach
+  void setup() {
+    var properties = new RabbitMqProperties();
+    properties.getPipeline().setEnabled(true);
+    batchPipelineComponent = new BatchPipelineComponent(sourceSystemDataCheckerService,
+        listenerEndpointRegistry, properties, new SimpleMeterRegistry());
+    batchPipelineComponent.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    batchPipelineComponent.stop();
+  }
+
+  @Test
+  void testBatchesAcknowledgedInOrder() throws InterruptedException, IOException {
+    // Given
+    var firstBatch = Set.of(givenDigitalSpecimenEvent());
+    var secondBatch = Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    var firstDecision = givenBatchDecision(MEDIA_DOI_1);
+    var secondDecision = givenBatchDecision(MEDIA_DOI_2);
+    given(sourceSystemDataCheckerService.decide(firstBatch)).willReturn(firstDecision);
+    given(sourceSystemDataCheckerService.decide(secondBatch)).willReturn(secondDecision);
+
+    // When
+    batchPipelineComponent.submit(firstBatch, channel, 1);
+    batchPipelineComponent.submit(secondBatch, channel, 2);
+
+    // Then
+    then(channel).should(timeout(5_000)).basicAck(2, true);
+    var inOrder = inOrder(sourceSystemDataCheckerService, channel);
+    inOrder.verify(sourceSystemDataCheckerService).emit(firstDecision);
+    inOrder.verify(channel).basicAck(1, true);
+    inOrder.verify(sourceSystemDataCheckerService).emit(secondDecision);
+    inOrder.verify(channel).basicAck(2, true);
+  }
+
+  @Test
+  void testFailedBatchRequeued() throws InterruptedException, IOException {
+    // Given
+    var batch = Set.of(givenDigitalSpecimenEvent());
+    given(sourceSystemDataCheckerService.decide(batch))
+        .willThrow(new DataAccessResourceFailureException("Connection lost"));
+
+    // When
+    batchPipelineComponent.submit(batch, channel, 1);
+
+    // Then
+    then(channel).should(timeout(5_000)).basicNack(1, true, true);
+    then(channel).should(never()).basicAck(anyLong(), anyBoolean());
+    then(sourceSystemDataCheckerService).should(never()).emit(any());
+  }
+
+  @Test
+  void testErrorStopsConsumer() throws InterruptedException, IOException {
+    // Given
+    var firstBatch = Set.of(givenDigitalSpecimenEvent());
+    var secondBatch = Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    given(sourceSystemDataCheckerService.decide(firstBatch))
+        .willThrow(new OutOfMemoryError("Java heap space"));
+    given(sourceSystemDataCheckerService.decide(secondBatch))
+        .willReturn(givenBatchDecision(MEDIA_DOI_1));
+    given(listenerEndpointRegistry.getListenerContainer(BULK_LISTENER_ID)).willReturn(container);
+    given(listenerEndpointRegistry.getListenerContainer(STANDBY_LISTENER_ID))
+        .willReturn(standbyContainer);
+
+    // When
+    batchPipelineComponent.submit(firstBatch, channel, 1);
+    batchPipelineComponent.submit(secondBatch, channel, 2);
+
+    // Then
+    then(container).should(timeout(5_000)).stop();
+    then(standbyContainer).should(timeout(5_000)).stop();
+    then(channel).should(timeout(5_000)).basicAck(2, true);
+    then(channel).should().basicNack(1, true, true);
+  }
+
+  @Test
+  void testSubmitFailsWhenStopped() throws InterruptedException {
+    // Given
+    batchPipelineComponent.stop();
+    batchPipelineComponent.submit(Set.of(givenDigitalSpecimenEvent()), channel, 1);
+
+    // When / Then
+    assertThatThrownBy(() -> batchPipelineComponent.submit(
+        Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of())), channel, 2))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testFailedSubmissionRejectedInOrder() throws InterruptedException, IOException {
+    // Given
+    var firstBatch = Set.of(givenDigitalSpecimenEvent());
+    var thirdBatch = Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    var firstDecision = givenBatchDecision(MEDIA_DOI_1);
+    var thirdDecision = givenBatchDecision(MEDIA_DOI_2);
+    given(sourceSystemDataCheckerService.decide(firstBatch)).willReturn(firstDecision);
+    given(sourceSystemDataCheckerService.decide(thirdBatch)).willReturn(thirdDecision);
+
+    // When
+    batchPipelineComponent.submit(firstBatch, channel, 1);
+    batchPipelineComponent.submitFailed(new IllegalArgumentException("Undecodable"), channel, 2);
+    batchPipelineComponent.submit(thirdBatch, channel, 3);
+
+    // Then
+    then(channel).should(timeout(5_000)).basicAck(3, true);
+    var inOrder = inOrder(channel);
+    inOrder.verify(channel).basicAck(1, true);
+    inOrder.verify(channel).basicNack(2, true, true);
+    inOrder.verify(channel).basicAck(3, true);
+    then(sourceSystemDataCheckerService).should(never()).decide(Set.of());
+  }
+
+  private static BatchDecision givenBatchDecision(String unchangedMediaId) {
+    return new BatchDecision(Map.of(), Set.of(unchangedMediaId), Set.of(), Set.of(),
+        new FilteredDigtialMedia(Set.of(), Set.of(), Map.of()));
+  }
+
+}
@@ -0,0 +1,147 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import eu.dissco.sourcesystemdatachecker.properties.StageConcurrencyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchStageComponentTest {
+
+  private StageConcurrencyProperties properties;
+  private SimpleMeterRegistry meterRegistry;
+  private BatchStageComponent batchStageComponent;
+
+  @BeforeEach
+  void setup() {
+    properties = new StageConcurrencyProperties();
+    meterRegistry = new SimpleMeterRegistry();
+    batchStageComponent = new BatchStageComponent(properties, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    batchStageComponent.stop();
+  }
+
+  @Test
+  void testRunInSequence() {
+    // Given
+    var order = new ArrayList<String>();
+    var stages = new LinkedHashMap<String, Runnable>();
+    stages.put("first", () -> order.add("first"));
+    stages.put("second", () -> order.add("second"));
+
+    // When
+    batchStageComponent.runIndependent(stages);
+
+    // Then
+    assertThat(order).containsExactly("first", "second");
+    assertThat(meterRegistry.timer("batch.stage.duration", "stage", "second").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void testRunConcurrently() {
+    // Given
+    properties.setEnabled(true);
+    batchStageComponent.start();
+    // Both stages only finish once the other one has started
+    var started = new CountDownLatch(2);
+    var finished = Collections.synchronizedList(new ArrayList<String>());
+    var stages = new LinkedHashMap<String, Runnable>();
+    stages.put("first", () -> awaitOther(started, finished, "first"));
+    stages.put("second", () -> awaitOther(started, finished, "second"));
+
+    // When
+    batchStageComponent.runIndependent(stages);
+
+    // Then
+    assertThat(finished).containsExactlyInAnyOrder("first", "second");
+  }
+
+  @Test
+  void testFailureCancelsOtherStages() throws InterruptedException {
+    // Given
+    properties.setEnabled(true);
+    batchStageComponent.start();
+    var interrupted = new CountDownLatch(1);
+    Map<String, Runnable> stages = new LinkedHashMap<>();
+    stages.put("blocking", () -> {
+      try {
+        new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+    });
+    stages.put("failing", () -> {
+      throw new IllegalArgumentException("Publishing failed");
+    });
+
+    // When / Then
+    assertThatThrownBy(() -> batchStageComponent.runIndependent(stages))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void testFailureWaitsForOtherStages() {
+    // Given
+    properties.setEnabled(true);
+    batchStageComponent.start();
+    var ended = new AtomicBoolean();
+    Map<String, Runnable> stages = new LinkedHashMap<>();
+    stages.put("blocking", () -> {
+      try {
+        new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        // A stage that takes a while to stop, such as a publish in flight
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+        ended.set(true);
+      }
+    });
+    stages.put("failing", () -> {
+      throw new IllegalArgumentException("Publishing failed");
+    });
+
+    // When / Then
+    assertThatThrownBy(() -> batchStageComponent.runIndependent(stages))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(ended).isTrue();
+  }
+
+  @Test
+  void testRunReturnsResult() {
+    // When
+    var result = batchStageComponent.run("lookup", () -> List.of("record"));
+
+    // Then
+    assertThat(result).containsExactly("record");
+    assertThat(meterRegistry.timer("batch.stage.duration", "stage", "lookup").count())
+        .isEqualTo(1);
+  }
+
+  private static void awaitOther(CountDownLatch started, List<String> finished, String stage) {
+    started.countDown();
+    try {
+      if (started.await(10, TimeUnit.SECONDS)) {
+        finished.add(stage);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.service.FingerprintCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationListenerTest {
+
+  @Mock
+  private DataSource dataSource;
+  @Mock
+  private FingerprintCacheService fingerprintCacheService;
+  private CacheInvalidationListener listener;
+
+  @BeforeEach
+  void setup() {
+    listener = new CacheInvalidationListener(dataSource, fingerprintCacheService,
+        new FingerprintCacheProperties(), MAPPER, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void testSpecimenNotification() {
+    // Given
+    var payload = givenPayload("digital_specimen", PHYSICAL_ID_1);
+
+    // When
+    listener.handleNotification(payload);
+
+    // Then
+    then(fingerprintCacheService).should()
+        .invalidateSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+    then(fingerprintCacheService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testMediaNotification() {
+    // Given
+    var payload = givenPayload("digital_media_object", MEDIA_URI_1);
+
+    // When
+    listener.handleNotification(payload);
+
+    // Then
+    then(fingerprintCacheService).should()
+        .invalidateMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1));
+    then(fingerprintCacheService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testUnknownTable() {
+    // Given
+    var payload = givenPayload("annotation", PHYSICAL_ID_1);
+
+    // When
+    listener.handleNotification(payload);
+
+    // Then
+    then(fingerprintCacheService).should().invalidateModifiedSince(any());
+    then(fingerprintCacheService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testInvalidPayload() {
+    // Given
+
+    // When
+    listener.handleNotification("not json");
+
+    // Then
+    then(fingerprintCacheService).should().invalidateModifiedSince(any());
+    then(fingerprintCacheService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+
+    // When
+    listener.start();
+
+    // Then
+    then(dataSource).shouldHaveNoInteractions();
+  }
+
+  private static String givenPayload(String table, String localId) {
+    return MAPPER.createObjectNode()
+        .put("table", table)
+        .put("sourceSystemId", SOURCE_SYSTEM_PID)
+        .put("localId", localId)
+        .toString();
+  }
+
+}
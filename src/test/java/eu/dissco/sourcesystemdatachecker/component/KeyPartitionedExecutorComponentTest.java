@@ -0,0 +1,99 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+
+import eu.dissco.sourcesystemdatachecker.properties.KeyPartitioningProperties;
+import eu.dissco.sourcesystemdatachecker.service.SourceSystemDataCheckerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class KeyPartitionedExecutorComponentTest {
+
+  @Mock
+  private SourceSystemDataCheckerService sourceSystemDataCheckerService;
+  private KeyPartitioningProperties properties;
+  private KeyPartitionedExecutorComponent keyPartitionedExecutorComponent;
+
+  @BeforeEach
+  void setup() {
+    properties = new KeyPartitioningProperties();
+    properties.setEnabled(true);
+    properties.setLanes(2);
+    keyPartitionedExecutorComponent = new KeyPartitionedExecutorComponent(
+        sourceSystemDataCheckerService, properties, new SimpleMeterRegistry());
+    keyPartitionedExecutorComponent.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    keyPartitionedExecutorComponent.stop();
+  }
+
+  @Test
+  void testSpecimensSplitOverLanes() {
+    // Given
+    var firstEvent = givenDigitalSpecimenEvent();
+    var secondEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of());
+
+    // When
+    keyPartitionedExecutorComponent.handleMessages(Set.of(firstEvent, secondEvent));
+
+    // Then
+    then(sourceSystemDataCheckerService).should().handleMessages(Set.of(firstEvent));
+    then(sourceSystemDataCheckerService).should().handleMessages(Set.of(secondEvent));
+  }
+
+  @Test
+  void testSameSpecimenHandledOnSameLane() {
+    // Given
+    var threads = Collections.synchronizedList(new ArrayList<String>());
+    willAnswer(invocation -> threads.add(Thread.currentThread().getName()))
+        .given(sourceSystemDataCheckerService).handleMessages(anySet());
+
+    // When
+    keyPartitionedExecutorComponent.handleMessages(Set.of(givenDigitalSpecimenEvent()));
+    keyPartitionedExecutorComponent.handleMessages(
+        Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of())));
+    keyPartitionedExecutorComponent.handleMessages(Set.of(givenDigitalSpecimenEvent()));
+
+    // Then
+    assertThat(threads).hasSize(3);
+    assertThat(threads.get(0)).isEqualTo(threads.get(2)).isNotEqualTo(threads.get(1));
+  }
+
+  @Test
+  void testFailureRethrownAfterAllLanes() {
+    // Given
+    var failingEvent = givenDigitalSpecimenEvent();
+    var secondEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of());
+    willAnswer(invocation -> {
+      if (invocation.getArgument(0).equals(Set.of(failingEvent))) {
+        throw new DataAccessResourceFailureException("Connection lost");
+      }
+      return null;
+    }).given(sourceSystemDataCheckerService).handleMessages(anySet());
+
+    // When / Then
+    assertThatThrownBy(() -> keyPartitionedExecutorComponent.handleMessages(
+        Set.of(failingEvent, secondEvent))).isInstanceOf(DataAccessResourceFailureException.class);
+    then(sourceSystemDataCheckerService).should().handleMessages(Set.of(secondEvent));
+  }
+
+}
@@ -1,9 +1,16 @@
 package eu.dissco.sourcesystemdatachecker.component;
 
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMedia;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.amqp.core.Message;
@@ -16,7 +23,7 @@ class MessageCompressionComponentTest {
 
   @BeforeEach
   void setUp() {
-    messageCompressionComponent = new MessageCompressionComponent();
+    messageCompressionComponent = new MessageCompressionComponent(MAPPER);
   }
 
   @Test
@@ -36,15 +43,77 @@ class MessageCompressionComponentTest {
     assertThat(decompressedMessage).isEqualTo(messageString);
   }
 
+  @Test
+  void testCompressObjectMessage() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+
+    // When
+    var compressedMessage = messageCompressionComponent.toMessage(event, new MessageProperties());
+
+    // Then
+    assertThat(compressedMessage.getMessageProperties().getContentEncoding()).isEqualTo("gzip");
+    var decompressedMessage = messageCompressionComponent.fromMessage(compressedMessage);
+    assertThat(MAPPER.readValue((String) decompressedMessage, DigitalSpecimenEvent.class))
+        .isEqualTo(event);
+  }
+
+  @Test
+  void testCompressConsecutiveMessages() {
+    // Given
+    var largeMessage = givenMessage().repeat(200);
+
+    // When
+    var first = messageCompressionComponent.toMessage(largeMessage, new MessageProperties());
+    var second = messageCompressionComponent.toMessage(givenMessage(), new MessageProperties());
+
+    // Then
+    assertThat(messageCompressionComponent.fromMessage(first)).isEqualTo(largeMessage);
+    assertThat(messageCompressionComponent.fromMessage(second)).isEqualTo(givenMessage());
+  }
+
+  @Test
+  void testCompressOnVirtualThreads() throws Exception {
+    // Given
+    var messages = IntStream.range(0, 100).mapToObj(i -> givenMessage().repeat(i + 1)).toList();
+
+    // When
+    List<Future<Message>> results;
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      results = messages.stream().map(message -> executor.submit(
+          () -> messageCompressionComponent.toMessage(message, new MessageProperties()))).toList();
+    }
+
+    // Then
+    for (var i = 0; i < messages.size(); i++) {
+      assertThat(messageCompressionComponent.fromMessage(results.get(i).get()))
+          .isEqualTo(messages.get(i));
+    }
+  }
+
+  @Test
+  void testUncompressedSize() {
+    // Given
+    var message = givenMessage();
+    var compressedMessage = messageCompressionComponent.toMessage(message,
+        new MessageProperties());
+
+    // When
+    var result = messageCompressionComponent.uncompressedSize(compressedMessage);
+
+    // Then
+    assertThat(result).isEqualTo(message.getBytes(StandardCharsets.UTF_8).length);
+  }
+
   @Test
   void testInvalidMessage() {
     // Given
-    var messageInteger = 1234;
+    var unserialisableMessage = new Object();
     var messageProperties = new MessageProperties();
 
     // When / Then
     assertThrows(MessageConversionException.class,
-        () -> messageCompressionComponent.toMessage(messageInteger, messageProperties));
+        () -> messageCompressionComponent.toMessage(unserialisableMessage, messageProperties));
   }
 
   @Test
@@ -0,0 +1,109 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.component.ReadReplicaComponent.REPLICATION_LAG;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+
+import com.zaxxer.hikari.pool.HikariPool.PoolInitializationException;
+import eu.dissco.sourcesystemdatachecker.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaComponentTest {
+
+  @Mock
+  private DSLContext primaryContext;
+  @Mock
+  private DSLContext replicaContext;
+  private ReadReplicaComponent readReplicaComponent;
+
+  @BeforeEach
+  void setup() {
+    readReplicaComponent = new ReadReplicaComponent(new ReadReplicaProperties(), primaryContext,
+        new SimpleMeterRegistry());
+    readReplicaComponent.setReplicaContext(replicaContext);
+  }
+
+  @Test
+  void testPrimaryBeforeLagIsKnown() {
+    // When
+    var result = readReplicaComponent.getReadContext();
+
+    // Then
+    assertThat(result).isSameAs(primaryContext);
+  }
+
+  @Test
+  void testReplicaWithinMaxLag() {
+    // Given
+    given(replicaContext.fetchValue(REPLICATION_LAG)).willReturn(2.5);
+
+    // When
+    readReplicaComponent.sampleLag();
+
+    // Then
+    assertThat(readReplicaComponent.getReadContext()).isSameAs(replicaContext);
+  }
+
+  @Test
+  void testPrimaryAboveMaxLag() {
+    // Given
+    given(replicaContext.fetchValue(REPLICATION_LAG)).willReturn(2.5, 45.0);
+
+    // When
+    readReplicaComponent.sampleLag();
+    readReplicaComponent.sampleLag();
+
+    // Then
+    assertThat(readReplicaComponent.getReadContext()).isSameAs(primaryContext);
+  }
+
+  @Test
+  void testPrimaryWhenReplicaUnavailable() {
+    // Given
+    given(replicaContext.fetchValue(REPLICATION_LAG)).willReturn(2.5)
+        .willThrow(new DataAccessException("Connection refused"));
+
+    // When
+    readReplicaComponent.sampleLag();
+    readReplicaComponent.sampleLag();
+
+    // Then
+    assertThat(readReplicaComponent.getReadContext()).isSameAs(primaryContext);
+  }
+
+  @Test
+  void testPrimaryWhenReplicaPoolFails() {
+    // Given
+    given(replicaContext.fetchValue(REPLICATION_LAG)).willReturn(2.5)
+        .willThrow(new PoolInitializationException(new IllegalArgumentException("Bad url")));
+
+    // When
+    readReplicaComponent.sampleLag();
+    readReplicaComponent.sampleLag();
+
+    // Then
+    assertThat(readReplicaComponent.getReadContext()).isSameAs(primaryContext);
+  }
+
+  @Test
+  void testEnabledWithoutUrl() {
+    // Given
+    var properties = new ReadReplicaProperties();
+    properties.setEnabled(true);
+    var component = new ReadReplicaComponent(properties, primaryContext,
+        new SimpleMeterRegistry());
+
+    // When / Then
+    assertThatThrownBy(component::start).isInstanceOf(IllegalStateException.class);
+  }
+
+}
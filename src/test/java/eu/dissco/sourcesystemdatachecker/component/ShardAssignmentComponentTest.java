@@ -0,0 +1,223 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.component.ShardAssignmentComponent.OWN_SHARD_PRIORITY;
+import static eu.dissco.sourcesystemdatachecker.component.ShardAssignmentComponent.STANDBY_SHARD_PRIORITY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers
+class ShardAssignmentComponentTest {
+
+  private static RabbitMQContainer container;
+  private static CachingConnectionFactory connectionFactory;
+  private RabbitMqProperties properties;
+
+  @BeforeAll
+  static void setupContainer() throws IOException, InterruptedException {
+    container = new RabbitMQContainer("rabbitmq:4.0.8-management-alpine");
+    container.start();
+    container.execInContainer("rabbitmq-plugins", "enable", "rabbitmq_consistent_hash_exchange");
+    connectionFactory = new CachingConnectionFactory(container.getHost());
+    connectionFactory.setPort(container.getAmqpPort());
+    connectionFactory.setUsername(container.getAdminUsername());
+    connectionFactory.setPassword(container.getAdminPassword());
+  }
+
+  @AfterAll
+  static void shutdownContainer() {
+    connectionFactory.destroy();
+    container.stop();
+  }
+
+  @BeforeEach
+  void setup() {
+    properties = new RabbitMqProperties();
+    properties.getSharding().setEnabled(true);
+    properties.getSharding().setShards(4);
+    properties.getSharding().setReplicas(2);
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+    properties.getSharding().setEnabled(false);
+
+    // When
+    var result = new ShardAssignmentComponent(properties);
+
+    // Then
+    assertThat(result.getQueueNames()).containsExactly("source-system-data-checker-queue");
+    assertThat(result.hasStandbyQueues()).isFalse();
+    assertThat(result.getDeclarables().getDeclarables()).isEmpty();
+  }
+
+  @Test
+  void testQueueNamesOfReplica() {
+    // Given
+    properties.getSharding().setReplicaIndex(1);
+
+    // When
+    var result = new ShardAssignmentComponent(properties);
+
+    // Then
+    assertThat(result.getQueueNames()).containsExactly("source-system-data-checker-shard-1",
+        "source-system-data-checker-shard-3");
+    assertThat(result.getStandbyQueueNames()).containsExactly(
+        "source-system-data-checker-shard-0", "source-system-data-checker-shard-2");
+  }
+
+  @Test
+  void testNoStandbyQueuesWithoutFailover() {
+    // Given
+    properties.getSharding().setFailover(false);
+
+    // When
+    var result = new ShardAssignmentComponent(properties);
+
+    // Then
+    assertThat(result.getQueueNames()).hasSize(2);
+    assertThat(result.hasStandbyQueues()).isFalse();
+  }
+
+  @Test
+  void testSingleReplicaHasNoStandbyQueues() {
+    // Given
+    properties.getSharding().setReplicas(1);
+
+    // When
+    var result = new ShardAssignmentComponent(properties);
+
+    // Then
+    assertThat(result.getQueueNames()).hasSize(4);
+    assertThat(result.hasStandbyQueues()).isFalse();
+  }
+
+  @Test
+  void testShardFailsOverToStandbyAndBack() throws Exception {
+    // Given
+    declare(new ShardAssignmentComponent(properties));
+    var queueName = properties.getSharding().getQueuePrefix() + 0;
+    var rabbitTemplate = new RabbitTemplate(connectionFactory);
+    var ownerMessages = new LinkedBlockingQueue<String>();
+    var standbyMessages = new LinkedBlockingQueue<String>();
+    try (var connection = connectionFactory.getRabbitConnectionFactory().newConnection();
+        var standby = connection.createChannel()) {
+      var owner = connection.createChannel();
+      consume(owner, queueName, OWN_SHARD_PRIORITY, ownerMessages);
+      consume(standby, queueName, STANDBY_SHARD_PRIORITY, standbyMessages);
+
+      // When
+      rabbitTemplate.convertAndSend(queueName, "owned");
+      var ownedMessage = ownerMessages.poll(5, TimeUnit.SECONDS);
+      owner.close();
+      rabbitTemplate.convertAndSend(queueName, "failed over");
+      var failedOverMessage = standbyMessages.poll(5, TimeUnit.SECONDS);
+      try (var returnedOwner = connection.createChannel()) {
+        consume(returnedOwner, queueName, OWN_SHARD_PRIORITY, ownerMessages);
+        rabbitTemplate.convertAndSend(queueName, "returned");
+        var returnedMessage = ownerMessages.poll(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(ownedMessage).isEqualTo("owned");
+        assertThat(failedOverMessage).isEqualTo("failed over");
+        assertThat(returnedMessage).isEqualTo("returned");
+        assertThat(standbyMessages).isEmpty();
+      }
+    }
+  }
+
+  @Test
+  void testInvalidReplicaIndex() {
+    // Given
+    properties.getSharding().setReplicaIndex(2);
+
+    // When / Then
+    assertThatThrownBy(() -> new ShardAssignmentComponent(properties))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testSpecimenRoutedToSameShard() {
+    // Given
+    var shardAssignmentComponent = new ShardAssignmentComponent(properties);
+    declare(shardAssignmentComponent);
+    var rabbitTemplate = new RabbitTemplate(connectionFactory);
+    rabbitTemplate.setReceiveTimeout(100L);
+    var exchangeName = properties.getSharding().getExchangeName();
+
+    // When
+    for (var i = 0; i < 10; i++) {
+      rabbitTemplate.convertAndSend(exchangeName, PHYSICAL_ID_1, PHYSICAL_ID_1);
+      rabbitTemplate.convertAndSend(exchangeName, PHYSICAL_ID_2, PHYSICAL_ID_2);
+    }
+
+    // Then
+    var shardsPerSpecimen = new HashMap<Object, Set<Integer>>();
+    var received = 0;
+    for (var shard = 0; shard < 4; shard++) {
+      Object message;
+      while ((message = rabbitTemplate.receiveAndConvert(
+          properties.getSharding().getQueuePrefix() + shard)) != null) {
+        shardsPerSpecimen.computeIfAbsent(message, k -> new HashSet<>()).add(shard);
+        received++;
+      }
+    }
+    assertThat(received).isEqualTo(20);
+    assertThat(shardsPerSpecimen.get(PHYSICAL_ID_1)).hasSize(1);
+    assertThat(shardsPerSpecimen.get(PHYSICAL_ID_2)).hasSize(1);
+  }
+
+  private static void consume(Channel channel, String queueName, String priority,
+      BlockingQueue<String> received) throws IOException {
+    channel.basicConsume(queueName, true, Map.of("x-priority", Integer.parseInt(priority)),
+        new DefaultConsumer(channel) {
+          @Override
+          public void handleDelivery(String consumerTag, Envelope envelope,
+              AMQP.BasicProperties properties, byte[] body) {
+            received.add(new String(body, StandardCharsets.UTF_8));
+          }
+        });
+  }
+
+  private static void declare(ShardAssignmentComponent shardAssignmentComponent) {
+    var rabbitAdmin = new RabbitAdmin(connectionFactory);
+    shardAssignmentComponent.getDeclarables().getDeclarables().forEach(declarable -> {
+      switch (declarable) {
+        case Exchange exchange -> rabbitAdmin.declareExchange(exchange);
+        case Queue queue -> rabbitAdmin.declareQueue(queue);
+        case Binding binding -> rabbitAdmin.declareBinding(binding);
+        default -> throw new IllegalStateException("Unexpected declarable " + declarable);
+      }
+    });
+  }
+
+}
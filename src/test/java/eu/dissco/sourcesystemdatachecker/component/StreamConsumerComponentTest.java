@@ -0,0 +1,262 @@
+package eu.dissco.sourcesystemdatachecker.component;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+
+import com.rabbitmq.stream.Environment;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.MessageHandler;
+import com.rabbitmq.stream.Properties;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.service.RabbitMqConsumerService;
+import eu.dissco.sourcesystemdatachecker.service.RabbitMqPublisherService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class StreamConsumerComponentTest {
+
+  @Mock
+  private Environment environment;
+  @Mock
+  private RabbitMqConsumerService rabbitMqConsumerService;
+  @Mock
+  private RabbitMqPublisherService rabbitMqPublisherService;
+  @Mock
+  private MessageHandler.Context firstContext;
+  @Mock
+  private MessageHandler.Context secondContext;
+  private RabbitMqProperties properties;
+  private StreamConsumerComponent streamConsumerComponent;
+
+  @BeforeEach
+  void setup() {
+    properties = new RabbitMqProperties();
+    properties.getStream().setFlushInterval(Duration.ofMillis(200));
+    properties.getStream().setRetryInterval(Duration.ofMillis(10));
+    streamConsumerComponent = new StreamConsumerComponent(environment, rabbitMqConsumerService,
+        rabbitMqPublisherService, new MessageCompressionComponent(MAPPER), properties,
+        new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    streamConsumerComponent.stop();
+  }
+
+  @Test
+  void testBatchHandledAndOffsetStored() {
+    // Given
+    var firstMessage = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    var secondMessage = MAPPER.writeValueAsString(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext, givenStreamMessage(
+        firstMessage.getBytes(StandardCharsets.UTF_8), null));
+    streamConsumerComponent.receive(secondContext, givenStreamMessage(
+        secondMessage.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(secondContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(firstMessage, secondMessage));
+    then(firstContext).should(never()).storeOffset();
+  }
+
+  @Test
+  void testCompressedMessage() throws IOException {
+    // Given
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext, givenStreamMessage(gzip(message), "gzip"));
+
+    // Then
+    then(firstContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(message));
+  }
+
+  @Test
+  void testFailedBatchRetried() {
+    // Given
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    willThrow(new DataAccessResourceFailureException("Connection lost")).willDoNothing()
+        .given(rabbitMqConsumerService).getStreamMessages(anyList());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext,
+        givenStreamMessage(message.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(firstContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should(times(2)).getStreamMessages(List.of(message));
+  }
+
+  @Test
+  void testPoisonMessageDeadLettered() {
+    // Given
+    properties.getStream().setMaxRetries(1);
+    var poisonMessage = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    var message = MAPPER.writeValueAsString(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    willAnswer(invocation -> {
+      if (invocation.<List<String>>getArgument(0).contains(poisonMessage)) {
+        throw new IllegalStateException("Unexpected event");
+      }
+      return null;
+    }).given(rabbitMqConsumerService).getStreamMessages(anyList());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext,
+        givenStreamMessage(poisonMessage.getBytes(StandardCharsets.UTF_8), null));
+    streamConsumerComponent.receive(secondContext,
+        givenStreamMessage(message.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(secondContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should(times(2))
+        .getStreamMessages(List.of(poisonMessage, message));
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(message));
+    then(rabbitMqPublisherService).should()
+        .publishStreamDeadLetter(poisonMessage.getBytes(StandardCharsets.UTF_8), null);
+  }
+
+  @Test
+  void testLonePoisonMessageDeadLettered() {
+    // Given
+    properties.getStream().setMaxRetries(0);
+    var poisonMessage = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    var message = MAPPER.writeValueAsString(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    willAnswer(invocation -> {
+      if (invocation.<List<String>>getArgument(0).contains(poisonMessage)) {
+        throw new IllegalStateException("Unexpected event");
+      }
+      return null;
+    }).given(rabbitMqConsumerService).getStreamMessages(anyList());
+    streamConsumerComponent.startBatchExecutor();
+    streamConsumerComponent.receive(firstContext,
+        givenStreamMessage(poisonMessage.getBytes(StandardCharsets.UTF_8), null));
+    then(rabbitMqConsumerService).should(timeout(5_000).atLeast(2))
+        .getStreamMessages(List.of(poisonMessage));
+
+    // When
+    streamConsumerComponent.receive(secondContext,
+        givenStreamMessage(message.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(secondContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(message));
+    then(rabbitMqPublisherService).should()
+        .publishStreamDeadLetter(poisonMessage.getBytes(StandardCharsets.UTF_8), null);
+    then(firstContext).should(never()).storeOffset();
+  }
+
+  @Test
+  void testOutageNotDeadLettered() {
+    // Given
+    properties.getStream().setMaxRetries(0);
+    var firstMessage = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    var secondMessage = MAPPER.writeValueAsString(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+    var outage = new DataAccessResourceFailureException("Connection lost");
+    willThrow(outage, outage, outage).willDoNothing()
+        .given(rabbitMqConsumerService).getStreamMessages(anyList());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext, givenStreamMessage(
+        firstMessage.getBytes(StandardCharsets.UTF_8), null));
+    streamConsumerComponent.receive(secondContext, givenStreamMessage(
+        secondMessage.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(secondContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should(times(2))
+        .getStreamMessages(List.of(firstMessage, secondMessage));
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(firstMessage));
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(secondMessage));
+    then(rabbitMqPublisherService).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testUndecodableMessageDeadLettered() {
+    // Given
+    var corruptMessage = "not gzip".getBytes(StandardCharsets.UTF_8);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext, givenStreamMessage(corruptMessage, "gzip"));
+    streamConsumerComponent.receive(secondContext,
+        givenStreamMessage(message.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(secondContext).should(timeout(5_000)).storeOffset();
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(message));
+    then(rabbitMqPublisherService).should().publishStreamDeadLetter(corruptMessage, "gzip");
+  }
+
+  @Test
+  void testReplayDoesNotStoreOffset() {
+    // Given
+    properties.getStream().setReplayFrom(0L);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    streamConsumerComponent.startBatchExecutor();
+
+    // When
+    streamConsumerComponent.receive(firstContext,
+        givenStreamMessage(message.getBytes(StandardCharsets.UTF_8), null));
+
+    // Then
+    then(firstContext).should(timeout(5_000)).offset();
+    then(rabbitMqConsumerService).should().getStreamMessages(List.of(message));
+    then(firstContext).should(never()).storeOffset();
+  }
+
+  private static Message givenStreamMessage(byte[] body, String contentEncoding) {
+    var message = mock(Message.class);
+    given(message.getBodyAsBinary()).willReturn(body);
+    if (contentEncoding != null) {
+      var streamProperties = mock(Properties.class);
+      given(streamProperties.getContentEncoding()).willReturn(contentEncoding);
+      given(message.getProperties()).willReturn(streamProperties);
+    }
+    return message;
+  }
+
+  private static byte[] gzip(String message) throws IOException {
+    var compressed = new ByteArrayOutputStream();
+    try (var gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(message.getBytes(StandardCharsets.UTF_8));
+    }
+    return compressed.toByteArray();
+  }
+
+}
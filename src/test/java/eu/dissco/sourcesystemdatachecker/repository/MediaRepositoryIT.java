@@ -3,14 +3,21 @@ package eu.dissco.sourcesystemdatachecker.repository;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.CREATED;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.sourcesystemdatachecker.database.jooq.tables.DigitalMediaObject.DIGITAL_MEDIA_OBJECT;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import eu.dissco.sourcesystemdatachecker.component.ReadReplicaComponent;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredMedia;
 import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
+import eu.dissco.sourcesystemdatachecker.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
 import org.jooq.JSONB;
@@ -25,7 +32,8 @@ class MediaRepositoryIT extends BaseRepositoryIT {
 
   @BeforeEach
   void setup() {
-    mediaRepository = new MediaRepository(context, MAPPER);
+    mediaRepository = new MediaRepository(context, MAPPER,
+        new ReadReplicaComponent(new ReadReplicaProperties(), context, new SimpleMeterRegistry()));
   }
 
   @AfterEach
@@ -40,12 +48,26 @@ class MediaRepositoryIT extends BaseRepositoryIT {
     insertMedia(expected);
 
     // When
-    var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URI_1), Set.of(SOURCE_SYSTEM_PID));
+    var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1), Set.of(MEDIA_URI_1),
+        Set.of(SOURCE_SYSTEM_PID));
 
     // Then
     assertThat(result).isEqualTo(Map.of(MEDIA_URI_1, expected));
   }
 
+  @Test
+  void testGetMediaOtherId() {
+    // Given
+    insertMedia(givenDigitalMediaRecord());
+
+    // When
+    var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_2), Set.of(MEDIA_URI_1),
+        Set.of(SOURCE_SYSTEM_PID));
+
+    // Then
+    assertThat(result).isEmpty();
+  }
+
   @Test
   void testUpdateLastChecked() {
     // Given
@@ -62,6 +84,36 @@ class MediaRepositoryIT extends BaseRepositoryIT {
     assertThat(result).isAfter(CREATED);
   }
 
+  @Test
+  void testStreamStoredMedia() {
+    // Given
+    var mediaRecord = givenDigitalMediaRecord();
+    insertMedia(mediaRecord);
+    var result = new ArrayList<StoredMedia>();
+
+    // When
+    mediaRepository.streamStoredMedia(SOURCE_SYSTEM_PID, 10, result::add);
+
+    // Then
+    assertThat(result).containsExactly(
+        new StoredMedia(MEDIA_DOI_1, MEDIA_URI_1, mediaRecord.originalAttributes()));
+  }
+
+  @Test
+  void testGetMediaById() {
+    // Given
+    var expected = givenDigitalMediaRecord(MEDIA_DOI_2, MEDIA_URI_2);
+    insertMedia(givenDigitalMediaRecord());
+    insertMedia(expected);
+
+    // When
+    var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_2),
+        Set.of(SOURCE_SYSTEM_PID));
+
+    // Then
+    assertThat(result).isEqualTo(Map.of(MEDIA_URI_2, expected));
+  }
+
   private void insertMedia(DigitalMediaRecord digitalMediaRecord) {
     context.insertInto(DIGITAL_MEDIA_OBJECT)
         .set(DIGITAL_MEDIA_OBJECT.ID, digitalMediaRecord.id())
@@ -1,17 +1,30 @@
 package eu.dissco.sourcesystemdatachecker.repository;
 
 import static eu.dissco.sourcesystemdatachecker.TestUtils.CREATED;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.DOI_PROXY;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenRecord;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenWrapper;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenWrapperWithMediaErs;
+import static eu.dissco.sourcesystemdatachecker.database.jooq.Tables.DIGITAL_MEDIA_OBJECT;
 import static eu.dissco.sourcesystemdatachecker.database.jooq.Tables.DIGITAL_SPECIMEN;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
+import eu.dissco.sourcesystemdatachecker.component.ReadReplicaComponent;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredSpecimen;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaRecord;
 import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.sourcesystemdatachecker.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import org.jooq.JSONB;
@@ -25,12 +38,14 @@ class SpecimenRepositoryIT extends BaseRepositoryIT {
 
   @BeforeEach
   void setup() {
-    repository = new SpecimenRepository(context, MAPPER);
+    repository = new SpecimenRepository(context, MAPPER,
+        new ReadReplicaComponent(new ReadReplicaProperties(), context, new SimpleMeterRegistry()));
   }
 
   @AfterEach
   void destroy() {
     context.truncate(DIGITAL_SPECIMEN).execute();
+    context.truncate(DIGITAL_MEDIA_OBJECT).execute();
   }
 
   @Test
@@ -66,6 +81,39 @@ class SpecimenRepositoryIT extends BaseRepositoryIT {
     assertThat(result).isAfter(CREATED);
   }
 
+  @Test
+  void testStreamStoredSpecimens() {
+    // Given
+    var specimenRecord = new DigitalSpecimenRecord(SPECIMEN_DOI,
+        givenDigitalSpecimenWrapperWithMediaErs(PHYSICAL_ID_1, false,
+            Set.of(DOI_PROXY + MEDIA_DOI_1, DOI_PROXY + MEDIA_DOI_2)),
+        null);
+    insertSpecimen(specimenRecord);
+    insertMedia(givenDigitalMediaRecord());
+    var result = new ArrayList<StoredSpecimen>();
+
+    // When
+    repository.streamStoredSpecimens(SOURCE_SYSTEM_PID, 10, result::add);
+
+    // Then
+    assertThat(result).containsExactly(new StoredSpecimen(SPECIMEN_DOI, PHYSICAL_ID_1,
+        specimenRecord.digitalSpecimenWrapper().originalAttributes(), Set.of(MEDIA_URI_1)));
+  }
+
+  @Test
+  void testStreamPhysicalSpecimenIds() {
+    // Given
+    insertSpecimen(givenDigitalSpecimenRecord());
+    var result = new ArrayList<String>();
+
+    // When
+    var count = repository.countSpecimens(SOURCE_SYSTEM_PID);
+    repository.streamPhysicalSpecimenIds(SOURCE_SYSTEM_PID, 10, result::add);
+
+    // Then
+    assertThat(count).isEqualTo(1);
+    assertThat(result).containsExactly(PHYSICAL_ID_1);
+  }
 
   private void insertSpecimen(DigitalSpecimenRecord specimenRecord) {
     context.insertInto(DIGITAL_SPECIMEN)
@@ -93,4 +141,22 @@ class SpecimenRepositoryIT extends BaseRepositoryIT {
         .execute();
   }
 
+  private void insertMedia(DigitalMediaRecord digitalMediaRecord) {
+    context.insertInto(DIGITAL_MEDIA_OBJECT)
+        .set(DIGITAL_MEDIA_OBJECT.ID, digitalMediaRecord.id())
+        .set(DIGITAL_MEDIA_OBJECT.TYPE, digitalMediaRecord.attributes().getOdsFdoType())
+        .set(DIGITAL_MEDIA_OBJECT.VERSION, 1)
+        .set(DIGITAL_MEDIA_OBJECT.MEDIA_URL, digitalMediaRecord.attributes().getAcAccessURI())
+        .set(DIGITAL_MEDIA_OBJECT.CREATED, CREATED)
+        .set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, CREATED)
+        .set(DIGITAL_MEDIA_OBJECT.DATA,
+            JSONB.jsonb(MAPPER.valueToTree(digitalMediaRecord.attributes()).toString()))
+        .set(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA,
+            JSONB.jsonb(digitalMediaRecord.originalAttributes().toString()))
+        .set(DIGITAL_MEDIA_OBJECT.MODIFIED, CREATED)
+        .set(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID,
+            digitalMediaRecord.attributes().getOdsSourceSystemID())
+        .execute();
+  }
+
 }
@@ -0,0 +1,48 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+  @Test
+  void testNoFalseNegatives() {
+    // Given
+    var filter = BloomFilter.create(10_000, 0.01);
+
+    // When
+    IntStream.range(0, 10_000).forEach(i -> filter.add("https://geocase.eu/specimen/" + i));
+
+    // Then
+    assertThat(IntStream.range(0, 10_000))
+        .allMatch(i -> filter.mightContain("https://geocase.eu/specimen/" + i));
+  }
+
+  @Test
+  void testFalsePositiveRate() {
+    // Given
+    var filter = BloomFilter.create(10_000, 0.01);
+    IntStream.range(0, 10_000).forEach(i -> filter.add("known-" + i));
+
+    // When
+    var falsePositives = IntStream.range(0, 100_000)
+        .filter(i -> filter.mightContain("unknown-" + i))
+        .count();
+
+    // Then
+    assertThat(falsePositives).isLessThan(2_000);
+  }
+
+  @Test
+  void testSizeInBytes() {
+    // When
+    var filter = BloomFilter.create(100_000, 0.01);
+
+    // Then
+    assertThat(filter.sizeInBytes()).isEqualTo(BloomFilter.sizeInBytes(100_000, 0.01))
+        .isBetween(119_000L, 121_000L);
+  }
+
+}
@@ -0,0 +1,419 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEventWithMasSchedule;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMedia;
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.PersistedFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.FilteredDigitalSpecimens;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FingerprintCacheServiceTest {
+
+  @Mock
+  private HarvestPrefetchService harvestPrefetchService;
+  @Mock
+  private PersistentFingerprintStore persistentFingerprintStore;
+  @Mock
+  private SpecimenRepository specimenRepository;
+  @Mock
+  private MediaRepository mediaRepository;
+  private FingerprintCacheProperties properties;
+  private FingerprintCacheService fingerprintCacheService;
+
+  @BeforeEach
+  void setup() {
+    properties = new FingerprintCacheProperties();
+    properties.setEnabled(true);
+    fingerprintCacheService = new FingerprintCacheService(properties, harvestPrefetchService,
+        persistentFingerprintStore, specimenRepository, mediaRepository,
+        new SimpleMeterRegistry());
+  }
+
+  @Test
+  void testUnchangedSpecimenIsCached() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEqualTo(Map.of(SPECIMEN_DOI, event));
+    assertThat(result.unchangedMediaIds()).isEqualTo(Set.of(MEDIA_DOI_1));
+    assertThat(result.forcedMasForUnchangedMedia()).isEmpty();
+  }
+
+  @Test
+  void testForcedMasForCachedMedia() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+    var forcedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEventWithMasSchedule(Set.of(MAS_ID))));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(forcedEvent));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).containsOnlyKeys(SPECIMEN_DOI);
+    assertThat(result.forcedMasForUnchangedMedia()).isEqualTo(
+        Map.of(MEDIA_DOI_1, Set.of(MAS_ID)));
+  }
+
+  @Test
+  void testChangedSpecimenIsNotCached() {
+    // Given
+    givenCachedUnchanged(givenDigitalSpecimenEventWithMedia());
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent()));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(changedEvent));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  void testChangedMediaIsNotCached() {
+    // Given
+    givenCachedUnchanged(givenDigitalSpecimenEventWithMedia());
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_1, true)));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(changedEvent));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+    assertThat(result.unchangedMediaIds()).isEmpty();
+  }
+
+  @Test
+  void testAddedMediaIsNotCached() {
+    // Given
+    givenCachedUnchanged(givenDigitalSpecimenEventWithMedia());
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(changedEvent));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  void testChangedMediaSet() {
+    // Given
+    givenCachedUnchanged(givenDigitalSpecimenEventWithMedia());
+    var addedMediaEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+
+    // When
+    var result = fingerprintCacheService.getChangedMediaSets(List.of(addedMediaEvent));
+
+    // Then
+    assertThat(result).isEqualTo(Set.of(PHYSICAL_ID_1));
+  }
+
+  @Test
+  void testRemovedMediaErFromCache() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    givenCachedUnchanged(event);
+    var removedMediaEvent = givenDigitalSpecimenEventWithMedia();
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(removedMediaEvent));
+    var changedMediaSets = fingerprintCacheService.getChangedMediaSets(
+        List.of(removedMediaEvent));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+    assertThat(changedMediaSets).isEqualTo(Set.of(PHYSICAL_ID_1));
+  }
+
+  @Test
+  void testRemovedMediaErFromStore() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    given(persistentFingerprintStore.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1)))
+        .willReturn(new PersistedFingerprint<>(new SpecimenFingerprint(SPECIMEN_DOI,
+            fingerprint(event.digitalSpecimenWrapper().originalAttributes()),
+            fingerprint(Set.of(MEDIA_URI_1, MEDIA_URI_2))), Instant.now()));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+    var changedMediaSets = fingerprintCacheService.getChangedMediaSets(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+    assertThat(changedMediaSets).isEqualTo(Set.of(PHYSICAL_ID_1));
+  }
+
+  @Test
+  void testChangedMediaSetUnknownForChangedOriginalData() {
+    // Given
+    givenCachedUnchanged(givenDigitalSpecimenEventWithMedia());
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+
+    // When
+    var result = fingerprintCacheService.getChangedMediaSets(List.of(changedEvent));
+
+    // Then
+    assertThat(result).isEmpty();
+  }
+
+  @Test
+  void testUnchangedMediaSet() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+
+    // When
+    var result = fingerprintCacheService.getChangedMediaSets(
+        List.of(givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+            List.of(givenDigitalMediaEvent(MEDIA_URI_1, true)))));
+
+    // Then
+    assertThat(result).isEmpty();
+  }
+
+  @Test
+  void testChangedSpecimenIsEvicted() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+    fingerprintCacheService.update(
+        new FilteredDigitalSpecimens(Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+            List.of(givenDigitalMediaEvent()))), Map.of()),
+        new FilteredDigtialMedia(Set.of(), Set.of(), Map.of()));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  void testExternallyInvalidatedSpecimenIsNotCachedAgain() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+    fingerprintCacheService.invalidateSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+
+    // When
+    givenCachedUnchanged(event);
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  void testUnchangedSpecimenIsStored() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+
+    // When
+    givenCachedUnchanged(event);
+
+    // Then
+    then(persistentFingerprintStore).should().putSpecimen(
+        new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1), givenSpecimenFingerprint(event));
+    then(persistentFingerprintStore).should().putMedia(
+        new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1), givenMediaFingerprint());
+  }
+
+  @Test
+  void testStoredSpecimen() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    given(persistentFingerprintStore.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1)))
+        .willReturn(new PersistedFingerprint<>(givenSpecimenFingerprint(event), Instant.now()));
+    given(persistentFingerprintStore.getMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1)))
+        .willReturn(new PersistedFingerprint<>(givenMediaFingerprint(), Instant.now()));
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+    fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEqualTo(Map.of(SPECIMEN_DOI, event));
+    then(persistentFingerprintStore).should()
+        .getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+  }
+
+  @Test
+  void testStoredSpecimenExpiresAtItsWriteTime() throws InterruptedException {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    var writtenAt = Instant.now().minus(properties.getTtl()).plusMillis(20);
+    given(persistentFingerprintStore.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1)))
+        .willReturn(new PersistedFingerprint<>(givenSpecimenFingerprint(event), writtenAt));
+    given(persistentFingerprintStore.getMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1)))
+        .willReturn(new PersistedFingerprint<>(givenMediaFingerprint(), writtenAt));
+
+    // When
+    fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+    Thread.sleep(100);
+    fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    then(persistentFingerprintStore).should(times(2))
+        .getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+  }
+
+  @Test
+  void testPrefetchedSpecimen() {
+    // Given
+    properties.setEnabled(false);
+    var event = givenDigitalSpecimenEventWithMedia();
+    given(harvestPrefetchService.isEnabled()).willReturn(true);
+    given(harvestPrefetchService.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1)))
+        .willReturn(givenSpecimenFingerprint(event));
+    given(harvestPrefetchService.getMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1)))
+        .willReturn(givenMediaFingerprint());
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEqualTo(Map.of(SPECIMEN_DOI, event));
+    assertThat(result.unchangedMediaIds()).isEqualTo(Set.of(MEDIA_DOI_1));
+    then(harvestPrefetchService).should().observe(List.of(event));
+  }
+
+  @Test
+  void testChangedSpecimenIsEvictedFromPrefetch() {
+    // Given
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent()));
+
+    // When
+    fingerprintCacheService.update(new FilteredDigitalSpecimens(Set.of(changedEvent), Map.of()),
+        new FilteredDigtialMedia(Set.of(), Set.of(), Map.of()));
+
+    // Then
+    then(harvestPrefetchService).should()
+        .invalidateSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+    then(harvestPrefetchService).should()
+        .invalidateMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1));
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+    properties.setEnabled(false);
+
+    // When
+    var result = fingerprintCacheService.getUnchangedSpecimens(List.of(event));
+
+    // Then
+    assertThat(result.unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  void testInvalidateAll() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+
+    // When
+    fingerprintCacheService.invalidateAll();
+
+    // Then
+    assertThat(fingerprintCacheService.getUnchangedSpecimens(List.of(event))
+        .unchangedSpecimens()).isEmpty();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testInvalidateModifiedSince() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+    givenCachedUnchanged(event);
+    var since = Instant.now().minusSeconds(60);
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class)
+          .test(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+      return null;
+    }).given(specimenRepository).streamModifiedSince(eq(since), anyInt(), any());
+
+    // When
+    fingerprintCacheService.invalidateModifiedSince(since);
+
+    // Then
+    assertThat(fingerprintCacheService.getUnchangedSpecimens(List.of(event))
+        .unchangedSpecimens()).isEmpty();
+    then(persistentFingerprintStore).should()
+        .removeSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+    then(mediaRepository).should().streamModifiedSince(eq(since), anyInt(), any());
+    then(persistentFingerprintStore).should(never()).clear();
+  }
+
+  private static SpecimenFingerprint givenSpecimenFingerprint(DigitalSpecimenEvent event) {
+    return new SpecimenFingerprint(SPECIMEN_DOI,
+        fingerprint(event.digitalSpecimenWrapper().originalAttributes()),
+        fingerprint(Set.of(MEDIA_URI_1)));
+  }
+
+  private static MediaFingerprint givenMediaFingerprint() {
+    return new MediaFingerprint(MEDIA_DOI_1,
+        fingerprint(givenDigitalMediaRecord().originalAttributes()));
+  }
+
+  private void givenCachedUnchanged(DigitalSpecimenEvent event) {
+    fingerprintCacheService.update(
+        new FilteredDigitalSpecimens(Set.of(), Map.of(SPECIMEN_DOI, event)),
+        new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()), Map.of()));
+  }
+
+}
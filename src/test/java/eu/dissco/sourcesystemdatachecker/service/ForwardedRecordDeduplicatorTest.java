@@ -0,0 +1,134 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMasSchedule;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMedia;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.sourcesystemdatachecker.properties.ForwardDeduplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ForwardedRecordDeduplicatorTest {
+
+  private ForwardDeduplicationProperties properties;
+  private SimpleMeterRegistry meterRegistry;
+  private ForwardedRecordDeduplicator deduplicator;
+
+  @BeforeEach
+  void setup() {
+    properties = new ForwardDeduplicationProperties();
+    meterRegistry = new SimpleMeterRegistry();
+    deduplicator = new ForwardedRecordDeduplicator(properties, meterRegistry);
+  }
+
+  @Test
+  void testDuplicateWithinWindow() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMedia();
+
+    // When
+    var first = deduplicator.isDuplicate(event);
+    deduplicator.register(event);
+    var second = deduplicator.isDuplicate(givenDigitalSpecimenEventWithMedia());
+
+    // Then
+    assertThat(first).isFalse();
+    assertThat(second).isTrue();
+    assertThat(meterRegistry.counter("forward.deduplication.hits", "type", "specimen").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void testChangedSpecimenIsNotDuplicate() {
+    // Given
+    deduplicator.register(givenDigitalSpecimenEvent());
+
+    // When
+    var result = deduplicator.isDuplicate(givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of()));
+
+    // Then
+    assertThat(result).isFalse();
+  }
+
+  @Test
+  void testChangedMediaIsNotDuplicate() {
+    // Given
+    deduplicator.register(givenDigitalSpecimenEventWithMedia());
+
+    // When
+    var result = deduplicator.isDuplicate(givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_1, true))));
+
+    // Then
+    assertThat(result).isFalse();
+  }
+
+  @Test
+  void testForcedMasIsNotDuplicate() {
+    // Given
+    var event = givenDigitalSpecimenEventWithMasSchedule(Set.of(MAS_ID));
+    deduplicator.register(event);
+
+    // When
+    var result = deduplicator.isDuplicate(event);
+
+    // Then
+    assertThat(result).isFalse();
+  }
+
+  @Test
+  void testMediaDuplicate() {
+    // Given
+    deduplicator.register(givenDigitalMediaEvent());
+
+    // When
+    var unchanged = deduplicator.isDuplicate(givenDigitalMediaEvent());
+    var changed = deduplicator.isDuplicate(givenDigitalMediaEvent(MEDIA_URI_1, true));
+
+    // Then
+    assertThat(unchanged).isTrue();
+    assertThat(changed).isFalse();
+  }
+
+  @Test
+  void testExpiredAfterWindow() {
+    // Given
+    properties.setWindow(Duration.ZERO);
+    deduplicator = new ForwardedRecordDeduplicator(properties, meterRegistry);
+    var event = givenDigitalSpecimenEvent();
+    deduplicator.register(event);
+
+    // When
+    var result = deduplicator.isDuplicate(event);
+
+    // Then
+    assertThat(result).isFalse();
+    assertThat(deduplicator.size()).isZero();
+  }
+
+  @Test
+  void testBoundedAtMaxEntries() {
+    // Given
+    properties.setMaxEntries(1);
+    deduplicator = new ForwardedRecordDeduplicator(properties, meterRegistry);
+
+    // When
+    deduplicator.register(givenDigitalSpecimenEvent());
+    deduplicator.register(givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+
+    // Then
+    assertThat(deduplicator.size()).isEqualTo(1);
+  }
+
+}
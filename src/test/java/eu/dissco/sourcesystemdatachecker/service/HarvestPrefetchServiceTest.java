@@ -0,0 +1,199 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenOriginalAttributes;
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredMedia;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.StoredSpecimen;
+import eu.dissco.sourcesystemdatachecker.properties.HarvestPrefetchProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class HarvestPrefetchServiceTest {
+
+  @Mock
+  private SpecimenRepository specimenRepository;
+  @Mock
+  private MediaRepository mediaRepository;
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private HarvestPrefetchProperties properties;
+  private HarvestPrefetchService harvestPrefetchService;
+
+  @BeforeEach
+  void setup() {
+    properties = new HarvestPrefetchProperties();
+    properties.setEnabled(true);
+    harvestPrefetchService = new HarvestPrefetchService(specimenRepository, mediaRepository,
+        properties, meterRegistry);
+  }
+
+  @Test
+  void testLoad() {
+    // Given
+    givenStoredRecords();
+
+    // When
+    load();
+
+    // Then
+    assertThat(harvestPrefetchService.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID,
+        PHYSICAL_ID_1))).isEqualTo(new SpecimenFingerprint(SPECIMEN_DOI,
+        fingerprint(givenOriginalAttributes(false)), fingerprint(Set.of(MEDIA_URI_1))));
+    assertThat(harvestPrefetchService.getMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1)))
+        .isEqualTo(new MediaFingerprint(MEDIA_DOI_1, fingerprint(givenOriginalAttributes(false))));
+    assertThat(harvestPrefetchService.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID,
+        PHYSICAL_ID_2))).isNull();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testRemovedMediaEr() {
+    // Given
+    willAnswer(invocation -> {
+      var consumer = invocation.getArgument(2, Predicate.class);
+      consumer.test(new StoredMedia(MEDIA_DOI_1, MEDIA_URI_1, givenOriginalAttributes(false)));
+      consumer.test(new StoredMedia(MEDIA_DOI_2, MEDIA_URI_2, givenOriginalAttributes(false)));
+      return null;
+    }).given(mediaRepository).streamStoredMedia(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(
+          new StoredSpecimen(SPECIMEN_DOI, PHYSICAL_ID_1, givenOriginalAttributes(false),
+              Set.of(MEDIA_URI_1, MEDIA_URI_2)));
+      return null;
+    }).given(specimenRepository)
+        .streamStoredSpecimens(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+
+    // When
+    load();
+
+    // Then
+    var mediaSetFingerprint = harvestPrefetchService.getSpecimen(
+        new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1)).mediaSetFingerprint();
+    assertThat(mediaSetFingerprint).isEqualTo(fingerprint(Set.of(MEDIA_URI_1, MEDIA_URI_2)))
+        .isNotEqualTo(fingerprint(Set.of(MEDIA_URI_1)));
+  }
+
+  @Test
+  void testNotLoadedYet() {
+    // Given
+    harvestPrefetchService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+
+    // When
+    var result = harvestPrefetchService.getSpecimen(
+        new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+
+    // Then
+    assertThat(result).isNull();
+  }
+
+  @Test
+  void testInvalidatedDuringLoad() {
+    // Given
+    givenStoredRecords();
+    var table = harvestPrefetchService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+    harvestPrefetchService.invalidateSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_1));
+
+    // When
+    harvestPrefetchService.load(SOURCE_SYSTEM_PID, table);
+
+    // Then
+    assertThat(harvestPrefetchService.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID,
+        PHYSICAL_ID_1))).isNull();
+    assertThat(harvestPrefetchService.getMedia(new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1)))
+        .isNotNull();
+  }
+
+  @Test
+  void testExceedsMemoryBudget() {
+    // Given
+    properties.setMaxMemory(200);
+    givenStoredRecords();
+
+    // When
+    load();
+
+    // Then
+    assertThat(harvestPrefetchService.getStatistics()).isEmpty();
+    assertThat(meterRegistry.get("harvest.prefetch.bytes").gauge().value()).isZero();
+  }
+
+  @Test
+  void testFailedLoad() {
+    // Given
+    willThrow(new DataAccessResourceFailureException("Connection lost")).given(mediaRepository)
+        .streamStoredMedia(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+
+    // When
+    load();
+
+    // Then
+    assertThat(harvestPrefetchService.getStatistics()).isEmpty();
+  }
+
+  @Test
+  void testEvictIdle() {
+    // Given
+    properties.setIdleTimeout(Duration.ZERO);
+    givenStoredRecords();
+    load();
+
+    // When
+    harvestPrefetchService.evictIdle();
+
+    // Then
+    assertThat(harvestPrefetchService.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID,
+        PHYSICAL_ID_1))).isNull();
+    assertThat(meterRegistry.get("harvest.prefetch.bytes").gauge().value()).isZero();
+  }
+
+  private void load() {
+    var table = harvestPrefetchService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+    harvestPrefetchService.load(SOURCE_SYSTEM_PID, table);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenStoredRecords() {
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(
+          new StoredMedia(MEDIA_DOI_1, MEDIA_URI_1, givenOriginalAttributes(false)));
+      return null;
+    }).given(mediaRepository).streamStoredMedia(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(
+          new StoredSpecimen(SPECIMEN_DOI, PHYSICAL_ID_1, givenOriginalAttributes(false),
+              Set.of(MEDIA_URI_1)));
+      return null;
+    }).given(specimenRepository)
+        .streamStoredSpecimens(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+  }
+
+}
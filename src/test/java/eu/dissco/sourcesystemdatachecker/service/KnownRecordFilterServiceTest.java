@@ -0,0 +1,224 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+
+import eu.dissco.sourcesystemdatachecker.properties.KnownRecordFilterProperties;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class KnownRecordFilterServiceTest {
+
+  @Mock
+  private SpecimenRepository specimenRepository;
+  private KnownRecordFilterProperties properties;
+  private RabbitMqProperties rabbitMqProperties;
+  private KnownRecordFilterService knownRecordFilterService;
+
+  @BeforeEach
+  void setup() {
+    properties = new KnownRecordFilterProperties();
+    properties.setEnabled(true);
+    properties.setMinExpectedRecords(1_000);
+    rabbitMqProperties = new RabbitMqProperties();
+    rabbitMqProperties.getSharding().setEnabled(true);
+    rabbitMqProperties.getSharding().setFailover(false);
+    knownRecordFilterService = new KnownRecordFilterService(specimenRepository, properties,
+        rabbitMqProperties, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    knownRecordFilterService.stop();
+  }
+
+  @Test
+  void testStartWithSharding() {
+    // When
+    knownRecordFilterService.start();
+
+    // Then
+    then(specimenRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testStartWithoutSharding() {
+    // Given
+    rabbitMqProperties.getSharding().setEnabled(false);
+
+    // When / Then
+    assertThatThrownBy(knownRecordFilterService::start).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testStartWithShardFailover() {
+    // Given
+    rabbitMqProperties.getSharding().setFailover(true);
+
+    // When / Then
+    assertThatThrownBy(knownRecordFilterService::start).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testStartWithPriorityQueue() {
+    // Given
+    rabbitMqProperties.getPriority().setEnabled(true);
+
+    // When / Then
+    assertThatThrownBy(knownRecordFilterService::start).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testBuild() {
+    // Given
+    givenStoredRecords();
+
+    // When
+    build();
+
+    // Then
+    assertThat(knownRecordFilterService.isDefinitelyNew(givenDigitalSpecimenEvent())).isFalse();
+    assertThat(knownRecordFilterService.isDefinitelyNew(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()))).isTrue();
+  }
+
+  @Test
+  void testNotBuiltYet() {
+    // Given
+    knownRecordFilterService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+
+    // When
+    var result = knownRecordFilterService.isDefinitelyNew(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()));
+
+    // Then
+    assertThat(result).isFalse();
+  }
+
+  @Test
+  void testBuildNotDue() {
+    // Given
+    givenStoredRecords();
+    build();
+
+    // When
+    var result = knownRecordFilterService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+
+    // Then
+    assertThat(result).isNull();
+  }
+
+  @Test
+  void testAddForwardedRecords() {
+    // Given
+    givenStoredRecords();
+    build();
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_2, false)));
+
+    // When
+    knownRecordFilterService.addSpecimens(Set.of(event));
+
+    // Then
+    assertThat(knownRecordFilterService.isDefinitelyNew(event)).isFalse();
+  }
+
+  @Test
+  void testAddForwardedRecordsDuringBuild() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of());
+    var filter = knownRecordFilterService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+    knownRecordFilterService.addSpecimens(Set.of(event));
+
+    // When
+    knownRecordFilterService.build(SOURCE_SYSTEM_PID, filter);
+
+    // Then
+    assertThat(knownRecordFilterService.isDefinitelyNew(event)).isFalse();
+  }
+
+  @Test
+  void testExceedsMemoryBudget() {
+    // Given
+    properties.setMaxMemory(1);
+    given(specimenRepository.countSpecimens(SOURCE_SYSTEM_PID)).willReturn(1);
+
+    // When
+    build();
+
+    // Then
+    then(specimenRepository).should().countSpecimens(SOURCE_SYSTEM_PID);
+    then(specimenRepository).shouldHaveNoMoreInteractions();
+    assertThat(knownRecordFilterService.isDefinitelyNew(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()))).isFalse();
+  }
+
+  @Test
+  void testFailedBuild() {
+    // Given
+    given(specimenRepository.countSpecimens(SOURCE_SYSTEM_PID)).willReturn(1);
+    willThrow(new DataAccessResourceFailureException("Connection lost")).given(specimenRepository)
+        .streamPhysicalSpecimenIds(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+
+    // When
+    build();
+
+    // Then
+    assertThat(knownRecordFilterService.isDefinitelyNew(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of()))).isFalse();
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+    properties.setEnabled(false);
+
+    // When
+    knownRecordFilterService.observe(Set.of(givenDigitalSpecimenEvent()));
+
+    // Then
+    then(specimenRepository).shouldHaveNoInteractions();
+    assertThat(knownRecordFilterService.isDefinitelyNew(givenDigitalSpecimenEvent())).isFalse();
+  }
+
+  private void build() {
+    var filter = knownRecordFilterService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+    knownRecordFilterService.build(SOURCE_SYSTEM_PID, filter);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenStoredRecords() {
+    given(specimenRepository.countSpecimens(SOURCE_SYSTEM_PID)).willReturn(1);
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(PHYSICAL_ID_1);
+      return null;
+    }).given(specimenRepository)
+        .streamPhysicalSpecimenIds(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+  }
+
+}
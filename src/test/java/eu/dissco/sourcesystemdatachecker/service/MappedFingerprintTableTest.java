@@ -0,0 +1,208 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.service.FingerprintUtils.fingerprint;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFingerprintTableTest {
+
+  private static final UUID KEY = fingerprint(SOURCE_SYSTEM_PID, PHYSICAL_ID_1);
+  private static final UUID ORIGINAL_DATA = UUID.randomUUID();
+  private static final UUID MEDIA_SET = UUID.randomUUID();
+
+  @TempDir
+  private Path directory;
+
+  @Test
+  void testPutAndGet() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+
+      // When
+      var stored = table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+
+      // Then
+      assertThat(stored).isTrue();
+      assertThat(table.get(KEY)).isEqualTo(
+          new MappedFingerprintTable.Entry(SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L));
+      assertThat(table.get(UUID.randomUUID())).isNull();
+      assertThat(table.size()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testOverwrite() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+      var changedData = UUID.randomUUID();
+
+      // When
+      table.put(KEY, SPECIMEN_DOI, changedData, MEDIA_SET, 2L);
+
+      // Then
+      assertThat(table.get(KEY).originalDataFingerprint()).isEqualTo(changedData);
+      assertThat(table.size()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testRemove() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+
+      // When
+      table.remove(KEY);
+
+      // Then
+      assertThat(table.get(KEY)).isNull();
+      assertThat(table.size()).isZero();
+    }
+  }
+
+  @Test
+  void testIdTooLong() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+
+      // When
+      var stored = table.put(KEY, "x".repeat(33), ORIGINAL_DATA, MEDIA_SET, 1L);
+
+      // Then
+      assertThat(stored).isFalse();
+      assertThat(table.get(KEY)).isNull();
+    }
+  }
+
+  @Test
+  void testOldestEvictedWhenFull() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+      givenFullTable(table);
+      var key = new UUID(99, 0);
+
+      // When
+      var stored = table.put(key, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 200L);
+
+      // Then
+      assertThat(stored).isTrue();
+      assertThat(table.get(key)).isNotNull();
+      assertThat(table.get(new UUID(1, 1))).isNull();
+      assertThat(table.get(new UUID(0, 0))).isNotNull();
+      assertThat(table.size()).isEqualTo(12);
+      assertThat(table.evictions()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testNotStoredBeyondHardLimit() throws IOException {
+    // Given
+    try (var table = MappedFingerprintTable.open(directory.resolve("table"), 16)) {
+      givenFullTable(table);
+      table.put(new UUID(12, 12), SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 200L);
+      table.put(new UUID(13, 13), SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 200L);
+
+      // When
+      var stored = table.put(new UUID(14, 14), SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 200L);
+
+      // Then
+      assertThat(stored).isFalse();
+      assertThat(table.size()).isEqualTo(14);
+      assertThat(table.evictions()).isZero();
+    }
+  }
+
+  @Test
+  void testClear() throws IOException {
+    // Given
+    var path = directory.resolve("table");
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+
+      // When
+      table.clear();
+
+      // Then
+      assertThat(table.get(KEY)).isNull();
+      assertThat(table.size()).isZero();
+      assertThat(table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 2L)).isTrue();
+      assertThat(table.get(KEY).writtenAt()).isEqualTo(2L);
+    }
+  }
+
+  @Test
+  void testClearedTableReopened() throws IOException {
+    // Given
+    var path = directory.resolve("table");
+    var otherKey = UUID.randomUUID();
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+      table.clear();
+      table.put(otherKey, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+    }
+
+    // When
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+
+      // Then
+      assertThat(table.get(KEY)).isNull();
+      assertThat(table.get(otherKey)).isNotNull();
+      assertThat(table.size()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testReopen() throws IOException {
+    // Given
+    var path = directory.resolve("table");
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+      table.setWatermark(42L);
+    }
+
+    // When
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+
+      // Then
+      assertThat(table.wasCleanlyClosed()).isTrue();
+      assertThat(table.watermark()).isEqualTo(42L);
+      assertThat(table.get(KEY)).isEqualTo(
+          new MappedFingerprintTable.Entry(SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L));
+    }
+  }
+
+  @Test
+  void testReopenWithOtherCapacity() throws IOException {
+    // Given
+    var path = directory.resolve("table");
+    try (var table = MappedFingerprintTable.open(path, 16)) {
+      table.put(KEY, SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, 1L);
+    }
+
+    // When
+    try (var table = MappedFingerprintTable.open(path, 64)) {
+
+      // Then
+      assertThat(table.wasCleanlyClosed()).isFalse();
+      assertThat(table.capacity()).isEqualTo(64);
+      assertThat(table.get(KEY)).isNull();
+    }
+  }
+
+  // Fills the first 12 of 16 slots, up to the load limit, the entry in slot 1 is the oldest
+  private static void givenFullTable(MappedFingerprintTable table) {
+    for (int i = 0; i < 12; i++) {
+      table.put(new UUID(i, i), SPECIMEN_DOI, ORIGINAL_DATA, MEDIA_SET, i == 1 ? 1L : 100L + i);
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+
+@ExtendWith(MockitoExtension.class)
+class MasJobRateLimiterTest {
+
+  @Mock
+  private RabbitMqPublisherService publisherService;
+  @Mock
+  private MasJobRequestAggregator masJobRequestAggregator;
+  private final List<MasJobRequest> published = new ArrayList<>();
+  private MasSchedulerProperties masSchedulerProperties;
+  private MasJobRateLimiter rateLimiter;
+
+  @BeforeEach
+  void setup() {
+    masSchedulerProperties = new MasSchedulerProperties();
+    masSchedulerProperties.getRateLimit().setBurst(1);
+    masSchedulerProperties.getRateLimit().setPermitsPerSecond(0.001);
+    rateLimiter = new MasJobRateLimiter(publisherService, masJobRequestAggregator,
+        masSchedulerProperties, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void testSubmitDisabled() {
+    // Given
+    var first = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var second = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+
+    // When
+    rateLimiter.submit(List.of(first, second), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequest(first);
+    then(publisherService).should().publishMasJobRequest(second);
+    assertThat(published).containsExactly(first, second);
+  }
+
+  @Test
+  void testSubmitAggregated() {
+    // Given
+    masSchedulerProperties.getAggregation().setEnabled(true);
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+
+    // When
+    rateLimiter.submit(List.of(masJobRequest), published::add);
+
+    // Then
+    then(masJobRequestAggregator).should().publish(eq(List.of(masJobRequest)), any());
+    then(publisherService).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testPublishFailureIsThrown() {
+    // Given
+    masSchedulerProperties.getRateLimit().setEnabled(true);
+    var masJobRequest = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    willThrow(new AmqpConnectException(new RuntimeException("Connection refused")))
+        .given(publisherService).publishMasJobRequest(masJobRequest);
+
+    // When / Then
+    assertThatThrownBy(() -> rateLimiter.submit(List.of(masJobRequest), published::add))
+        .isInstanceOf(AmqpConnectException.class);
+    assertThat(published).isEmpty();
+  }
+
+  @Test
+  void testSubmitDeferredAboveLimit() {
+    // Given
+    masSchedulerProperties.getRateLimit().setEnabled(true);
+    var first = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var second = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+
+    // When
+    rateLimiter.submit(List.of(first, second), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequest(first);
+    then(publisherService).should(never()).publishMasJobRequest(second);
+    then(publisherService).should().publishDeferredMasJobRequest(eq(second),
+        argThat(wait -> wait.compareTo(Duration.ofSeconds(999)) > 0));
+    assertThat(published).containsExactly(first);
+  }
+
+  @Test
+  void testDeferredBySlot() {
+    // Given
+    masSchedulerProperties.getRateLimit().setEnabled(true);
+    var first = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var second = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+    var third = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+    var waits = ArgumentCaptor.forClass(Duration.class);
+
+    // When
+    rateLimiter.submit(List.of(first, second, third), published::add);
+
+    // Then
+    then(publisherService).should(times(2)).publishDeferredMasJobRequest(any(),
+        waits.capture());
+    assertThat(waits.getAllValues().get(1).minus(waits.getAllValues().get(0)))
+        .isBetween(Duration.ofSeconds(999), Duration.ofSeconds(1001));
+  }
+
+  @Test
+  void testDeferredNotDeferredAgain() {
+    // Given
+    masSchedulerProperties.getRateLimit().setEnabled(true);
+    var first = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var second = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+    rateLimiter.submit(List.of(first, second), published::add);
+
+    // When
+    rateLimiter.dispatchDeferred(List.of(second), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequest(second);
+    then(publisherService).should(times(1)).publishDeferredMasJobRequest(eq(second), any());
+    assertThat(published).containsExactly(first, second);
+  }
+
+  @Test
+  void testDeferralFailureIsThrown() {
+    // Given
+    masSchedulerProperties.getRateLimit().setEnabled(true);
+    var first = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var second = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+    willThrow(new AmqpConnectException(new RuntimeException("Connection refused")))
+        .given(publisherService).publishDeferredMasJobRequest(eq(second), any());
+
+    // When / Then
+    assertThatThrownBy(() -> rateLimiter.submit(List.of(first, second), published::add))
+        .isInstanceOf(AmqpConnectException.class);
+  }
+
+}
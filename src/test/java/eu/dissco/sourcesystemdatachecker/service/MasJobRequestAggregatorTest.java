@@ -0,0 +1,108 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.APP_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.DOI_PROXY;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequestBatch;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+
+@ExtendWith(MockitoExtension.class)
+class MasJobRequestAggregatorTest {
+
+  @Mock
+  private RabbitMqPublisherService publisherService;
+  private final List<MasJobRequest> published = new ArrayList<>();
+  private MasJobRequestAggregator aggregator;
+
+  @BeforeEach
+  void setup() {
+    var masSchedulerProperties = new MasSchedulerProperties();
+    masSchedulerProperties.getAggregation().setMaxTargets(2);
+    aggregator = new MasJobRequestAggregator(publisherService, masSchedulerProperties);
+  }
+
+  @Test
+  void testPublishGroup() {
+    // Given
+    var expected = new MasJobRequestBatch(MAS_ID,
+        List.of(DOI_PROXY + MEDIA_DOI_1, DOI_PROXY + MEDIA_DOI_2), false, APP_PID,
+        MjrTargetType.DIGITAL_MEDIA);
+
+    // When
+    aggregator.publish(List.of(givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA),
+        givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA)), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequestBatch(expected);
+    assertThat(published).containsExactly(
+        givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA),
+        givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA));
+  }
+
+  @Test
+  void testGroupAboveMaxIsSplit() {
+    // Given
+
+    // When
+    aggregator.publish(List.of(givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN),
+        givenMasJobRequest(SPECIMEN_DOI_2, MjrTargetType.DIGITAL_SPECIMEN),
+        givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_SPECIMEN)), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequestBatch(new MasJobRequestBatch(MAS_ID,
+        List.of(DOI_PROXY + SPECIMEN_DOI, DOI_PROXY + SPECIMEN_DOI_2), false, APP_PID,
+        MjrTargetType.DIGITAL_SPECIMEN));
+    then(publisherService).should().publishMasJobRequestBatch(new MasJobRequestBatch(MAS_ID,
+        List.of(DOI_PROXY + MEDIA_DOI_1), false, APP_PID, MjrTargetType.DIGITAL_SPECIMEN));
+  }
+
+  @Test
+  void testTargetTypesAreGroupedSeparately() {
+    // Given
+
+    // When
+    aggregator.publish(List.of(givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN),
+        givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA)), published::add);
+
+    // Then
+    then(publisherService).should().publishMasJobRequestBatch(new MasJobRequestBatch(MAS_ID,
+        List.of(DOI_PROXY + SPECIMEN_DOI), false, APP_PID, MjrTargetType.DIGITAL_SPECIMEN));
+    then(publisherService).should().publishMasJobRequestBatch(new MasJobRequestBatch(MAS_ID,
+        List.of(DOI_PROXY + MEDIA_DOI_1), false, APP_PID, MjrTargetType.DIGITAL_MEDIA));
+  }
+
+  @Test
+  void testPublishFailureIsThrown() {
+    // Given
+    willThrow(new AmqpConnectException(new RuntimeException("Connection refused")))
+        .given(publisherService).publishMasJobRequestBatch(any());
+
+    // When / Then
+    assertThatThrownBy(() -> aggregator.publish(
+        List.of(givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA)), published::add))
+        .isInstanceOf(AmqpConnectException.class);
+    assertThat(published).isEmpty();
+  }
+
+}
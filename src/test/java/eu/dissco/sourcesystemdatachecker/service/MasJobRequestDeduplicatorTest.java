@@ -0,0 +1,79 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.properties.MasSchedulerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MasJobRequestDeduplicatorTest {
+
+  private MasSchedulerProperties masSchedulerProperties;
+  private SimpleMeterRegistry meterRegistry;
+  private MasJobRequestDeduplicator deduplicator;
+
+  @BeforeEach
+  void setup() {
+    masSchedulerProperties = new MasSchedulerProperties();
+    meterRegistry = new SimpleMeterRegistry();
+    deduplicator = new MasJobRequestDeduplicator(masSchedulerProperties, meterRegistry);
+  }
+
+  @Test
+  void testDuplicateWithinWindow() {
+    // Given
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+
+    // When
+    var first = deduplicator.isDuplicate(masJobRequest);
+    deduplicator.register(masJobRequest);
+    var second = deduplicator.isDuplicate(masJobRequest);
+
+    // Then
+    assertThat(first).isFalse();
+    assertThat(second).isTrue();
+    assertThat(meterRegistry.counter("mas.deduplication.requests", "result", "hit").count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.counter("mas.deduplication.requests", "result", "miss").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void testExpiredAfterWindow() {
+    // Given
+    masSchedulerProperties.getDeduplication().setWindow(Duration.ZERO);
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+    deduplicator.register(masJobRequest);
+
+    // When
+    var result = deduplicator.isDuplicate(masJobRequest);
+
+    // Then
+    assertThat(result).isFalse();
+    assertThat(deduplicator.size()).isZero();
+  }
+
+  @Test
+  void testEldestEvictedAtMaxEntries() {
+    // Given
+    masSchedulerProperties.getDeduplication().setMaxEntries(1);
+    var eldest = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
+    var newest = givenMasJobRequest(MEDIA_DOI_2, MjrTargetType.DIGITAL_MEDIA);
+
+    // When
+    deduplicator.register(eldest);
+    deduplicator.register(newest);
+
+    // Then
+    assertThat(deduplicator.isDuplicate(eldest)).isFalse();
+    assertThat(deduplicator.isDuplicate(newest)).isTrue();
+  }
+
+}
@@ -3,23 +3,26 @@ package eu.dissco.sourcesystemdatachecker.service;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.APP_PID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
-import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
-import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEventWithMasSchedule;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMasSchedule;
-import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMedia;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
 
+import eu.dissco.sourcesystemdatachecker.domain.mas.MasJobRequest;
 import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
 import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
 import eu.dissco.sourcesystemdatachecker.properties.ApplicationProperties;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,15 +33,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class MasSchedulerServiceTest {
 
   @Mock
-  private RabbitMqPublisherService publisherService;
+  private MasJobRateLimiter masJobRateLimiter;
   @Mock
   private ApplicationProperties applicationProperties;
+  @Mock
+  private MasJobRequestDeduplicator masJobRequestDeduplicator;
   MasSchedulerService masSchedulerService;
 
   @BeforeEach
   void setup() {
-    masSchedulerService = new MasSchedulerService(publisherService,
-        applicationProperties);
+    masSchedulerService = new MasSchedulerService(masJobRateLimiter,
+        applicationProperties, masJobRequestDeduplicator);
   }
 
   @Test
@@ -52,8 +57,64 @@ class MasSchedulerServiceTest {
     masSchedulerService.scheduleMasForSpecimen(eventMap);
 
     // Then
-    then(publisherService).should()
-        .publishMasJobRequest(givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN));
+    then(masJobRateLimiter).should()
+        .submit(eq(List.of(givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN))),
+            any());
+  }
+
+  @Test
+  void testScheduleMasForSpecimenDuplicate() {
+    // Given
+    given(applicationProperties.getPid()).willReturn(APP_PID);
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+    given(masJobRequestDeduplicator.isEnabled()).willReturn(true);
+    given(masJobRequestDeduplicator.isDuplicate(masJobRequest)).willReturn(true);
+    var eventMap = Map.of(SPECIMEN_DOI, givenDigitalSpecimenEventWithMasSchedule(Set.of(MAS_ID)
+    ));
+
+    // When
+    masSchedulerService.scheduleMasForSpecimen(eventMap);
+
+    // Then
+    then(masJobRateLimiter).shouldHaveNoInteractions();
+    then(masJobRequestDeduplicator).should(never()).register(masJobRequest);
+  }
+
+  @Test
+  void testScheduleMasForSpecimenRegistersPublished() {
+    // Given
+    given(applicationProperties.getPid()).willReturn(APP_PID);
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+    given(masJobRequestDeduplicator.isEnabled()).willReturn(true);
+    willAnswer(invocation -> {
+      invocation.<Consumer<MasJobRequest>>getArgument(1).accept(masJobRequest);
+      return null;
+    }).given(masJobRateLimiter).submit(eq(List.of(masJobRequest)), any());
+    var eventMap = Map.of(SPECIMEN_DOI, givenDigitalSpecimenEventWithMasSchedule(Set.of(MAS_ID)
+    ));
+
+    // When
+    masSchedulerService.scheduleMasForSpecimen(eventMap);
+
+    // Then
+    then(masJobRequestDeduplicator).should().register(masJobRequest);
+  }
+
+  @Test
+  void testScheduleMasForSpecimenDeferredNotRegistered() {
+    // Given
+    given(applicationProperties.getPid()).willReturn(APP_PID);
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+    given(masJobRequestDeduplicator.isEnabled()).willReturn(true);
+    var eventMap = Map.of(SPECIMEN_DOI, givenDigitalSpecimenEventWithMasSchedule(Set.of(MAS_ID)
+    ));
+
+    // When
+    masSchedulerService.scheduleMasForSpecimen(eventMap);
+
+    // Then
+    then(masJobRateLimiter).should().submit(eq(List.of(masJobRequest)), any());
+    then(masJobRequestDeduplicator).should(never()).register(masJobRequest);
   }
 
   @Test
@@ -64,7 +125,7 @@ class MasSchedulerServiceTest {
     masSchedulerService.scheduleMasForSpecimen(Map.of(SPECIMEN_DOI, givenDigitalSpecimenEvent()));
 
     // Then
-    then(publisherService).shouldHaveNoInteractions();
+    then(masJobRateLimiter).shouldHaveNoInteractions();
   }
 
   @Test
@@ -76,50 +137,49 @@ class MasSchedulerServiceTest {
     masSchedulerService.scheduleMasForSpecimen(Map.of(SPECIMEN_DOI, event));
 
     // Then
-    then(publisherService).shouldHaveNoInteractions();
+    then(masJobRateLimiter).shouldHaveNoInteractions();
   }
 
   @Test
   void testScheduleMasForMedia() {
     // Given
     given(applicationProperties.getPid()).willReturn(APP_PID);
-    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()));
-    var mediaEvent = givenDigitalMediaEventWithMasSchedule(Set.of(MAS_ID));
+    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()),
+        Map.of(MEDIA_DOI_1, Set.of(MAS_ID)));
     var expected = givenMasJobRequest(MEDIA_DOI_1, MjrTargetType.DIGITAL_MEDIA);
 
     // When
-    masSchedulerService.scheduleMasForMedia(filteredMedia,
-        Set.of(givenDigitalSpecimenEventWithMasSchedule(Set.of(MAS_ID), List.of(mediaEvent))));
+    masSchedulerService.scheduleMasForMedia(filteredMedia);
 
     // Then
-    then(publisherService).should().publishMasJobRequest(expected);
+    then(masJobRateLimiter).should().submit(eq(List.of(expected)), any());
   }
 
   @Test
-  void testScheduleMasForMediaNoForceSchedule() {
+  void testScheduleDeferredMas() {
     // Given
-    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()));
+    var masJobRequests = List.of(givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN));
 
     // When
-    masSchedulerService.scheduleMasForMedia(filteredMedia,
-        Set.of(givenDigitalSpecimenEventWithMedia()));
+    masSchedulerService.scheduleDeferredMas(masJobRequests);
 
     // Then
-    then(publisherService).shouldHaveNoInteractions();
+    then(masJobRateLimiter).should().dispatchDeferred(eq(masJobRequests), any());
+    then(masJobRateLimiter).shouldHaveNoMoreInteractions();
+    then(masJobRequestDeduplicator).shouldHaveNoInteractions();
   }
 
   @Test
-  void testScheduleMasForMediaNoMas() {
+  void testScheduleMasForMediaNoForcedMas() {
     // Given
-    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()));
-    var mediaEvent = givenDigitalMediaEventWithMasSchedule(Set.of());
+    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()),
+        Map.of());
 
     // When
-    masSchedulerService.scheduleMasForMedia(filteredMedia,
-        Set.of(givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(mediaEvent))));
+    masSchedulerService.scheduleMasForMedia(filteredMedia);
 
     // Then
-    then(publisherService).shouldHaveNoInteractions();
+    then(masJobRateLimiter).shouldHaveNoInteractions();
   }
 
 }
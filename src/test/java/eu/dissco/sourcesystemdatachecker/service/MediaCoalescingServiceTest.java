@@ -0,0 +1,182 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaWrapper;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.sourcesystemdatachecker.domain.media.CoalescedDigitalMedia;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
+import eu.dissco.sourcesystemdatachecker.properties.MediaCoalescingProperties;
+import eu.dissco.sourcesystemdatachecker.properties.MediaCoalescingProperties.EntityRelationshipRule;
+import eu.dissco.sourcesystemdatachecker.schema.EntityRelationship;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MediaCoalescingServiceTest {
+
+  private MediaCoalescingProperties properties;
+  private SimpleMeterRegistry meterRegistry;
+  private MediaCoalescingService mediaCoalescingService;
+
+  @BeforeEach
+  void setup() {
+    properties = new MediaCoalescingProperties();
+    properties.setEnabled(true);
+    meterRegistry = new SimpleMeterRegistry();
+    mediaCoalescingService = new MediaCoalescingService(properties, MAPPER, meterRegistry);
+  }
+
+  @Test
+  void testIdenticalMediaCoalesced() {
+    // Given
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+            List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false))),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of(givenDigitalMediaEvent())));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result).hasSize(2);
+    assertThat(result.getFirst().digitalMediaEvent()).isEqualTo(givenDigitalMediaEvent());
+    assertThat(result.getFirst().variants()).isEqualTo(1);
+    assertThat(meterRegistry.counter("media.coalescing.duplicates", "type", "comparison")
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testVariantsMerged() {
+    // Given
+    var forcedMediaEvent = new DigitalMediaEvent(Set.of(MAS_ID),
+        givenDigitalMediaWrapper(MEDIA_URI_1, false), true);
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(givenDigitalMediaEvent())),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of(forcedMediaEvent)));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+    mediaCoalescingService.countPublished(result.getFirst());
+
+    // Then
+    assertThat(result).hasSize(1);
+    assertThat(result.getFirst().digitalMediaEvent()).isEqualTo(forcedMediaEvent);
+    assertThat(result.getFirst().variants()).isEqualTo(2);
+    assertThat(meterRegistry.counter("media.coalescing.duplicates", "type", "publish")
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testOnlyForcedMasListsMerged() {
+    // Given
+    var mediaEvent = new DigitalMediaEvent(Set.of("mas-not-forced"),
+        givenDigitalMediaWrapper(MEDIA_URI_1, false), false);
+    var forcedMediaEvent = new DigitalMediaEvent(Set.of(MAS_ID),
+        givenDigitalMediaWrapper(MEDIA_URI_1, false), true);
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(mediaEvent)),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of(forcedMediaEvent)));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result.getFirst().digitalMediaEvent().masList()).containsExactly(MAS_ID);
+    assertThat(result.getFirst().digitalMediaEvent().forceMasSchedule()).isTrue();
+  }
+
+  @Test
+  void testOtherOriginalAttributesNotCoalesced() {
+    // Given
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(givenDigitalMediaEvent())),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+            List.of(givenDigitalMediaEvent(MEDIA_URI_1, true))));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result).extracting(CoalescedDigitalMedia::digitalMediaEvent).containsExactly(
+        givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_1, true));
+  }
+
+  @Test
+  void testOrderedBySpecimen() {
+    // Given
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+            List.of(givenDigitalMediaEventWithEr(SPECIMEN_DOI_2))),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+            List.of(givenDigitalMediaEventWithEr(SPECIMEN_DOI))));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result.getFirst().digitalMediaEvent().digitalMediaWrapper().attributes()
+        .getOdsHasEntityRelationships()).extracting(EntityRelationship::getDwcRelatedResourceID)
+        .containsExactly(SPECIMEN_DOI);
+  }
+
+  @Test
+  void testFirstEntityRelationshipsKept() {
+    // Given
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+            List.of(givenDigitalMediaEventWithEr(SPECIMEN_DOI))),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+            List.of(givenDigitalMediaEventWithEr(SPECIMEN_DOI_2))));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result.getFirst().digitalMediaEvent().digitalMediaWrapper().attributes()
+        .getOdsHasEntityRelationships()).extracting(EntityRelationship::getDwcRelatedResourceID)
+        .containsExactly(SPECIMEN_DOI);
+  }
+
+  @Test
+  void testUnionOfEntityRelationships() {
+    // Given
+    properties.setEntityRelationships(EntityRelationshipRule.UNION);
+    var first = givenDigitalMediaEventWithEr(SPECIMEN_DOI);
+    var specimenEvents = List.of(
+        givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(first)),
+        givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+            List.of(givenDigitalMediaEventWithEr(SPECIMEN_DOI_2))));
+
+    // When
+    var result = mediaCoalescingService.coalesce(specimenEvents);
+
+    // Then
+    assertThat(result.getFirst().digitalMediaEvent().digitalMediaWrapper().attributes()
+        .getOdsHasEntityRelationships()).extracting(EntityRelationship::getDwcRelatedResourceID)
+        .containsExactly(SPECIMEN_DOI, SPECIMEN_DOI_2);
+    assertThat(first.digitalMediaWrapper().attributes().getOdsHasEntityRelationships())
+        .hasSize(1);
+  }
+
+  private static DigitalMediaEvent givenDigitalMediaEventWithEr(String specimenId) {
+    var mediaEvent = givenDigitalMediaEvent();
+    mediaEvent.digitalMediaWrapper().attributes().setOdsHasEntityRelationships(List.of(
+        new EntityRelationship()
+            .withDwcRelationshipOfResource("hasDigitalSpecimen")
+            .withDwcRelatedResourceID(specimenId)));
+    return mediaEvent;
+  }
+
+}
@@ -0,0 +1,157 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEventWithMasSchedule;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenRecord;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenRecordWithMedia;
+import static eu.dissco.sourcesystemdatachecker.service.ServiceUtils.DOI_PROXY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+import eu.dissco.sourcesystemdatachecker.domain.media.MediaReference;
+import eu.dissco.sourcesystemdatachecker.properties.MediaReferenceProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MediaReferenceServiceTest {
+
+  @Mock
+  private MediaRepository mediaRepository;
+  private MediaReferenceProperties properties;
+  private MediaReferenceService mediaReferenceService;
+
+  @BeforeEach
+  void setup() {
+    properties = new MediaReferenceProperties();
+    properties.setEnabled(true);
+    mediaReferenceService = new MediaReferenceService(mediaRepository, properties,
+        new SimpleMeterRegistry());
+  }
+
+  @Test
+  void testUnchangedMediaReplaced() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1),
+        Set.of(MEDIA_URI_1, MEDIA_URI_2), Set.of(SOURCE_SYSTEM_PID)))
+        .willReturn(Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecordWithMedia()));
+
+    // Then
+    assertThat(result.unchangedMediaIds()).isEqualTo(Set.of(MEDIA_DOI_1));
+    var mediaEvents = result.specimens().iterator().next().digitalMediaEvents();
+    assertThat(mediaEvents.getFirst().mediaReference()).isEqualTo(MediaReference.CURRENT);
+    var reference = mediaEvents.getFirst().digitalMediaWrapper();
+    assertThat(reference.originalAttributes()).isNull();
+    assertThat(reference.attributes().getId()).isEqualTo(DOI_PROXY + MEDIA_DOI_1);
+    assertThat(reference.attributes().getAcAccessURI()).isEqualTo(MEDIA_URI_1);
+    assertThat(mediaEvents.get(1)).isEqualTo(givenDigitalMediaEvent(MEDIA_URI_2, false));
+  }
+
+  @Test
+  void testReferenceMarkedInPayload() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet(), anySet()))
+        .willReturn(Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecordWithMedia()));
+
+    // Then
+    var mediaEvents = MAPPER.valueToTree(result.specimens().iterator().next())
+        .get("digitalMediaEvents");
+    assertThat(mediaEvents.get(0).get("mediaReference").get("version").asInt()).isEqualTo(1);
+    assertThat(mediaEvents.get(1).has("mediaReference")).isFalse();
+  }
+
+  @Test
+  void testChangedMediaNotReplaced() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_1, true)));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet(), anySet()))
+        .willReturn(Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecordWithMedia()));
+
+    // Then
+    assertThat(result.specimens()).isEqualTo(Set.of(event));
+    assertThat(result.unchangedMediaIds()).isEmpty();
+  }
+
+  @Test
+  void testForcedMasNotReplaced() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEventWithMasSchedule(Set.of(MAS_ID))));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet(), anySet()))
+        .willReturn(Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecordWithMedia()));
+
+    // Then
+    assertThat(result.specimens()).isEqualTo(Set.of(event));
+    assertThat(result.unchangedMediaIds()).isEmpty();
+  }
+
+  @Test
+  void testUnrelatedMediaNotLookedUp() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true, List.of(givenDigitalMediaEvent()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecord()));
+
+    // Then
+    assertThat(result.specimens()).isEqualTo(Set.of(event));
+    then(mediaRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testDisabled() {
+    // Given
+    properties.setEnabled(false);
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true, List.of(givenDigitalMediaEvent()));
+
+    // When
+    var result = mediaReferenceService.replaceUnchangedMedia(Set.of(event),
+        Map.of(PHYSICAL_ID_1, givenDigitalSpecimenRecordWithMedia()));
+
+    // Then
+    assertThat(result.specimens()).isEqualTo(Set.of(event));
+    then(mediaRepository).shouldHaveNoInteractions();
+  }
+
+}
@@ -0,0 +1,176 @@
+package eu.dissco.sourcesystemdatachecker.service;
+
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.MediaKey;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenFingerprint;
+import eu.dissco.sourcesystemdatachecker.domain.fingerprint.SpecimenKey;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
+import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class PersistentFingerprintStoreTest {
+
+  private static final SpecimenKey SPECIMEN_KEY = new SpecimenKey(SOURCE_SYSTEM_PID,
+      PHYSICAL_ID_1);
+  private static final MediaKey MEDIA_KEY = new MediaKey(SOURCE_SYSTEM_PID, MEDIA_URI_1);
+  private static final SpecimenFingerprint SPECIMEN_FINGERPRINT = new SpecimenFingerprint(
+      SPECIMEN_DOI, UUID.randomUUID(), UUID.randomUUID());
+  private static final MediaFingerprint MEDIA_FINGERPRINT = new MediaFingerprint(MEDIA_DOI_1,
+      UUID.randomUUID());
+
+  @Mock
+  private SpecimenRepository specimenRepository;
+  @Mock
+  private MediaRepository mediaRepository;
+  @TempDir
+  private Path directory;
+  private FingerprintCacheProperties properties;
+  private PersistentFingerprintStore store;
+
+  @BeforeEach
+  void setup() {
+    properties = new FingerprintCacheProperties();
+    properties.setEnabled(true);
+    properties.getPersistent().setEnabled(true);
+    properties.getPersistent().setDirectory(directory.toString());
+    properties.getPersistent().setCapacity(64);
+    store = new PersistentFingerprintStore(specimenRepository, mediaRepository, properties);
+  }
+
+  @AfterEach
+  void teardown() {
+    store.close();
+  }
+
+  @Test
+  void testNewStore() {
+    // Given
+
+    // When
+    store.open();
+
+    // Then
+    assertThat(store.isOpen()).isTrue();
+    then(specimenRepository).shouldHaveNoInteractions();
+    then(mediaRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testPutAndGet() {
+    // Given
+    store.open();
+
+    // When
+    store.putSpecimen(SPECIMEN_KEY, SPECIMEN_FINGERPRINT);
+    store.putMedia(MEDIA_KEY, MEDIA_FINGERPRINT);
+
+    // Then
+    assertThat(store.getSpecimen(SPECIMEN_KEY).fingerprint()).isEqualTo(SPECIMEN_FINGERPRINT);
+    assertThat(store.getMedia(MEDIA_KEY).fingerprint()).isEqualTo(MEDIA_FINGERPRINT);
+    assertThat(store.getSpecimen(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_2))).isNull();
+  }
+
+  @Test
+  void testExpired() {
+    // Given
+    properties.setTtl(Duration.ofMillis(-1));
+    store.open();
+
+    // When
+    store.putSpecimen(SPECIMEN_KEY, SPECIMEN_FINGERPRINT);
+
+    // Then
+    assertThat(store.getSpecimen(SPECIMEN_KEY)).isNull();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testRestartEvictsModifiedRecords() {
+    // Given
+    givenStoreFromPreviousRun();
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(SPECIMEN_KEY);
+      return null;
+    }).given(specimenRepository).streamModifiedSince(any(), anyInt(), any());
+
+    // When
+    store.open();
+
+    // Then
+    assertThat(store.getSpecimen(SPECIMEN_KEY)).isNull();
+    assertThat(store.getMedia(MEDIA_KEY).fingerprint()).isEqualTo(MEDIA_FINGERPRINT);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testRestartWithTooManyModifiedRecords() {
+    // Given
+    properties.getPersistent().setMaxStartupEvictions(1);
+    givenStoreFromPreviousRun();
+    willAnswer(invocation -> {
+      var consumer = invocation.getArgument(2, Predicate.class);
+      if (consumer.test(new SpecimenKey(SOURCE_SYSTEM_PID, PHYSICAL_ID_2))) {
+        consumer.test(SPECIMEN_KEY);
+      }
+      return null;
+    }).given(specimenRepository).streamModifiedSince(any(), anyInt(), any());
+
+    // When
+    store.open();
+
+    // Then
+    assertThat(store.getMedia(MEDIA_KEY)).isNull();
+    then(mediaRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testRestartValidationFails() {
+    // Given
+    givenStoreFromPreviousRun();
+    willThrow(new DataAccessResourceFailureException("Connection refused"))
+        .given(specimenRepository).streamModifiedSince(any(), anyInt(), any());
+
+    // When
+    store.open();
+
+    // Then
+    assertThat(store.isOpen()).isTrue();
+    assertThat(store.getMedia(MEDIA_KEY)).isNull();
+  }
+
+  private void givenStoreFromPreviousRun() {
+    var previousRun = new PersistentFingerprintStore(specimenRepository, mediaRepository,
+        properties);
+    previousRun.open();
+    previousRun.putSpecimen(SPECIMEN_KEY, SPECIMEN_FINGERPRINT);
+    previousRun.putMedia(MEDIA_KEY, MEDIA_FINGERPRINT);
+    previousRun.close();
+  }
+
+}
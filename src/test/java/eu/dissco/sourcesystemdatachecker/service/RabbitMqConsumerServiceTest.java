@@ -1,9 +1,24 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 
+import com.rabbitmq.client.Channel;
+import eu.dissco.sourcesystemdatachecker.component.AdaptiveBatchSizeComponent;
+import eu.dissco.sourcesystemdatachecker.component.BatchByteBudgetComponent;
+import eu.dissco.sourcesystemdatachecker.component.BatchPipelineComponent;
+import eu.dissco.sourcesystemdatachecker.component.KeyPartitionedExecutorComponent;
+import eu.dissco.sourcesystemdatachecker.component.MessageCompressionComponent;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +26,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.util.unit.DataSize;
 
 @ExtendWith(MockitoExtension.class)
 class RabbitMqConsumerServiceTest {
@@ -18,22 +36,145 @@ class RabbitMqConsumerServiceTest {
   private RabbitMqConsumerService consumerService;
   @Mock
   private SourceSystemDataCheckerService service;
+  @Mock
+  private BatchPipelineComponent batchPipelineComponent;
+  @Mock
+  private KeyPartitionedExecutorComponent keyPartitionedExecutorComponent;
+  @Mock
+  private AdaptiveBatchSizeComponent adaptiveBatchSizeComponent;
+  @Mock
+  private MasSchedulerService masSchedulerService;
+  @Mock
+  private Channel channel;
+  private RabbitMqProperties properties;
 
   @BeforeEach
   void setup(){
-    consumerService = new RabbitMqConsumerService(MAPPER, service);
+    properties = new RabbitMqProperties();
+    consumerService = new RabbitMqConsumerService(MAPPER, service, batchPipelineComponent,
+        keyPartitionedExecutorComponent, adaptiveBatchSizeComponent,
+        new BatchByteBudgetComponent(properties, new SimpleMeterRegistry()),
+        new MessageCompressionComponent(MAPPER), masSchedulerService);
   }
 
   @Test
-  void testHandleMessages() {
+  void testHandleMessages() throws InterruptedException {
     // Given
     var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
 
     // When
-    consumerService.getMessages(List.of(message));
+    consumerService.getMessages(List.of(givenMessage(message, 1)), channel);
 
     // Then
     then(service).should().handleMessages(Set.of(givenDigitalSpecimenEvent()));
+    then(adaptiveBatchSizeComponent).should().record(eq(1), any(Duration.class));
+  }
+
+  @Test
+  void testHandleMessagesInPipeline() throws InterruptedException {
+    // Given
+    given(batchPipelineComponent.isEnabled()).willReturn(true);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+
+    // When
+    consumerService.getMessages(List.of(givenMessage(message, 1), givenMessage(message, 2)),
+        channel);
+
+    // Then
+    then(batchPipelineComponent).should().submit(Set.of(givenDigitalSpecimenEvent()), channel, 2);
+    then(service).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testRejectUndecodableMessagesInPipeline() throws InterruptedException {
+    // Given
+    given(batchPipelineComponent.isEnabled()).willReturn(true);
+    properties.getByteBudget().setEnabled(true);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    properties.getByteBudget().setMaxBatchSize(DataSize.ofBytes(message.length()));
+
+    // When
+    consumerService.getMessages(List.of(givenMessage(message, 1), givenMessage("{invalid", 2)),
+        channel);
+
+    // Then
+    then(batchPipelineComponent).should().submit(Set.of(givenDigitalSpecimenEvent()), channel, 1);
+    then(batchPipelineComponent).should().submitFailed(any(RuntimeException.class), eq(channel),
+        eq(2L));
+  }
+
+  @Test
+  void testSplitMessagesAboveByteBudget() throws InterruptedException {
+    // Given
+    given(batchPipelineComponent.isEnabled()).willReturn(true);
+    properties.getByteBudget().setEnabled(true);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+    properties.getByteBudget().setMaxBatchSize(DataSize.ofBytes(message.length()));
+
+    // When
+    consumerService.getMessages(List.of(givenMessage(message, 1), givenMessage(message, 2)),
+        channel);
+
+    // Then
+    then(batchPipelineComponent).should().submit(Set.of(givenDigitalSpecimenEvent()), channel, 1);
+    then(batchPipelineComponent).should().submit(Set.of(givenDigitalSpecimenEvent()), channel, 2);
+  }
+
+  @Test
+  void testHandlePriorityMessages() {
+    // Given
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+
+    // When
+    consumerService.getPriorityMessages(List.of(message));
+
+    // Then
+    then(service).should().handleMessages(Set.of(givenDigitalSpecimenEvent()));
+  }
+
+  @Test
+  void testHandleMessagesInLanes() throws InterruptedException {
+    // Given
+    given(keyPartitionedExecutorComponent.isEnabled()).willReturn(true);
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+
+    // When
+    consumerService.getMessages(List.of(givenMessage(message, 1)), channel);
+
+    // Then
+    then(keyPartitionedExecutorComponent).should()
+        .handleMessages(Set.of(givenDigitalSpecimenEvent()));
+    then(service).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testHandleStreamMessages() {
+    // Given
+    var message = MAPPER.writeValueAsString(givenDigitalSpecimenEvent());
+
+    // When
+    consumerService.getStreamMessages(List.of(message));
+
+    // Then
+    then(service).should().handleMessages(Set.of(givenDigitalSpecimenEvent()));
+  }
+
+  @Test
+  void testHandleDeferredMasJobRequests() {
+    // Given
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+
+    // When
+    consumerService.getDeferredMasJobRequests(List.of(MAPPER.writeValueAsString(masJobRequest)));
+
+    // Then
+    then(masSchedulerService).should().scheduleDeferredMas(List.of(masJobRequest));
+  }
+
+  private static Message givenMessage(String payload, long deliveryTag) {
+    var messageProperties = new MessageProperties();
+    messageProperties.setDeliveryTag(deliveryTag);
+    return new MessageCompressionComponent(MAPPER).toMessage(payload, messageProperties);
   }
 
 }
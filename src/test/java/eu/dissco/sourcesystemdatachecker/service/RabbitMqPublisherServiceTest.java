@@ -1,12 +1,18 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenMasJobRequest;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import eu.dissco.sourcesystemdatachecker.component.MessageCompressionComponent;
+import eu.dissco.sourcesystemdatachecker.domain.mas.MjrTargetType;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
 import java.io.IOException;
+import java.time.Duration;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,11 +39,15 @@ class RabbitMqPublisherServiceTest {
     container.start();
     declareRabbitResources(rabbitMqProperties.getNameUsage().getRoutingKeyName());
     declareRabbitResources(rabbitMqProperties.getMedia().getRoutingKeyName());
+    container.execInContainer("rabbitmqadmin", "declare", "queue",
+        "name=" + rabbitMqProperties.getMasScheduler().getDelayQueueName(), "queue_type=quorum",
+        "durable=true");
     CachingConnectionFactory factory = new CachingConnectionFactory(container.getHost());
     factory.setPort(container.getAmqpPort());
     factory.setUsername(container.getAdminUsername());
     factory.setPassword(container.getAdminPassword());
     rabbitTemplate = new RabbitTemplate(factory);
+    rabbitTemplate.setMessageConverter(new MessageCompressionComponent(MAPPER));
     rabbitTemplate.setReceiveTimeout(100L);
   }
 
@@ -55,7 +65,7 @@ class RabbitMqPublisherServiceTest {
 
   @BeforeEach
   void setup() {
-    rabbitMqPublisherService = new RabbitMqPublisherService(MAPPER, rabbitTemplate,
+    rabbitMqPublisherService = new RabbitMqPublisherService(rabbitTemplate,
         rabbitMqProperties);
   }
 
@@ -85,4 +95,31 @@ class RabbitMqPublisherServiceTest {
     assertThat(result.getBody()).isNotNull();
   }
 
+  @Test
+  void testPublishDeferredMasJobRequest() {
+    // Given
+    var masJobRequest = givenMasJobRequest(SPECIMEN_DOI, MjrTargetType.DIGITAL_SPECIMEN);
+
+    // When
+    rabbitMqPublisherService.publishDeferredMasJobRequest(masJobRequest, Duration.ofMinutes(1));
+
+    // Then
+    var result = rabbitTemplate.receive(rabbitMqProperties.getMasScheduler().getDelayQueueName());
+    assertThat(result.getMessageProperties().getExpiration()).isEqualTo("60000");
+  }
+
+  @Test
+  void testPublishedEventIsReadable() {
+    // Given
+    var event = givenDigitalSpecimenEvent();
+
+    // When
+    rabbitMqPublisherService.publishNameUsageEvent(event);
+
+    // Then
+    var result = rabbitTemplate.receiveAndConvert(
+        rabbitMqProperties.getNameUsage().getRoutingKeyName() + "-queue");
+    assertThat(MAPPER.readValue((String) result, DigitalSpecimenEvent.class)).isEqualTo(event);
+  }
+
 }
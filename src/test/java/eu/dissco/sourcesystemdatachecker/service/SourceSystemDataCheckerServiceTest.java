@@ -1,5 +1,7 @@
 package eu.dissco.sourcesystemdatachecker.service;
 
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAPPER;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.MAS_ID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_1;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_DOI_2;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.MEDIA_URI_1;
@@ -8,28 +10,48 @@ import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_1;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.PHYSICAL_ID_2;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SOURCE_SYSTEM_PID;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.SPECIMEN_DOI_2;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaEventWithMasSchedule;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEvent;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenEventWithMedia;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenRecord;
 import static eu.dissco.sourcesystemdatachecker.TestUtils.givenDigitalSpecimenRecordWithMedia;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.times;
 
+import eu.dissco.sourcesystemdatachecker.component.BatchStageComponent;
+import eu.dissco.sourcesystemdatachecker.domain.media.DigitalMediaEvent;
 import eu.dissco.sourcesystemdatachecker.domain.media.FilteredDigtialMedia;
+import eu.dissco.sourcesystemdatachecker.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.sourcesystemdatachecker.properties.FingerprintCacheProperties;
+import eu.dissco.sourcesystemdatachecker.properties.ForwardDeduplicationProperties;
+import eu.dissco.sourcesystemdatachecker.properties.HarvestPrefetchProperties;
+import eu.dissco.sourcesystemdatachecker.properties.KnownRecordFilterProperties;
+import eu.dissco.sourcesystemdatachecker.properties.MediaCoalescingProperties;
+import eu.dissco.sourcesystemdatachecker.properties.MediaReferenceProperties;
+import eu.dissco.sourcesystemdatachecker.properties.RabbitMqProperties;
+import eu.dissco.sourcesystemdatachecker.properties.StageConcurrencyProperties;
 import eu.dissco.sourcesystemdatachecker.repository.MediaRepository;
 import eu.dissco.sourcesystemdatachecker.repository.SpecimenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -45,12 +67,36 @@ class SourceSystemDataCheckerServiceTest {
   @Mock
   private MasSchedulerService masSchedulerService;
 
+  private FingerprintCacheProperties fingerprintCacheProperties;
+  private KnownRecordFilterProperties knownRecordFilterProperties;
+  private ForwardDeduplicationProperties forwardDeduplicationProperties;
+  private MediaReferenceProperties mediaReferenceProperties;
+  private MediaCoalescingProperties mediaCoalescingProperties;
+  private KnownRecordFilterService knownRecordFilterService;
   private SourceSystemDataCheckerService service;
 
   @BeforeEach
   void init() {
+    fingerprintCacheProperties = new FingerprintCacheProperties();
+    knownRecordFilterProperties = new KnownRecordFilterProperties();
+    forwardDeduplicationProperties = new ForwardDeduplicationProperties();
+    mediaReferenceProperties = new MediaReferenceProperties();
+    mediaCoalescingProperties = new MediaCoalescingProperties();
+    var meterRegistry = new SimpleMeterRegistry();
+    knownRecordFilterService = new KnownRecordFilterService(specimenRepository,
+        knownRecordFilterProperties, new RabbitMqProperties(), meterRegistry);
+    var harvestPrefetchService = new HarvestPrefetchService(specimenRepository, mediaRepository,
+        new HarvestPrefetchProperties(), meterRegistry);
     service = new SourceSystemDataCheckerService(specimenRepository,
-        mediaRepository, rabbitMqPublisherService, masSchedulerService);
+        mediaRepository, rabbitMqPublisherService, masSchedulerService,
+        new FingerprintCacheService(fingerprintCacheProperties, harvestPrefetchService,
+            new PersistentFingerprintStore(specimenRepository, mediaRepository,
+                fingerprintCacheProperties), specimenRepository, mediaRepository, meterRegistry),
+        knownRecordFilterService,
+        new ForwardedRecordDeduplicator(forwardDeduplicationProperties, meterRegistry),
+        new MediaReferenceService(mediaRepository, mediaReferenceProperties, meterRegistry),
+        new MediaCoalescingService(mediaCoalescingProperties, MAPPER, meterRegistry),
+        new BatchStageComponent(new StageConcurrencyProperties(), meterRegistry));
   }
 
   @Test
@@ -98,7 +144,6 @@ class SourceSystemDataCheckerServiceTest {
     given(
         specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
         List.of(givenDigitalSpecimenRecordWithMedia()));
-    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()));
 
     // When
     service.handleMessages(Set.of(event));
@@ -108,7 +153,146 @@ class SourceSystemDataCheckerServiceTest {
     then(specimenRepository).should().updateLastChecked(Set.of(SPECIMEN_DOI));
     then(mediaRepository).should().updateLastChecked(Set.of(MEDIA_DOI_1));
     then(masSchedulerService).should().scheduleMasForSpecimen(Map.of(SPECIMEN_DOI, event));
-    then(masSchedulerService).should().scheduleMasForMedia(filteredMedia, Set.of(event));
+    then(masSchedulerService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testUnchangedSpecimenFromFingerprintCache() {
+    // Given
+    fingerprintCacheProperties.setEnabled(true);
+    var event = givenDigitalSpecimenEventWithMedia();
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+    given(
+        specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        List.of(givenDigitalSpecimenRecordWithMedia()));
+    service.handleMessages(Set.of(event));
+
+    // When
+    service.handleMessages(Set.of(event));
+
+    // Then
+    then(specimenRepository).should().getDigitalSpecimens(anySet(), anySet());
+    then(mediaRepository).should().getExistingDigitalMedia(anySet(), anySet());
+    then(specimenRepository).should(times(2)).updateLastChecked(Set.of(SPECIMEN_DOI));
+    then(mediaRepository).should(times(2)).updateLastChecked(Set.of(MEDIA_DOI_1));
+    then(rabbitMqPublisherService).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void testChangedMediaSetFromFingerprintCache() {
+    // Given
+    fingerprintCacheProperties.setEnabled(true);
+    var event = givenDigitalSpecimenEventWithMedia();
+    var addedMediaEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent(), givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+    given(
+        specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        List.of(givenDigitalSpecimenRecordWithMedia()));
+    service.handleMessages(Set.of(event));
+
+    // When
+    service.handleMessages(Set.of(addedMediaEvent));
+
+    // Then
+    then(specimenRepository).should(times(2)).getDigitalSpecimens(anySet(), anySet());
+    then(mediaRepository).should().getExistingDigitalMedia(anySet(), anySet());
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(addedMediaEvent);
+    then(rabbitMqPublisherService).shouldHaveNoMoreInteractions();
+  }
+
+  @Test
+  void testDefinitelyNewSpecimenNotLookedUp() {
+    // Given
+    givenKnownRecordFilter();
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false, List.of(givenDigitalMediaEvent()));
+
+    // When
+    service.handleMessages(Set.of(event));
+
+    // Then
+    then(specimenRepository).should().countSpecimens(SOURCE_SYSTEM_PID);
+    then(specimenRepository).should().streamPhysicalSpecimenIds(eq(SOURCE_SYSTEM_PID), anyInt(),
+        any());
+    then(specimenRepository).shouldHaveNoMoreInteractions();
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(event);
+    assertThat(knownRecordFilterService.isDefinitelyNew(event)).isFalse();
+  }
+
+  @Test
+  void testRecentlyForwardedSpecimenNotPublished() {
+    // Given
+    forwardDeduplicationProperties.setEnabled(true);
+    var event = givenDigitalSpecimenEvent();
+    given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(
+        Collections.emptyList());
+    service.handleMessages(Set.of(event));
+
+    // When
+    service.handleMessages(Set.of(givenDigitalSpecimenEvent()));
+
+    // Then
+    then(specimenRepository).should(times(2)).getDigitalSpecimens(anySet(), anySet());
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(event);
+  }
+
+  @Test
+  void testChangedSpecimenNotFromFingerprintCache() {
+    // Given
+    fingerprintCacheProperties.setEnabled(true);
+    var event = givenDigitalSpecimenEvent();
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true, List.of());
+    given(
+        specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        List.of(givenDigitalSpecimenRecord()));
+    service.handleMessages(Set.of(event));
+
+    // When
+    service.handleMessages(Set.of(changedEvent));
+
+    // Then
+    then(specimenRepository).should(times(2)).getDigitalSpecimens(anySet(), anySet());
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(changedEvent);
+  }
+
+  @Test
+  void testUnchangedSpecimenUnchangedMediaForcedMas() {
+    // Given
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEventWithMasSchedule(Set.of(MAS_ID))));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+    given(
+        specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        List.of(givenDigitalSpecimenRecordWithMedia()));
+    var filteredMedia = new FilteredDigtialMedia(Set.of(), Set.of(givenDigitalMediaRecord()),
+        Map.of(MEDIA_DOI_1, Set.of(MAS_ID)));
+
+    // When
+    service.handleMessages(Set.of(event));
+
+    // Then
+    then(rabbitMqPublisherService).shouldHaveNoInteractions();
+    then(masSchedulerService).should().scheduleMasForMedia(filteredMedia);
+  }
+
+  @Test
+  void testFilterMediaNotForcedIsNotIndexed() {
+    // Given
+    var notForced = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent()));
+    var noMas = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(givenDigitalMediaEventWithMasSchedule(Set.of())));
+
+    // When
+    var result = service.filterChangedAndNewMedia(List.of(notForced, noMas),
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // Then
+    assertThat(result.unchangedMedia()).isEqualTo(Set.of(givenDigitalMediaRecord()));
+    assertThat(result.forcedMasForUnchangedMedia()).isEmpty();
   }
 
   @Test
@@ -133,8 +317,6 @@ class SourceSystemDataCheckerServiceTest {
   void testChangedSpecimenWithMedia() {
     // Given
     var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true, List.of(givenDigitalMediaEvent()));
-    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
-        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
     given(
         specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
         List.of(givenDigitalSpecimenRecordWithMedia()));
@@ -145,7 +327,7 @@ class SourceSystemDataCheckerServiceTest {
     // Then
     then(rabbitMqPublisherService).should().publishNameUsageEvent(event);
     then(specimenRepository).shouldHaveNoMoreInteractions();
-    then(mediaRepository).shouldHaveNoMoreInteractions();
+    then(mediaRepository).shouldHaveNoInteractions();
     then(masSchedulerService).shouldHaveNoInteractions();
   }
 
@@ -171,12 +353,39 @@ class SourceSystemDataCheckerServiceTest {
     then(masSchedulerService).shouldHaveNoInteractions();
   }
 
+  @Test
+  void testChangedSpecimenWithUnchangedMediaReference() {
+    // Given
+    mediaReferenceProperties.setEnabled(true);
+    var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent()));
+    given(
+        specimenRepository.getDigitalSpecimens(Set.of(PHYSICAL_ID_1), Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        List.of(givenDigitalSpecimenRecordWithMedia()));
+    given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1), Set.of(MEDIA_URI_1),
+        Set.of(SOURCE_SYSTEM_PID))).willReturn(Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    service.handleMessages(Set.of(event));
+
+    // Then
+    var captor = ArgumentCaptor.forClass(DigitalSpecimenEvent.class);
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(captor.capture());
+    var mediaWrapper = captor.getValue().digitalMediaEvents().getFirst().digitalMediaWrapper();
+    assertThat(mediaWrapper.originalAttributes()).isNull();
+    assertThat(mediaWrapper.attributes().getAcAccessURI()).isEqualTo(MEDIA_URI_1);
+    then(mediaRepository).should().updateLastChecked(Set.of(MEDIA_DOI_1));
+    then(specimenRepository).shouldHaveNoMoreInteractions();
+  }
+
   @Test
   void testSpecimenWithRemovedMediaEr() {
     // Given
     var event = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
         List.of(givenDigitalMediaEvent()));
-    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+    // The removed media is looked up by its ID, although its URI is not in the batch
+    given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1, MEDIA_DOI_2),
+        Set.of(SOURCE_SYSTEM_PID))).willReturn(
         Map.of(MEDIA_URI_1, givenDigitalMediaRecord(), MEDIA_URI_2,
             givenDigitalMediaRecord(MEDIA_DOI_2, MEDIA_URI_2)));
     given(
@@ -217,6 +426,55 @@ class SourceSystemDataCheckerServiceTest {
   }
 
 
+  @Test
+  void testSharedChangedMediaPublishedOnce() {
+    // Given
+    mediaCoalescingProperties.setEnabled(true);
+    var mediaEvent = givenDigitalMediaEvent(MEDIA_URI_1, true);
+    var specimenEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false, List.of(mediaEvent));
+    var specimenEvent2 = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(new DigitalMediaEvent(Set.of(MAS_ID), mediaEvent.digitalMediaWrapper(), false)));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+    given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(List.of(
+        givenDigitalSpecimenRecordWithMedia(),
+        givenDigitalSpecimenRecord(SPECIMEN_DOI_2, PHYSICAL_ID_2,
+            Map.of(MEDIA_URI_1, MEDIA_DOI_1))));
+
+    // When
+    service.handleMessages(Set.of(specimenEvent, specimenEvent2));
+
+    // Then
+    then(rabbitMqPublisherService).should().publishMediaEvent(
+        new DigitalMediaEvent(Set.of(MAS_ID), mediaEvent.digitalMediaWrapper(), false));
+    then(rabbitMqPublisherService).shouldHaveNoMoreInteractions();
+    then(specimenRepository).should().updateLastChecked(Set.of(SPECIMEN_DOI, SPECIMEN_DOI_2));
+  }
+
+  @Test
+  void testSharedMediaWithChangedVariantPublished() {
+    // Given
+    mediaCoalescingProperties.setEnabled(true);
+    var changedMediaEvent = givenDigitalMediaEvent(MEDIA_URI_1, true);
+    var specimenEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, false,
+        List.of(givenDigitalMediaEvent()));
+    var specimenEvent2 = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(changedMediaEvent));
+    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+    given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(List.of(
+        givenDigitalSpecimenRecordWithMedia(),
+        givenDigitalSpecimenRecord(SPECIMEN_DOI_2, PHYSICAL_ID_2,
+            Map.of(MEDIA_URI_1, MEDIA_DOI_1))));
+
+    // When
+    service.handleMessages(Set.of(specimenEvent, specimenEvent2));
+
+    // Then
+    then(rabbitMqPublisherService).should().publishMediaEvent(changedMediaEvent);
+    then(rabbitMqPublisherService).shouldHaveNoMoreInteractions();
+  }
+
   @Test
   void testTwoNewSpecimens() {
     // Given
@@ -282,15 +540,78 @@ class SourceSystemDataCheckerServiceTest {
 
     given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(
         Collections.emptyList());
-    given(mediaRepository.getExistingDigitalMedia(anySet(), anySet())).willReturn(
-        Collections.emptyMap());
 
     // When
     service.handleMessages(Set.of(event, event2));
 
     // Then
     then(rabbitMqPublisherService).should(times(2)).publishNameUsageEvent(any());
+    then(mediaRepository).shouldHaveNoInteractions();
     then(masSchedulerService).shouldHaveNoMoreInteractions();
   }
 
+  @Test
+  void testMediaOnlyLookedUpForUnchangedOriginalData() {
+    // Given
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    var unchangedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(givenDigitalMediaEvent()));
+    given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(List.of(
+        givenDigitalSpecimenRecord(SPECIMEN_DOI, PHYSICAL_ID_1, Map.of(MEDIA_URI_2, MEDIA_DOI_2)),
+        givenDigitalSpecimenRecord(SPECIMEN_DOI_2, PHYSICAL_ID_2,
+            Map.of(MEDIA_URI_1, MEDIA_DOI_1))));
+    given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1),
+        Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord()));
+
+    // When
+    service.handleMessages(Set.of(changedEvent, unchangedEvent));
+
+    // Then
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(changedEvent);
+    then(rabbitMqPublisherService).shouldHaveNoMoreInteractions();
+    then(specimenRepository).should().updateLastChecked(Set.of(SPECIMEN_DOI_2));
+    then(mediaRepository).should().updateLastChecked(Set.of(MEDIA_DOI_1));
+    then(masSchedulerService).should()
+        .scheduleMasForSpecimen(Map.of(SPECIMEN_DOI_2, unchangedEvent));
+  }
+
+  @Test
+  void testRemovedMediaErWithChangedOriginalDataInBatch() {
+    // Given
+    var changedEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_1, true,
+        List.of(givenDigitalMediaEvent(MEDIA_URI_2, false)));
+    var removedMediaEvent = givenDigitalSpecimenEvent(PHYSICAL_ID_2, false,
+        List.of(givenDigitalMediaEvent()));
+    given(specimenRepository.getDigitalSpecimens(anySet(), anySet())).willReturn(List.of(
+        givenDigitalSpecimenRecord(SPECIMEN_DOI, PHYSICAL_ID_1, Map.of()),
+        givenDigitalSpecimenRecord(SPECIMEN_DOI_2, PHYSICAL_ID_2, Map.of(
+            MEDIA_URI_1, MEDIA_DOI_1, MEDIA_URI_2, MEDIA_DOI_2))));
+    given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_DOI_1, MEDIA_DOI_2),
+        Set.of(SOURCE_SYSTEM_PID))).willReturn(
+        Map.of(MEDIA_URI_1, givenDigitalMediaRecord(), MEDIA_URI_2,
+            givenDigitalMediaRecord(MEDIA_DOI_2, MEDIA_URI_2)));
+
+    // When
+    service.handleMessages(Set.of(changedEvent, removedMediaEvent));
+
+    // Then
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(changedEvent);
+    then(rabbitMqPublisherService).should().publishNameUsageEvent(removedMediaEvent);
+    then(masSchedulerService).shouldHaveNoInteractions();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenKnownRecordFilter() {
+    knownRecordFilterProperties.setEnabled(true);
+    willAnswer(invocation -> {
+      invocation.getArgument(2, Predicate.class).test(PHYSICAL_ID_1);
+      return null;
+    }).given(specimenRepository)
+        .streamPhysicalSpecimenIds(eq(SOURCE_SYSTEM_PID), anyInt(), any());
+    var filter = knownRecordFilterService.register(SOURCE_SYSTEM_PID, System.nanoTime());
+    knownRecordFilterService.build(SOURCE_SYSTEM_PID, filter);
+  }
+
 }